@@ -1,12 +1,10 @@
 package dev.folomkin.bankrest.config;
 
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
@@ -16,8 +14,8 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * Утилитный класс для работы с JWT-токенами.
@@ -59,43 +57,78 @@ public class JwtTokenProvider {
     }
 
 
-    /**
-     * Генерирует JWT-токен на основе объекта Authentication (удобно вызывать после успешного логина)
-     */
-    public String generateToken(Authentication authentication) {
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        return generateToken(userDetails);
-    }
+    /// Claim с id пользователя
+    public static final String USER_ID_CLAIM = "uid";
+
+    /// Claim с ролями без префикса ROLE_
+    public static final String ROLES_CLAIM = "roles";
+
+    /// Claim с временем выдачи в миллисекундах: iat по стандарту в секундах, для отзыва токенов этого мало
+    public static final String ISSUED_AT_MILLIS_CLAIM = "iat_ms";
 
 
     /**
-     * Основной метод генерации токена по UserDetails
+     * Генерирует JWT-токен для пользователя после успешного логина.
+     * В токен кладутся id и роли: фильтр строит из них {@link AuthenticatedUser}
+     * без обращения к базе
      */
-    public String generateToken(UserDetails userDetails) {
+    public String generateToken(AuthenticatedUser user) {
         Map<String, Object> claims = new HashMap<>();
 
         // Извлекаем роли без префикса "ROLE_" (если он есть), чтобы в токене хранить чистые названия: USER, ADMIN и т.д.
-        List<String> roles = userDetails.getAuthorities().stream()
-                .map(GrantedAuthority::getAuthority)
+        List<String> roles = user.roles().stream()
                 .map(role -> role.startsWith("ROLE_") ? role.substring(5) : role)
                 .toList();
 
-        // Добавляем роли в claims под ключом "roles" как List<String>
-        claims.put("roles", roles);
+        // Добавляем id и роли в claims, роли как List<String>
+        claims.put(USER_ID_CLAIM, user.id());
+        claims.put(ROLES_CLAIM, roles);
 
         Instant now = Instant.now();
+        claims.put(ISSUED_AT_MILLIS_CLAIM, now.toEpochMilli());
         Instant expiry = now.plusMillis(validityInMilliseconds);
 
         // Строим JWT
         return Jwts.builder()
-                .claims(claims)                     // Кастомные claims (включая роли)
-                .subject(userDetails.getUsername()) // sub — username пользователя
+                .claims(claims)                     // Кастомные claims (id и роли)
+                .subject(user.username())           // sub — username пользователя
                 .issuedAt(Date.from(now))           // iat — время выдачи
                 .expiration(Date.from(expiry))      // exp — время истечения
                 .signWith(key)                      // Подписываем токен HS256 с нашим ключом
                 .compact();                         // Собираем в строку: header.payload.signature
     }
 
+    /**
+     * Пользователь из claims проверенного токена.
+     * Пустой, если в токене нет subject или id (токены, выданные до появления claim uid)
+     */
+    public Optional<AuthenticatedUser> toPrincipal(Claims claims) {
+        String username = claims.getSubject();
+        Long userId = claims.get(USER_ID_CLAIM, Long.class);
+        if (username == null || userId == null) {
+            return Optional.empty();
+        }
+
+        @SuppressWarnings("unchecked")
+        List<String> roles = claims.get(ROLES_CLAIM, List.class);
+
+        // Spring ожидает префикс ROLE_
+        return Optional.of(new AuthenticatedUser(userId, username,
+                roles == null ? List.of() : roles.stream().map(role -> "ROLE_" + role).toList()));
+    }
+
+    /**
+     * Время выдачи с точностью до миллисекунды.
+     * У токенов без iat_ms - iat с точностью до секунды, null - если нет и его
+     */
+    public Instant issuedAt(Claims claims) {
+        Long issuedAtMillis = claims.get(ISSUED_AT_MILLIS_CLAIM, Long.class);
+        if (issuedAtMillis != null) {
+            return Instant.ofEpochMilli(issuedAtMillis);
+        }
+        return claims.getIssuedAt() == null ? null : claims.getIssuedAt().toInstant();
+    }
+
     /** Извлекает username (subject) из токена */
     public String getUsernameFromToken(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -134,7 +167,7 @@ public class JwtTokenProvider {
     }
 
 
-    /** Геттер для парсера — нужен JwtAuthenticationFilter, чтобы не создавать парсер заново */
+    /** Геттер для парсера, чтобы не создавать парсер заново */
     public JwtParser getJwtParser() {
         return jwtParser;
     }
@@ -0,0 +1,112 @@
+package dev.folomkin.bankrest.config.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.lang.Nullable;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Чтение своих записей при репликах с задержкой.
+ * <p>
+ * После коммита изменяющей транзакции пользователя (перевод, смена
+ * статуса и т.п.) его запросы в течение max-lag читают с основной базы:
+ * реплика могла еще не получить изменение, и клиент не увидит, например,
+ * старый баланс сразу после своего перевода. Остальные пользователи
+ * продолжают читать с реплик.
+ * <p>
+ * Запись отмечается по коммиту транзакции не только для чтения
+ * (слушатель транзакций, Spring Boot добавляет его в менеджер
+ * транзакций), независимо от HTTP-метода запроса.
+ * Потоки без контекста безопасности (очередь переводов, асинхронные
+ * переводы) отмечают запись сами через {@link #recordWrite}.
+ * <p>
+ * Решение о чтении принимается на запрос и хранится в потоке запроса;
+ * асинхронная часть ответа (выгрузки) в другом потоке читает с реплики.
+ * Код, которому нужна основная база независимо от пользователя, оборачивает
+ * чтение в {@link #onPrimary}.
+ */
+public class ReadYourWrites implements HandlerInterceptor, TransactionExecutionListener {
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    /// Имя пользователя -> была запись за последние max-lag
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWrites(Duration maxLag, long maximumSize) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(maxLag)
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    /// Чтение в этом потоке должно идти с основной базы
+    public static boolean primaryRequired() {
+        return Boolean.TRUE.equals(PRIMARY.get());
+    }
+
+    /// Транзакции только для чтения внутри reads берут соединение с основной базы. Без реплик ничего не меняет
+    public static <T> T onPrimary(Supplier<T> reads) {
+        Boolean previous = PRIMARY.get();
+        PRIMARY.set(Boolean.TRUE);
+        try {
+            return reads.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY.remove();
+            } else {
+                PRIMARY.set(previous);
+            }
+        }
+    }
+
+    public void recordWrite(String username) {
+        recentWriters.put(username, Boolean.TRUE);
+    }
+
+    public boolean wroteRecently(String username) {
+        return recentWriters.getIfPresent(username) != null;
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, @Nullable Throwable commitFailure) {
+        if (commitFailure == null && !transaction.isReadOnly()) {
+            String username = currentUsername();
+            if (username != null) {
+                recordWrite(username);
+            }
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String username = currentUsername();
+        if (username != null && wroteRecently(username)) {
+            PRIMARY.set(Boolean.TRUE);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        PRIMARY.remove();
+    }
+
+    private static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
@@ -0,0 +1,159 @@
+package dev.folomkin.bankrest.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Соединения для транзакций только для чтения: по кругу из пулов реплик.
+ * <p>
+ * Основная база вместо реплики, если:
+ * <ul>
+ *     <li>пользователь недавно сам что-то изменил ({@link ReadYourWrites});</li>
+ *     <li>у всех реплик задержка больше max-lag или они недоступны;</li>
+ *     <li>пул реплики не выдал соединение.</li>
+ * </ul>
+ * Задержка реплик проверяется по расписанию. Метрики:
+ * bank.datasource.reads (pool, reason) - куда ушли чтения и почему,
+ * bank.datasource.replica.lag (pool) - последняя измеренная задержка,
+ * hikaricp.connections.* (pool) - пулы реплик.
+ */
+@Slf4j
+public class ReplicaDataSource extends AbstractDataSource implements Closeable {
+
+    ///-> Без новых записей на основной базе время последней применённой транзакции устаревает,
+    ///-> поэтому при совпадении полученного и применённого WAL задержка 0. На основной базе (не реплике) - тоже 0
+    private static final String LAG_SQL = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+            END
+            """;
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Counter readYourWrites;
+    private final Counter noHealthyReplica;
+    private final Counter fallback;
+
+    public ReplicaDataSource(DataSource primary, List<HikariDataSource> pools, Duration maxLag,
+                             MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.maxLagMillis = maxLag.toMillis();
+        this.replicas = pools.stream().map(pool -> new Replica(pool, meterRegistry)).toList();
+        this.readYourWrites = readCounter(meterRegistry, "primary", "read-your-writes");
+        this.noHealthyReplica = readCounter(meterRegistry, "primary", "no-healthy-replica");
+        this.fallback = readCounter(meterRegistry, "primary", "replica-error");
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (ReadYourWrites.primaryRequired()) {
+            readYourWrites.increment();
+            return primary.getConnection();
+        }
+        Replica replica = nextHealthy();
+        if (replica == null) {
+            noHealthyReplica.increment();
+            return primary.getConnection();
+        }
+        try {
+            Connection connection = replica.pool.getConnection();
+            replica.reads.increment();
+            return connection;
+        } catch (SQLException e) {
+            log.warn("Реплика {} не выдала соединение, чтение с основной базы: {}",
+                    replica.pool.getPoolName(), e.getMessage());
+            replica.healthy = false;
+            fallback.increment();
+            return primary.getConnection();
+        }
+    }
+
+    ///-> Учетные данные реплик задаются в настройках пула: соединение с другим пользователем - только с основной базы
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    @Scheduled(fixedDelayString = "${bank.datasource.replica.lag-check-interval:PT5S}")
+    public void checkLag() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.pool.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(LAG_SQL)) {
+                rs.next();
+                replica.lagMillis = rs.getLong(1);
+                boolean healthy = replica.lagMillis <= maxLagMillis;
+                if (healthy != replica.healthy) {
+                    log.info("Реплика {}: задержка {} мс, {}", replica.pool.getPoolName(), replica.lagMillis,
+                            healthy ? "чтения возвращаются" : "чтения идут на основную базу");
+                }
+                replica.healthy = healthy;
+            } catch (SQLException e) {
+                if (replica.healthy) {
+                    log.warn("Реплика {} недоступна: {}", replica.pool.getPoolName(), e.getMessage());
+                }
+                replica.healthy = false;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.pool.close());
+    }
+
+    private Replica nextHealthy() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private static Counter readCounter(MeterRegistry meterRegistry, String pool, String reason) {
+        return Counter.builder("bank.datasource.reads")
+                .description("Транзакции только для чтения по пулам")
+                .tag("pool", pool)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static final class Replica {
+        private final HikariDataSource pool;
+        private final Counter reads;
+        private volatile boolean healthy = true;
+        private volatile long lagMillis;
+
+        Replica(HikariDataSource pool, MeterRegistry meterRegistry) {
+            this.pool = pool;
+            this.reads = readCounter(meterRegistry, pool.getPoolName(), "replica");
+            Gauge.builder("bank.datasource.replica.lag", this, replica -> replica.lagMillis)
+                    .description("Задержка реплики при последней проверке, мс")
+                    .tag("pool", pool.getPoolName())
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+    }
+}
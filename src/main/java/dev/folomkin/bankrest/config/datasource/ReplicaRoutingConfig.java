@@ -0,0 +1,100 @@
+package dev.folomkin.bankrest.config.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Чтение с реплик: включается настройкой bank.datasource.replica.urls.
+ * <p>
+ * DataSource приложения - LazyConnectionDataSourceProxy над основной
+ * базой. Соединение берется при первом запросе транзакции, когда уже
+ * известно, что она только для чтения; такие транзакции
+ * (@Transactional(readOnly = true), транзакции репозиториев Spring Data)
+ * получают соединение из {@link ReplicaDataSource}, остальные - с
+ * основной базы. Liquibase и все записи идут на основную базу.
+ * <p>
+ * Без настройки этот класс не загружается и DataSource создает Spring Boot
+ * как обычно.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bank.datasource.replica.urls")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaDataSource replicaDataSource(
+            HikariDataSource primaryDataSource,
+            DataSourceProperties properties,
+            MeterRegistry meterRegistry,
+            @Value("${bank.datasource.replica.urls}") List<String> urls,
+            @Value("${bank.datasource.replica.username:${spring.datasource.username}}") String username,
+            @Value("${bank.datasource.replica.password:${spring.datasource.password}}") String password,
+            @Value("${bank.datasource.replica.maximum-pool-size:10}") int maximumPoolSize,
+            @Value("${bank.datasource.replica.max-lag:PT5S}") Duration maxLag) {
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("replica-" + (i + 1));
+            config.setJdbcUrl(urls.get(i).trim());
+            config.setDriverClassName(properties.determineDriverClassName());
+            config.setUsername(username);
+            config.setPassword(password);
+            config.setMaximumPoolSize(maximumPoolSize);
+            config.setReadOnly(true);
+            ///-> Недоступная при старте реплика не мешает запуску: до проверки задержки чтения идут на основную базу
+            config.setInitializationFailTimeout(-1);
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            pools.add(new HikariDataSource(config));
+        }
+        return new ReplicaDataSource(primaryDataSource, pools, maxLag, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+
+    @Bean
+    public ReadYourWrites readYourWrites(
+            @Value("${bank.datasource.replica.max-lag:PT5S}") Duration maxLag,
+            @Value("${bank.datasource.replica.read-your-writes-size:100000}") long maximumSize) {
+        return new ReadYourWrites(maxLag, maximumSize);
+    }
+
+    @Bean
+    public WebMvcConfigurer readYourWritesInterceptor(ReadYourWrites readYourWrites) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(readYourWrites);
+            }
+        };
+    }
+}
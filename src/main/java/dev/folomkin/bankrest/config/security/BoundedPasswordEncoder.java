@@ -0,0 +1,181 @@
+package dev.folomkin.bankrest.config.security;
+
+import dev.folomkin.bankrest.exceptions.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt в отдельном ограниченном пуле.
+ * <p>
+ * Хеш пароля - десятки миллисекунд CPU. При хешировании в потоке запроса
+ * волна входов занимает все ядра, и переводы ждут процессор. Здесь
+ * хешированием (вход, регистрация, пересчет хеша) занимаются только workers
+ * потоков, поток запроса ждет результат не дольше timeout. Очередь
+ * ограничена queue-capacity; при переполнении или таймауте -
+ * {@link ServiceOverloadedException} (503), запрос не ждет.
+ * <p>
+ * Стоимость BCrypt задается настройкой. Хеш с другой стоимостью
+ * {@link #upgradeEncoding} считает устаревшим, и DaoAuthenticationProvider
+ * пересчитывает его при следующем успешном входе - и при повышении, и при
+ * понижении стоимости.
+ * <p>
+ * Метрики: bank.auth.password.hash (operation) - время хеширования,
+ * bank.auth.password.cpu (operation) - процессорное время хеширования,
+ * bank.auth.password.queue.wait, bank.auth.password.rejected (reason),
+ * bank.auth.password.queue.depth, bank.auth.password.cost,
+ * executor.* (name=password-hashing) - состояние пула.
+ */
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    ///-> $2a$10$... : версия и стоимость в начале хеша
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$");
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final BCryptPasswordEncoder delegate;
+    private final int cost;
+    private final Duration timeout;
+    private final ThreadPoolExecutor executor;
+
+    private final Timer queueWait;
+    private final Timer encodeTime;
+    private final Timer matchesTime;
+    private final Timer encodeCpu;
+    private final Timer matchesCpu;
+    private final Counter queueFull;
+    private final Counter timedOut;
+
+    public BoundedPasswordEncoder(int cost, int workers, int queueCapacity, Duration timeout,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = new BCryptPasswordEncoder(cost);
+        this.cost = cost;
+        this.timeout = timeout;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "password-hashing-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        new ExecutorServiceMetrics(executor, "password-hashing", List.of()).bindTo(meterRegistry);
+        this.queueWait = Timer.builder("bank.auth.password.queue.wait")
+                .description("Время хеширования пароля в очереди до начала выполнения")
+                .register(meterRegistry);
+        this.encodeTime = hashTimer(meterRegistry, "bank.auth.password.hash", "Время хеширования пароля", "encode");
+        this.matchesTime = hashTimer(meterRegistry, "bank.auth.password.hash", "Время хеширования пароля", "matches");
+        this.encodeCpu = hashTimer(meterRegistry, "bank.auth.password.cpu", "Процессорное время хеширования пароля", "encode");
+        this.matchesCpu = hashTimer(meterRegistry, "bank.auth.password.cpu", "Процессорное время хеширования пароля", "matches");
+        this.queueFull = rejectedCounter(meterRegistry, "queue-full");
+        this.timedOut = rejectedCounter(meterRegistry, "timeout");
+        meterRegistry.gauge("bank.auth.password.queue.depth", executor.getQueue(), Collection::size);
+        Gauge.builder("bank.auth.password.cost", () -> cost)
+                .description("Стоимость BCrypt для новых хешей")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> delegate.encode(rawPassword), encodeTime, encodeCpu);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> delegate.matches(rawPassword, encodedPassword), matchesTime, matchesCpu);
+    }
+
+    /// Хеш с другой стоимостью или не BCrypt пересчитывается при входе
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return !matcher.find() || Integer.parseInt(matcher.group(1)) != cost;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Хеширование паролей не завершено за 10 с: в очереди {}", executor.getQueue().size());
+        }
+    }
+
+    private <T> T execute(Callable<T> hashing, Timer time, Timer cpu) {
+        long queuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long started = System.nanoTime();
+                queueWait.record(started - queuedAt, TimeUnit.NANOSECONDS);
+                long cpuStarted = THREADS.getCurrentThreadCpuTime();
+                try {
+                    return hashing.call();
+                } finally {
+                    cpu.record(THREADS.getCurrentThreadCpuTime() - cpuStarted, TimeUnit.NANOSECONDS);
+                    time.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queueFull.increment();
+            throw new ServiceOverloadedException("Слишком много входов одновременно, повторите запрос позже");
+        }
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            ///-> Еще не начатая задача снимается с очереди и не тратит CPU
+            future.cancel(false);
+            executor.remove((Runnable) future);
+            timedOut.increment();
+            throw new ServiceOverloadedException("Слишком много входов одновременно, повторите запрос позже");
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new ServiceOverloadedException("Проверка пароля прервана");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static Timer hashTimer(MeterRegistry meterRegistry, String name, String description, String operation) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("bank.auth.password.rejected")
+                .description("Хеширования паролей, не выполненные из-за перегрузки")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
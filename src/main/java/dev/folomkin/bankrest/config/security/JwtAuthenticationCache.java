@@ -0,0 +1,128 @@
+package dev.folomkin.bankrest.config.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import dev.folomkin.bankrest.config.JwtTokenProvider;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Кеш проверенных JWT-токенов.
+ * <p>
+ * Клиент шлет один и тот же токен в тысячах запросов, а проверка - это
+ * Base64, HMAC, разбор JSON claims и сборка списка ролей. Здесь результат
+ * проверки хранится до exp токена, повторный запрос с тем же токеном
+ * обходится SHA-256 и поиском в Caffeine.
+ * <p>
+ * Ключ - SHA-256 токена: в памяти не лежат сами токены, и ключ
+ * фиксированного размера. Кешируются только валидные токены, невалидные
+ * каждый раз проверяются заново. Отзыв ({@link TokenRevocations})
+ * проверяется и при промахе, и при попадании: отозванный токен удаляется из
+ * кеша в первом же запросе. Метрики cache.* с тегом cache=jwt-authentications.
+ */
+@Component
+public class JwtAuthenticationCache {
+
+    private final JwtTokenProvider jwtTokenProvider;
+    private final TokenRevocations tokenRevocations;
+    private final Cache<ByteBuffer, VerifiedToken> cache;
+
+    public JwtAuthenticationCache(JwtTokenProvider jwtTokenProvider,
+                                  TokenRevocations tokenRevocations,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${bank.jwt-cache.maximum-size:100000}") long maximumSize) {
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.tokenRevocations = tokenRevocations;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                ///-> Запись живет ровно до exp токена
+                .expireAfter(Expiry.<ByteBuffer, VerifiedToken>creating((key, token) ->
+                        maxZero(Duration.between(Instant.now(), token.expiresAt()))))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt-authentications");
+    }
+
+    /**
+     * Пользователь по токену.
+     * <p>
+     * null, если токен отозван или в нем нет id пользователя.
+     * Неверная подпись, истекший срок, битый формат - JwtException, как у парсера
+     */
+    public VerifiedToken get(String token) {
+        ByteBuffer key = digest(token);
+        VerifiedToken verified = cache.getIfPresent(key);
+        if (verified == null) {
+            verified = verify(token);
+            if (verified == null) {
+                return null;
+            }
+            ///-> Без exp токен бессрочный: такой не кешируем
+            if (verified.expiresAt() != null) {
+                cache.put(key, verified);
+            }
+        }
+        if (tokenRevocations.isRevoked(verified.principal().id(), verified.issuedAt())) {
+            cache.invalidate(key);
+            return null;
+        }
+        return verified;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private VerifiedToken verify(String token) {
+        Claims claims = jwtTokenProvider.extractAllClaims(token);
+        return jwtTokenProvider.toPrincipal(claims)
+                .map(principal -> new VerifiedToken(principal, principal.authorities(),
+                        jwtTokenProvider.issuedAt(claims), toInstant(claims.getExpiration())))
+                .orElse(null);
+    }
+
+    ///-> ByteBuffer сравнивается и хешируется по содержимому
+    private static ByteBuffer digest(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    private static Instant toInstant(Date date) {
+        return date == null ? null : date.toInstant();
+    }
+
+    private static Duration maxZero(Duration duration) {
+        return duration.isNegative() ? Duration.ZERO : duration;
+    }
+
+    /**
+     * Проверенный токен: пользователь и готовый список ролей
+     *
+     * @param principal   пользователь из claims
+     * @param authorities роли для Authentication
+     * @param issuedAt    время выдачи с точностью до миллисекунды, для проверки отзыва
+     * @param expiresAt   exp, до него запись живет в кеше; null - токен без срока, не кешируется
+     */
+    public record VerifiedToken(AuthenticatedUser principal, List<GrantedAuthority> authorities,
+                                Instant issuedAt, Instant expiresAt) {
+    }
+}
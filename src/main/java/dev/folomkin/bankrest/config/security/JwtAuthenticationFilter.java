@@ -1,40 +1,33 @@
 package dev.folomkin.bankrest.config.security;
 
-
-import dev.folomkin.bankrest.config.JwtTokenProvider;
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jws;
-import io.jsonwebtoken.JwtException;
-import io.jsonwebtoken.JwtParser;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.stream.Collectors;
 
 
 /**
  * Фильтр, который перехватывает каждый запрос и проверяет наличие валидного JWT-токена
  * в заголовке Authorization: Bearer <token>.
  * Если токен валиден — автоматически аутентифицирует пользователя в Spring Security.
+ * Проверенные токены берутся из {@link JwtAuthenticationCache}: подпись и claims
+ * разбираются один раз на токен, а не на каждый запрос.
  */
 @Component // Бин Spring, чтобы можно было инжектить в SecurityConfig
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    private final JwtTokenProvider jwtTokenProvider;
+    private final JwtAuthenticationCache jwtAuthenticationCache;
 
-    // Инжектируем провайдер через конструктор (рекомендуемый способ в Spring)
-    public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider) {
-        this.jwtTokenProvider = jwtTokenProvider;
+    // Инжектируем кеш проверенных токенов через конструктор (рекомендуемый способ в Spring)
+    public JwtAuthenticationFilter(JwtAuthenticationCache jwtAuthenticationCache) {
+        this.jwtAuthenticationCache = jwtAuthenticationCache;
     }
 
     @Override
@@ -55,27 +48,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         String token = header.substring(7);
 
         try {
-            // Парсим токен с проверкой подписи (используем готовый парсер из провайдера)
-            Jws<Claims> jws = jwtTokenProvider.getJwtParser().parseSignedClaims(token);
-            Claims claims = jws.getPayload();
-
-            String username = claims.getSubject();
-
-            // Если username есть и пользователь ещё не аутентифицирован в этом запросе
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-
-                // Извлекаем список ролей из claims (мы сохраняли их как List<String>)
-                @SuppressWarnings("unchecked")
-                List<String> roles = claims.get("roles", List.class);
+            // Проверенный токен: из кеша или после проверки подписи и срока. null - отозван или без id
+            JwtAuthenticationCache.VerifiedToken verified = jwtAuthenticationCache.get(token);
 
-                // Преобразуем роли в GrantedAuthority (Spring ожидает префикс ROLE_)
-                var authorities = roles.stream()
-                        .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-                        .toList();
+            // Если токен принят и пользователь ещё не аутентифицирован в этом запросе
+            if (verified != null && SecurityContextHolder.getContext().getAuthentication() == null) {
 
-                // Создаём объект аутентификации (principal = username, credentials = null, authorities)
+                // Создаём объект аутентификации (principal = AuthenticatedUser, credentials = null, authorities).
+                // Объект изменяемый (детали запроса), поэтому свой на каждый запрос; principal и роли - из кеша
                 var authentication = new UsernamePasswordAuthenticationToken(
-                        username, null, authorities);
+                        verified.principal(), null, verified.authorities());
 
                 // Добавляем детали запроса (IP, sessionId и т.д.) — полезно для аудита
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
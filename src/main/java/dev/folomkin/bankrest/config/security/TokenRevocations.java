@@ -0,0 +1,67 @@
+package dev.folomkin.bankrest.config.security;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Отзыв JWT-токенов пользователя: выход, смена ролей.
+ * <p>
+ * Момент отзыва хранится в users.tokens_revoked_at; токен отозван, если
+ * выдан не позже этого момента. Время выдачи сравнивается с точностью до
+ * миллисекунды (claim iat_ms), поэтому вход сразу после выхода дает
+ * рабочий токен. У токенов без iat_ms есть только iat в секундах: такой
+ * токен, выданный в секунду отзыва, считается отозванным - лучше лишний
+ * повторный вход, чем живой старый токен.
+ * <p>
+ * Проверка идет на каждый запрос, поэтому момент отзыва читается из базы
+ * не чаще раза в refresh на пользователя. Экземпляр, где был отзыв, видит
+ * его сразу, остальные экземпляры - не позже чем через refresh.
+ */
+@Component
+public class TokenRevocations {
+
+    /// Токены пользователя не отзывались: Caffeine не хранит null
+    private static final Instant NEVER = Instant.EPOCH;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /// Id пользователя -> момент отзыва его токенов, прочитанный из базы
+    private final LoadingCache<Long, Instant> revokedAt;
+
+    public TokenRevocations(JdbcTemplate jdbcTemplate,
+                            @Value("${bank.token-revocations.refresh:PT5S}") Duration refresh,
+                            @Value("${bank.token-revocations.maximum-size:100000}") long maximumSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.revokedAt = Caffeine.newBuilder()
+                .expireAfterWrite(refresh)
+                .maximumSize(maximumSize)
+                .build(this::load);
+    }
+
+    /// Отзывает все токены пользователя, выданные до этого момента
+    public void revokeAll(Long userId) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        jdbcTemplate.update("UPDATE users SET tokens_revoked_at = ? WHERE id = ?", Timestamp.from(now), userId);
+        revokedAt.put(userId, now);
+    }
+
+    public boolean isRevoked(Long userId, Instant issuedAt) {
+        Instant revoked = revokedAt.get(userId);
+        return revoked != NEVER && (issuedAt == null || !issuedAt.isAfter(revoked));
+    }
+
+    private Instant load(Long userId) {
+        List<Timestamp> revoked = jdbcTemplate.query("SELECT tokens_revoked_at FROM users WHERE id = ?",
+                (rs, rowNum) -> rs.getTimestamp(1), userId);
+        return revoked == null || revoked.isEmpty() || revoked.get(0) == null ? NEVER : revoked.get(0).toInstant();
+    }
+}
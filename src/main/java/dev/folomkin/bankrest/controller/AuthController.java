@@ -1,5 +1,6 @@
 package dev.folomkin.bankrest.controller;
 
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
 import dev.folomkin.bankrest.domain.dto.security.JwtResponse;
 import dev.folomkin.bankrest.domain.dto.security.LoginRequest;
 import dev.folomkin.bankrest.domain.dto.user.UserRequest;
@@ -11,6 +12,7 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
@@ -37,6 +39,16 @@ public class AuthController {
         return authService.login(request);
     }
 
+    @Operation(summary = "Выход пользователя", description = "Все выданные пользователю токены отзываются")
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@AuthenticationPrincipal AuthenticatedUser user) {
+        if (user == null) {
+            return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        }
+        authService.logout(user);
+        return ResponseEntity.noContent().build();
+    }
+
     /**
      * Используется для детализации ошибок полей DTO
      */
@@ -1,10 +1,18 @@
 package dev.folomkin.bankrest.controller;
 
+import dev.folomkin.bankrest.domain.dto.CursorPageResponse;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceSlotsRequest;
 import dev.folomkin.bankrest.domain.dto.card.CardRequest;
 import dev.folomkin.bankrest.domain.dto.card.CardResponse;
+import dev.folomkin.bankrest.domain.dto.card.CardSearchRequest;
 import dev.folomkin.bankrest.domain.dto.card.CardStatusRequest;
-import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.model.CardStatus;
 import dev.folomkin.bankrest.service.card.CardService;
+import dev.folomkin.bankrest.service.card.bulk.CardImportResult;
+import dev.folomkin.bankrest.service.card.bulk.CardImportService;
+import dev.folomkin.bankrest.service.export.DataExportService;
+import dev.folomkin.bankrest.service.export.ExportFormat;
 import dev.folomkin.bankrest.service.user.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -14,9 +22,11 @@ import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -25,7 +35,11 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,20 +53,27 @@ public class CardController {
 
     private CardService cardService;
     private UserService userService;
+    private DataExportService dataExportService;
+
+    private CardImportService cardImportService;
 
     /// Методы карт:
     ///
     /// create() - Создание карты с указанием id пользователя карты
+    /// importCards() - Пакетная загрузка карт из CSV с файлом отклоненных строк
     /// getAllCards() - Получение списка всех карт
+    /// exportCards() - Потоковая выгрузка всех карт в NDJSON или CSV
     /// getCardById() - Получение карты по id
     /// getCardByNumber() - Получение карты по последним 4 цифрам номера
     /// getCardsByUserId() - Получение списка карт пользователя по id пользователя
     /// updateCardStatusById() - Обновление статуса карты по id карты
     /// updateCardStatusByNumber() - Обновление статуса карты по номеру карты
+    /// updateBalanceSlotsById() - Включение слотов подбаланса для карты с большим потоком зачислений
     /// deleteCardById() - Удаление карты по id карты
     /// deleteCardByNumber() - Удаление карты по номеру карты
     /// getCardsByBlockRequest() - Получение списка карт с запросом на блокировку
     /// getCardResponsePages() - Получение списка карт с пагинацией, фильтрацией и сортировкой
+    /// scrollCards() - Поиск карт с фильтрами и пагинацией по курсору
 
 
     @Operation(
@@ -68,10 +89,31 @@ public class CardController {
     @PreAuthorize(value = "hasRole('ADMIN')")
     public ResponseEntity<CardResponse> create(
             @Valid @RequestBody CardRequest cardRequest,
-            @AuthenticationPrincipal User user) {
+            @AuthenticationPrincipal AuthenticatedUser user) {
         return new ResponseEntity<>(cardService.createCard(cardRequest, user), HttpStatus.CREATED);
     }
 
+    @Operation(
+            summary = "Пакетная загрузка карт",
+            description = "CSV с заголовком " + CardImportService.HEADER + ". userId 0 - текущий пользователь. " +
+                    "Итог в заголовках X-Import-*, в теле - CSV отклоненных строк с причинами"
+    )
+    @PostMapping(value = "/import", consumes = "text/csv")
+    @PreAuthorize(value = "hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> importCards(
+            InputStream csv,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        CardImportResult result = cardImportService.importCards(csv, user);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/csv;charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=rejected-cards.csv")
+                .header("X-Import-Id", result.importId().toString())
+                .header("X-Import-Total", Long.toString(result.total()))
+                .header("X-Import-Imported", Long.toString(result.imported()))
+                .header("X-Import-Rejected", Long.toString(result.rejected()))
+                .body(out -> cardImportService.writeRejected(result.importId(), out));
+    }
+
     @Operation(
             summary = "Получение списка всех карт",
             description = "Список без пагинации и фильтров"
@@ -83,6 +125,24 @@ public class CardController {
     }
 
 
+    @Operation(
+            summary = "Выгрузка всех карт",
+            description = "Карты с владельцами потоком, без загрузки списка в память. " +
+                    "NDJSON - JSON-объект на строку, CSV - с заголовком"
+    )
+    @GetMapping(value = "/export")
+    @PreAuthorize(value = "hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportCards(
+            @RequestParam(value = "format", defaultValue = "NDJSON")
+            @Parameter(description = "Формат: NDJSON или CSV") ExportFormat format
+    ) {
+        return ResponseEntity.ok()
+                .contentType(format.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + format.fileName("cards"))
+                .body(out -> dataExportService.exportCards(format, out));
+    }
+
+
     @Operation(
             summary = "Получение карты по id",
             description = "Поиск по id карты"
@@ -160,6 +220,25 @@ public class CardController {
     }
 
 
+    @Operation(
+            summary = "Слоты подбаланса карты",
+            description = "Для карт, на которые одновременно приходит много зачислений. " +
+                    "Зачисления распределяются по указанному числу слотов, баланс карты остается одним числом. " +
+                    "0 - выключить слоты"
+    )
+    @PutMapping(value = "/update-balance-slots-card-id/{cardId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize(value = "hasRole('ADMIN')")
+    public ResponseEntity<CardResponse> updateBalanceSlotsById(
+            @PathVariable("cardId")
+            @Parameter(description = "Идентификатор карты", required = true)
+            Long cardId,
+            @Valid @RequestBody @Parameter(description = "Число слотов", required = true)
+            CardBalanceSlotsRequest slotsRequest
+    ) {
+        return new ResponseEntity<>(cardService.updateBalanceSlotsById(cardId, slotsRequest), HttpStatus.OK);
+    }
+
+
     @Operation(
             summary = "Удаление карты по id",
             description = "Укажите id карты"
@@ -203,19 +282,61 @@ public class CardController {
     }
 
 
-    @Operation(summary = "Получение списка всех карт постранично", description = "")
+    @Operation(summary = "Поиск карт с фильтрами постранично",
+            description = "Фильтры по статусу, сроку действия, балансу и владельцу выполняются в базе. " +
+                    "Общее количество карт считается, только если передан withTotal=true")
     @PreAuthorize("hasRole('ADMIN')")
     @GetMapping(value = "/filter-cards", produces = MediaType.APPLICATION_JSON_VALUE)
-    public Page<CardResponse> getCardsPages(
+    public Slice<CardResponse> getCardsPages(
             @RequestParam(value = "offset", defaultValue = "0")
             @Min(0) @Parameter(description = "Номер страницы с результатом") Integer offset,
             @RequestParam(value = "limit", defaultValue = "50") @Min(1) @Max(50)
             @Parameter(description = "Количество выводимых карт на странице. Минимум 1, максимум 50") Integer limit,
             @RequestParam(value = "sort") @Parameter(description = "Поле сортировки") String sortField,
-            @RequestParam(value = "owner", required = false) @Parameter(description = "Email пользователя") String owner
+            @RequestParam(value = "status", required = false) @Parameter(description = "Статус карты") CardStatus status,
+            @RequestParam(value = "expiresFrom", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            @Parameter(description = "Срок действия не раньше даты, включительно, например 2026-11-01") LocalDate expiresFrom,
+            @RequestParam(value = "expiresTo", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            @Parameter(description = "Срок действия не позже даты, включительно, например 2026-11-30") LocalDate expiresTo,
+            @RequestParam(value = "balanceFrom", required = false) @Parameter(description = "Баланс не меньше суммы") BigDecimal balanceFrom,
+            @RequestParam(value = "balanceTo", required = false) @Parameter(description = "Баланс не больше суммы") BigDecimal balanceTo,
+            @RequestParam(value = "owner", required = false)
+            @Parameter(description = "Начало email или имени пользователя владельца, без учета регистра") String owner,
+            @RequestParam(value = "withTotal", defaultValue = "false")
+            @Parameter(description = "Вернуть общее количество карт и страниц (отдельный запрос количества)") boolean withTotal
     ) {
         PageRequest pageRequest = PageRequest.of(offset, limit, Sort.by(Sort.Direction.ASC, sortField));
-        return cardService.getCardsPages(pageRequest, owner);
+        CardSearchRequest search = new CardSearchRequest(status, expiresFrom, expiresTo, balanceFrom, balanceTo, owner);
+        return cardService.getCardsPages(pageRequest, search, withTotal);
+    }
+
+
+    @Operation(summary = "Поиск карт с фильтрами по курсору",
+            description = "Сортировка по id, expirationDate или balanceMinor. Для следующей страницы передайте " +
+                    "nextCursor из ответа с теми же фильтрами и сортировкой. Стоимость страницы не зависит от ее номера")
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(value = "/filter-cards/scroll", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CursorPageResponse<CardResponse> scrollCards(
+            @RequestParam(value = "limit", defaultValue = "50") @Min(1) @Max(50)
+            @Parameter(description = "Количество выводимых карт на странице. Минимум 1, максимум 50") Integer limit,
+            @RequestParam(value = "sort", defaultValue = "id") @Parameter(description = "Поле сортировки") String sortField,
+            @RequestParam(value = "cursor", required = false) @Parameter(description = "Курсор из предыдущей страницы") String cursor,
+            @RequestParam(value = "status", required = false) @Parameter(description = "Статус карты") CardStatus status,
+            @RequestParam(value = "expiresFrom", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            @Parameter(description = "Срок действия не раньше даты, включительно, например 2026-11-01") LocalDate expiresFrom,
+            @RequestParam(value = "expiresTo", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            @Parameter(description = "Срок действия не позже даты, включительно, например 2026-11-30") LocalDate expiresTo,
+            @RequestParam(value = "balanceFrom", required = false) @Parameter(description = "Баланс не меньше суммы") BigDecimal balanceFrom,
+            @RequestParam(value = "balanceTo", required = false) @Parameter(description = "Баланс не больше суммы") BigDecimal balanceTo,
+            @RequestParam(value = "owner", required = false)
+            @Parameter(description = "Начало email или имени пользователя владельца, без учета регистра") String owner
+    ) {
+        CardSearchRequest search = new CardSearchRequest(status, expiresFrom, expiresTo, balanceFrom, balanceTo, owner);
+        return cardService.scrollCards(search, sortField, cursor, limit);
     }
 
 
@@ -1,29 +1,48 @@
 package dev.folomkin.bankrest.controller;
 
+import dev.folomkin.bankrest.domain.dto.CursorPageResponse;
+import dev.folomkin.bankrest.domain.dto.card.AsyncTransferResponse;
 import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
 import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.card.CardBatchTransferRequest;
+import dev.folomkin.bankrest.domain.dto.card.CardBatchTransferResponse;
+import dev.folomkin.bankrest.domain.dto.card.CardLedgerEntryResponse;
 import dev.folomkin.bankrest.domain.dto.card.CardResponse;
+import dev.folomkin.bankrest.domain.dto.card.TransferPageResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
 import dev.folomkin.bankrest.domain.dto.user.UserResponse;
-import dev.folomkin.bankrest.domain.model.User;
 import dev.folomkin.bankrest.service.card.CardService;
+import dev.folomkin.bankrest.service.card.transfer.AsyncTransferService;
+import dev.folomkin.bankrest.service.export.DataExportService;
+import dev.folomkin.bankrest.service.export.ExportFormat;
 import dev.folomkin.bankrest.service.user.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import lombok.AllArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1/users")
@@ -36,16 +55,24 @@ public class UserController {
 
     private final UserService userService;
     private final CardService cardService;
+    private final AsyncTransferService asyncTransferService;
+    private final DataExportService dataExportService;
 
     /// -> Метода Администратора:
     ///
     /// getAllUsers() - Получение списка всех пользователей
+    /// exportUsers() - Потоковая выгрузка всех пользователей в NDJSON или CSV
     /// getUserById() - Получение пользователя по id
     /// getUsersPages() - Получение списка пользователей с пагинацией
+    /// scrollUsers() - Получение списка пользователей с пагинацией по курсору
     ///
     /// -> Методы пользователя
     ///
     /// changeCardBalance() - Перевод между своими картами. Указывается последние 4 цифры номера карты-отправителя, последние 4 цифры номера карты-получателя и сумма перевода
+    /// changeCardBalanceAsync() - Перевод с ответом 202 без ожидания выполнения. Статус - getAsyncTransfer()
+    /// changeCardBalanceBatch() - Пакет переводов между своими картами в одной транзакции
+    /// getCardHistory() - История проводок по своей карте, новые первыми
+    /// getTransfers() - История своих переводов с пагинацией по курсору, фильтры по карте и периоду
     /// sendingBlockingRequest() - Отправка запроса на блокировку карты. Пользователь меняет статус карты на BLOCKREQUEST, Администратор видит все карты с этим статусом и блокирует
 
     @Operation(summary = "Получение списка всех пользователей. Для Администратора", description = "")
@@ -56,6 +83,22 @@ public class UserController {
     }
 
 
+    @Operation(summary = "Выгрузка всех пользователей. Для Администратора",
+            description = "Пользователи потоком, без загрузки списка в память. " +
+                    "NDJSON - JSON-объект на строку, CSV - с заголовком")
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(value = "/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(value = "format", defaultValue = "NDJSON")
+            @Parameter(description = "Формат: NDJSON или CSV") ExportFormat format
+    ) {
+        return ResponseEntity.ok()
+                .contentType(format.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + format.fileName("users"))
+                .body(out -> dataExportService.exportUsers(format, out));
+    }
+
+
     @Operation(summary = "Получение пользователя по id. Для Администратора", description = "")
     @PreAuthorize("hasRole('ADMIN')")
     @GetMapping("/{userid}")
@@ -70,29 +113,126 @@ public class UserController {
 
     @Operation(summary = "Получение списка своих карт текущим пользователем. Для Пользователя", description = "")
     @GetMapping("/my-cards")
-    public Page<CardResponse> getMyCards(
+    public Slice<CardResponse> getMyCards(
             @RequestParam(value = "offset", defaultValue = "0")
             @Min(0) @Parameter(description = "Номер страницы с результатом") Integer offset,
             @RequestParam(value = "limit", defaultValue = "50") @Min(1) @Max(50)
             @Parameter(description = "Количество выводимых карт на странице. Минимум 1, максимум 50") Integer limit,
             @RequestParam(value = "sort") @Parameter(description = "Поле сортировки") String sortField,
             @RequestParam(value = "cardNumber", required = false) @Parameter(description = "Укажите 4 последние цифры номера своей карты") String cardNumber,
-            @AuthenticationPrincipal User user
+            @RequestParam(value = "withTotal", defaultValue = "false")
+            @Parameter(description = "Вернуть общее количество карт и страниц (отдельный запрос количества)") boolean withTotal,
+            @AuthenticationPrincipal AuthenticatedUser user
     ) {
         PageRequest pageRequest = PageRequest.of(offset, limit, Sort.by(Sort.Direction.ASC, sortField));
-        return cardService.getCardsByPrincipal(pageRequest, cardNumber, user);
+        return cardService.getCardsByPrincipal(pageRequest, cardNumber, withTotal, user);
     }
 
 
     @Operation(
             summary = "Перевод средств между своими картами. Для Пользователя",
-            description = "Укажите последние 4 цифры номера карты-отправителя, карты-получателя и сумму перевода")
+            description = "Укажите последние 4 цифры номера карты-отправителя, карты-получателя и сумму перевода. " +
+                    "При повторе запроса с тем же заголовком Idempotency-Key перевод не выполняется повторно, " +
+                    "возвращается ответ первого запроса")
     @PostMapping(value = "/change-balance", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<CardBalanceChangeResponse> changeCardBalance(
             @RequestBody CardBalanceChangeRequest changeRequest,
-            @AuthenticationPrincipal User user
+            @RequestHeader(value = "Idempotency-Key", required = false)
+            @Parameter(description = "Уникальный ключ перевода, до 100 символов") String idempotencyKey,
+            @AuthenticationPrincipal AuthenticatedUser user
+    ) {
+        return new ResponseEntity<>(cardService.balanceChange(changeRequest, user, idempotencyKey), HttpStatus.OK);
+    }
+
+
+    @Operation(
+            summary = "Асинхронный перевод средств между своими картами. Для Пользователя",
+            description = "Перевод ставится в очередь, ответ 202 содержит id для запроса статуса. " +
+                    "Если очередь переполнена - 429, запрос нужно повторить позже. " +
+                    "Заголовок Idempotency-Key действует так же, как в синхронном переводе")
+    @PostMapping(value = "/change-balance/async", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<AsyncTransferResponse> changeCardBalanceAsync(
+            @RequestBody CardBalanceChangeRequest changeRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false)
+            @Parameter(description = "Уникальный ключ перевода, до 100 символов") String idempotencyKey,
+            @AuthenticationPrincipal AuthenticatedUser user
+    ) {
+        AsyncTransferResponse response = asyncTransferService.submit(changeRequest, user, idempotencyKey);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/users/transfers/async/" + response.id()))
+                .body(response);
+    }
+
+
+    @Operation(
+            summary = "Статус асинхронного перевода. Для Пользователя",
+            description = "При wait больше нуля ответ приходит после завершения перевода, но не позже wait секунд")
+    @GetMapping(value = "/transfers/async/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<AsyncTransferResponse> getAsyncTransfer(
+            @PathVariable("id") @Parameter(description = "Id перевода из ответа 202", required = true) UUID id,
+            @RequestParam(value = "wait", defaultValue = "0") @Min(0) @Max(30)
+            @Parameter(description = "Сколько секунд ждать завершения. Максимум 30") Integer wait,
+            @AuthenticationPrincipal AuthenticatedUser user
+    ) {
+        return asyncTransferService.status(id, user, Duration.ofSeconds(wait));
+    }
+
+
+    @Operation(
+            summary = "Пакет переводов между своими картами. Для Пользователя",
+            description = "Переводы выполняются в одной транзакции в порядке следования. " +
+                    "ALL_OR_NOTHING - ошибка в любом переводе отменяет весь пакет, " +
+                    "BEST_EFFORT - ошибочные переводы пропускаются")
+    @PostMapping(value = "/change-balance/batch",
+            produces = MediaType.APPLICATION_JSON_VALUE,
+            consumes = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<CardBatchTransferResponse> changeCardBalanceBatch(
+            @Valid @RequestBody CardBatchTransferRequest batchRequest,
+            @AuthenticationPrincipal AuthenticatedUser user
     ) {
-        return new ResponseEntity<>(cardService.balanceChange(changeRequest, user), HttpStatus.OK);
+        return new ResponseEntity<>(cardService.batchBalanceChange(batchRequest, user), HttpStatus.OK);
+    }
+
+
+    @Operation(
+            summary = "История проводок по своей карте. Для Пользователя",
+            description = "Укажите последние 4 цифры номера. Проводки отдаются от новых к старым")
+    @GetMapping(value = "/cards/{cardNumber}/history", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Page<CardLedgerEntryResponse> getCardHistory(
+            @PathVariable("cardNumber")
+            @Parameter(description = "Последние 4 цифры номера карты", required = true) String cardNumber,
+            @RequestParam(value = "offset", defaultValue = "0")
+            @Min(0) @Parameter(description = "Номер страницы с результатом") Integer offset,
+            @RequestParam(value = "limit", defaultValue = "50") @Min(1) @Max(100)
+            @Parameter(description = "Количество проводок на странице. Минимум 1, максимум 100") Integer limit,
+            @AuthenticationPrincipal AuthenticatedUser user
+    ) {
+        return cardService.getCardHistory(cardNumber, PageRequest.of(offset, limit), user);
+    }
+
+
+    @Operation(
+            summary = "История своих переводов. Для Пользователя",
+            description = "Переводы от новых к старым. Для следующей страницы передайте nextCursor из ответа. " +
+                    "Фильтры: последние 4 цифры карты (отправитель или получатель) и период [from, to)")
+    @GetMapping(value = "/transfers", produces = MediaType.APPLICATION_JSON_VALUE)
+    public TransferPageResponse getTransfers(
+            @RequestParam(value = "card", required = false)
+            @Parameter(description = "Последние 4 цифры номера карты") String cardNumber,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            @Parameter(description = "Начало периода, включительно") LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            @Parameter(description = "Конец периода, не включительно") LocalDateTime to,
+            @RequestParam(value = "cursor", required = false)
+            @Parameter(description = "nextCursor предыдущей страницы") String cursor,
+            @RequestParam(value = "limit", defaultValue = "50") @Min(1) @Max(100)
+            @Parameter(description = "Количество переводов на странице. Минимум 1, максимум 100") Integer limit,
+            @AuthenticationPrincipal AuthenticatedUser user
+    ) {
+        return cardService.getTransfers(user, cardNumber, from, to, cursor, limit);
     }
 
 
@@ -104,7 +244,7 @@ public class UserController {
     public ResponseEntity<CardResponse> sendingBlockingRequest(
             @PathVariable("cardNumber")
             @Parameter(description = "Последние 4 цифры номера карты", required = true) String cardNumber,
-            @AuthenticationPrincipal User user
+            @AuthenticationPrincipal AuthenticatedUser user
     ) {
         return new ResponseEntity<>(cardService.sendingBlockingRequest(cardNumber, user), HttpStatus.OK);
     }
@@ -123,4 +263,19 @@ public class UserController {
         PageRequest pageRequest = PageRequest.of(offset, limit, Sort.by(Sort.Direction.ASC, sortField));
         return userService.getUsersPages(pageRequest);
     }
+
+
+    @Operation(summary = "Получение списка пользователей по курсору. Для Администратора",
+            description = "Сортировка по id, username или email. Для следующей страницы передайте nextCursor " +
+                    "из ответа с той же сортировкой. Стоимость страницы не зависит от ее номера")
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(value = "/filter-users/scroll", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CursorPageResponse<UserResponse> scrollUsers(
+            @RequestParam(value = "limit", defaultValue = "30") @Min(1) @Max(30)
+            @Parameter(description = "Количество выводимых пользователей на странице. Минимум 1, максимум 30") Integer limit,
+            @RequestParam(value = "sort", defaultValue = "id") @Parameter(description = "Поле сортировки") String sortField,
+            @RequestParam(value = "cursor", required = false) @Parameter(description = "Курсор из предыдущей страницы") String cursor
+    ) {
+        return userService.scrollUsers(sortField, cursor, limit);
+    }
 }
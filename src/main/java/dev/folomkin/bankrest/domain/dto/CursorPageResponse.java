@@ -0,0 +1,15 @@
+package dev.folomkin.bankrest.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Страница с курсором следующей страницы, без общего количества")
+public record CursorPageResponse<T>(
+        @Schema(description = "Элементы страницы")
+        List<T> items,
+
+        @Schema(description = "Курсор следующей страницы. null - страниц больше нет")
+        String nextCursor
+) {
+}
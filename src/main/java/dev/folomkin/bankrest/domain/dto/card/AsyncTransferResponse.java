@@ -0,0 +1,22 @@
+package dev.folomkin.bankrest.domain.dto.card;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.UUID;
+
+@Schema(description = "Статус перевода, принятого на асинхронное выполнение")
+public record AsyncTransferResponse(
+
+        @Schema(description = "Id перевода для запроса статуса")
+        UUID id,
+
+        @Schema(description = "Статус: QUEUED, RUNNING, COMPLETED, FAILED")
+        AsyncTransferStatus status,
+
+        @Schema(description = "Результат перевода, если статус COMPLETED")
+        CardBalanceChangeResponse result,
+
+        @Schema(description = "Причина отказа, если статус FAILED")
+        String error
+) {
+}
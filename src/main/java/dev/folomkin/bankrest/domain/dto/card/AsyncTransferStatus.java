@@ -0,0 +1,12 @@
+package dev.folomkin.bankrest.domain.dto.card;
+
+public enum AsyncTransferStatus {
+    /// Перевод принят и ждет в очереди
+    QUEUED,
+    /// Перевод выполняется
+    RUNNING,
+    /// Перевод выполнен, результат в поле result
+    COMPLETED,
+    /// Перевод отклонен, причина в поле error
+    FAILED
+}
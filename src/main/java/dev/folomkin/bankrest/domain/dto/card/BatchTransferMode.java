@@ -0,0 +1,8 @@
+package dev.folomkin.bankrest.domain.dto.card;
+
+public enum BatchTransferMode {
+    /// Ошибка в любом переводе откатывает весь пакет
+    ALL_OR_NOTHING,
+    /// Ошибочные переводы пропускаются, остальные выполняются
+    BEST_EFFORT
+}
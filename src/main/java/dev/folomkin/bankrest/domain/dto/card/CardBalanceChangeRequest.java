@@ -1,18 +1,23 @@
 package dev.folomkin.bankrest.domain.dto.card;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
 
 import java.math.BigDecimal;
 
 @Schema(description = "Форма перевода средств между картами")
 public record CardBalanceChangeRequest(
         @Schema(description = "Номер карты отправителя. Указать последние 4 цифры", example = "1111")
+        @NotBlank(message = "Укажите карту-отправителя")
         String cardNumberOut,
 
         @Schema(description = "Номер карты получателя. Указать последние 4 цифры", example = "1111")
+        @NotBlank(message = "Укажите карту-получателя")
         String cardNumberIn,
 
         @Schema(description = "Сумма перевода", example = "12.3")
+        @NotNull(message = "Укажите сумму перевода")
         BigDecimal amount
 ) {
 }
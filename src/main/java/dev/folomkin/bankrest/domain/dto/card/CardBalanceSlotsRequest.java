@@ -0,0 +1,15 @@
+package dev.folomkin.bankrest.domain.dto.card;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+@Schema(description = "Форма изменения числа слотов подбаланса карты")
+public record CardBalanceSlotsRequest(
+        @Schema(description = "Число слотов, 0 - выключить", example = "16")
+        @NotNull
+        @Min(0)
+        @Max(64)
+        Integer slots
+) {}
@@ -0,0 +1,19 @@
+package dev.folomkin.bankrest.domain.dto.card;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Результат одного перевода из пакета")
+public record CardBatchTransferItemResult(
+        @Schema(description = "Порядковый номер перевода в запросе, начиная с 0")
+        int index,
+
+        @Schema(description = "Перевод выполнен")
+        boolean success,
+
+        @Schema(description = "Балансы карт сразу после перевода")
+        CardBalanceChangeResponse result,
+
+        @Schema(description = "Причина отказа")
+        String error
+) {
+}
@@ -0,0 +1,22 @@
+package dev.folomkin.bankrest.domain.dto.card;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+@Schema(description = "Пакет переводов между своими картами")
+public record CardBatchTransferRequest(
+        @Schema(description = "Переводы. Выполняются в порядке следования")
+        @NotEmpty(message = "Укажите хотя бы один перевод")
+        @Size(max = 500, message = "В пакете может быть не более 500 переводов")
+        List<@NotNull(message = "Перевод в пакете не должен быть пустым") @Valid CardBalanceChangeRequest> transfers,
+
+        @Schema(description = "Режим выполнения пакета", example = "ALL_OR_NOTHING")
+        @NotNull
+        BatchTransferMode mode
+) {
+}
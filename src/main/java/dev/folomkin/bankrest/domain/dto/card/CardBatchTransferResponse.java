@@ -0,0 +1,18 @@
+package dev.folomkin.bankrest.domain.dto.card;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Возвращаемый объект при пакетном переводе")
+public record CardBatchTransferResponse(
+        @Schema(description = "Количество выполненных переводов")
+        int succeeded,
+
+        @Schema(description = "Количество отклоненных переводов")
+        int failed,
+
+        @Schema(description = "Результаты в порядке запроса")
+        List<CardBatchTransferItemResult> results
+) {
+}
@@ -0,0 +1,24 @@
+package dev.folomkin.bankrest.domain.dto.card;
+
+import dev.folomkin.bankrest.domain.model.LedgerDirection;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Schema(description = "Проводка по карте")
+public record CardLedgerEntryResponse(
+        @Schema(description = "Id перевода. Общий у списания и зачисления одного перевода")
+        UUID transferId,
+
+        @Schema(description = "DEBIT - списание, CREDIT - зачисление")
+        LedgerDirection direction,
+
+        @Schema(description = "Сумма")
+        BigDecimal amount,
+
+        @Schema(description = "Время проводки")
+        LocalDateTime createdAt
+) {
+}
@@ -0,0 +1,23 @@
+package dev.folomkin.bankrest.domain.dto.card;
+
+import dev.folomkin.bankrest.domain.model.CardStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Schema(description = "Фильтры поиска карт администратором. Пустое поле - фильтр не применяется")
+public record CardSearchRequest(
+        @Schema(description = "Статус карты", example = "ACTIVE")
+        CardStatus status,
+        @Schema(description = "Срок действия не раньше даты, включительно", example = "2026-11-01")
+        LocalDate expiresFrom,
+        @Schema(description = "Срок действия не позже даты, включительно", example = "2026-11-30")
+        LocalDate expiresTo,
+        @Schema(description = "Баланс не меньше суммы", example = "0.00")
+        BigDecimal balanceFrom,
+        @Schema(description = "Баланс не больше суммы", example = "1000.00")
+        BigDecimal balanceTo,
+        @Schema(description = "Начало email или имени пользователя владельца, без учета регистра", example = "ivan")
+        String owner
+) {}
@@ -0,0 +1,15 @@
+package dev.folomkin.bankrest.domain.dto.card;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Страница истории переводов")
+public record TransferPageResponse(
+        @Schema(description = "Переводы от новых к старым")
+        List<TransferResponse> items,
+
+        @Schema(description = "Курсор следующей страницы. null - страниц больше нет")
+        String nextCursor
+) {
+}
@@ -0,0 +1,26 @@
+package dev.folomkin.bankrest.domain.dto.card;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Schema(description = "Выполненный перевод")
+public record TransferResponse(
+        @Schema(description = "Id перевода. Совпадает с transferId проводок в истории карты")
+        UUID transferId,
+
+        @Schema(description = "Номер карты-отправителя", example = "**** **** **** 1234")
+        String cardNumberOut,
+
+        @Schema(description = "Номер карты-получателя", example = "**** **** **** 5678")
+        String cardNumberIn,
+
+        @Schema(description = "Сумма")
+        BigDecimal amount,
+
+        @Schema(description = "Время перевода")
+        LocalDateTime createdAt
+) {
+}
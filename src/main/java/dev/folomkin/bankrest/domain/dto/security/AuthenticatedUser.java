@@ -0,0 +1,42 @@
+package dev.folomkin.bankrest.domain.dto.security;
+
+import dev.folomkin.bankrest.domain.model.Role;
+import dev.folomkin.bankrest.domain.model.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * Текущий пользователь запроса, собранный из claims JWT-токена.
+ * <p>
+ * Вместо сущности {@link User}: id и роли уже есть в токене, поэтому
+ * для аутентифицированного запроса не нужно читать таблицу users.
+ * Неизменяемый, можно передавать в другие потоки (асинхронные переводы).
+ *
+ * @param id       id пользователя
+ * @param username имя пользователя (subject токена)
+ * @param roles    роли с префиксом ROLE_, например ROLE_USER
+ */
+public record AuthenticatedUser(Long id, String username, List<String> roles) implements Principal {
+
+    public AuthenticatedUser {
+        roles = List.copyOf(roles);
+    }
+
+    public static AuthenticatedUser of(User user) {
+        return new AuthenticatedUser(user.getId(), user.getUsername(),
+                user.getRoles() == null ? List.of() : user.getRoles().stream().map(Role::getName).toList());
+    }
+
+    /// Имя для Spring Security (Authentication.getName())
+    @Override
+    public String getName() {
+        return username;
+    }
+
+    public List<GrantedAuthority> authorities() {
+        return roles.stream().<GrantedAuthority>map(SimpleGrantedAuthority::new).toList();
+    }
+}
@@ -32,4 +32,11 @@ public class UserResponse {
 
     @Schema(description = "Дата создания", example = "")
     private LocalDateTime createdA;
+
+    /// Владелец в ответе по карте: без ролей и даты создания
+    public UserResponse(Long id, String username, String email) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+    }
 }
\ No newline at end of file
@@ -1,8 +1,15 @@
 package dev.folomkin.bankrest.domain.mapper;
 
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.card.CardLedgerEntryResponse;
 import dev.folomkin.bankrest.domain.dto.card.CardResponse;
+import dev.folomkin.bankrest.domain.dto.card.TransferResponse;
 import dev.folomkin.bankrest.domain.dto.user.UserResponse;
 import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.LedgerEntry;
+import dev.folomkin.bankrest.domain.model.Money;
+import dev.folomkin.bankrest.domain.model.Transfer;
+import dev.folomkin.bankrest.repository.CardView;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
@@ -34,12 +41,55 @@ public class CardMapper {
         );
     }
 
-    public List<CardResponse> toCardResponseList(List<Card> cards) {
+    public CardResponse toCardResponse(CardView card) {
+        UserResponse userResponse = card.ownerId() == null
+                ? null
+                : new UserResponse(card.ownerId(), card.ownerUsername(), card.ownerEmail());
+
+        return new CardResponse(
+                card.id(),
+                card.encryptedNumber(),
+                card.expirationDate(),
+                card.cardStatus(),
+                Money.toDecimal(Money.add(card.balanceMinor(), card.slotsBalanceMinor())),
+                userResponse
+        );
+    }
+
+    public List<CardResponse> toCardResponseList(List<CardView> cards) {
         return cards.stream()
                 .map(this::toCardResponse)
                 .toList();
     }
 
+    public CardBalanceChangeResponse toBalanceChangeResponse(Card cardOut, Card cardIn) {
+        return new CardBalanceChangeResponse(
+                cardOut.getEncryptedNumber(),
+                cardOut.getBalance(),
+                cardIn.getEncryptedNumber(),
+                cardIn.getBalance()
+        );
+    }
+
+    public TransferResponse toTransferResponse(Transfer transfer) {
+        return new TransferResponse(
+                transfer.getTransferId(),
+                "**** **** **** " + transfer.getCardOutLast4(),
+                "**** **** **** " + transfer.getCardInLast4(),
+                Money.toDecimal(transfer.getAmountMinor()),
+                transfer.getCreatedAt()
+        );
+    }
+
+    public CardLedgerEntryResponse toLedgerEntryResponse(LedgerEntry entry) {
+        return new CardLedgerEntryResponse(
+                entry.getTransferId(),
+                entry.getDirection(),
+                Money.toDecimal(entry.getAmountMinor()),
+                entry.getCreatedAt()
+        );
+    }
+
 
 //    public Page<CardResponse> toCardResponsePages(List<Card> cards) {
 //        return (Page<CardResponse>) cards.stream()
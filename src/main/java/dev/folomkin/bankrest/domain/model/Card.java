@@ -1,9 +1,11 @@
 package dev.folomkin.bankrest.domain.model;
 
+import dev.folomkin.bankrest.service.card.index.CardNumberIndexListener;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Formula;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
@@ -12,6 +14,7 @@ import java.time.LocalDate;
 @Entity
 @NoArgsConstructor
 @Table(name = "cards")
+@EntityListeners(CardNumberIndexListener.class)
 public class Card implements Serializable {
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cards_id_seq")
@@ -24,6 +27,10 @@ public class Card implements Serializable {
     @Column(name = "encrypted_number", unique = true, nullable = false)
     private String encryptedNumber;
 
+    /// Последние 4 цифры номера. Хранятся отдельно, чтобы поиск по ним шел через индекс
+    @Column(name = "last4", nullable = false, length = 4)
+    private String last4;
+
     @CreationTimestamp
     @Column(name = "expiration_date", nullable = false)
     private LocalDate expirationDate;
@@ -33,13 +40,28 @@ public class Card implements Serializable {
     @Column(name = "status", nullable = false)
     private CardStatus cardStatus;
 
-    @Column(name = "balance", nullable = false)
-    private BigDecimal balance;
+    /// Баланс в копейках, см. {@link Money}
+    @Column(name = "balance_minor", nullable = false)
+    private long balanceMinor;
+
+    /// Число слотов подбаланса для зачислений, 0 - слоты выключены. См. {@link CardBalanceSlot}
+    @Column(name = "balance_slots", nullable = false)
+    private int balanceSlots;
+
+    /// Сумма слотов на момент чтения карты. Только для чтения, в базу не пишется
+    @Formula("(CASE WHEN balance_slots = 0 THEN 0 ELSE " +
+            "(SELECT COALESCE(SUM(s.balance_minor), 0) FROM card_balance_slots s WHERE s.card_id = id) END)")
+    private long slotsBalanceMinor;
 
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "user_id")
     private User user;
 
+    /// Версия строки для оптимистической блокировки при переводах
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     public Card(
             Long id,
             String openNumber,
@@ -53,7 +75,7 @@ public class Card implements Serializable {
         this.encryptedNumber = encryptedNumber;
         this.expirationDate = expirationDate;
         this.cardStatus = cardStatus;
-        this.balance = balance;
+        this.balanceMinor = Money.toMinor(balance);
         this.user = user;
     }
 
@@ -82,6 +104,14 @@ public class Card implements Serializable {
         this.encryptedNumber = encryptedNumber;
     }
 
+    public String getLast4() {
+        return last4;
+    }
+
+    public void setLast4(String last4) {
+        this.last4 = last4;
+    }
+
     public LocalDate getExpirationDate() {
         return expirationDate;
     }
@@ -98,12 +128,42 @@ public class Card implements Serializable {
         this.cardStatus = cardStatus;
     }
 
+    /// Баланс для ответов API: основной баланс и слоты. В расчетах используются копейки
     public BigDecimal getBalance() {
-        return balance;
+        return Money.toDecimal(getTotalBalanceMinor());
     }
 
     public void setBalance(BigDecimal balance) {
-        this.balance = balance;
+        this.balanceMinor = Money.toMinor(balance);
+    }
+
+    public long getBalanceMinor() {
+        return balanceMinor;
+    }
+
+    public void setBalanceMinor(long balanceMinor) {
+        this.balanceMinor = balanceMinor;
+    }
+
+    public long getTotalBalanceMinor() {
+        return Money.add(balanceMinor, slotsBalanceMinor);
+    }
+
+    public int getBalanceSlots() {
+        return balanceSlots;
+    }
+
+    public void setBalanceSlots(int balanceSlots) {
+        this.balanceSlots = balanceSlots;
+    }
+
+    public long getSlotsBalanceMinor() {
+        return slotsBalanceMinor;
+    }
+
+    /// Отражает в памяти изменение слотов, сделанное запросом в этой транзакции
+    public void setSlotsBalanceMinor(long slotsBalanceMinor) {
+        this.slotsBalanceMinor = slotsBalanceMinor;
     }
 
     public User getUser() {
@@ -113,4 +173,21 @@ public class Card implements Serializable {
     public void setUser(User user) {
         this.user = user;
     }
+
+    @PrePersist
+    @PreUpdate
+    void fillLast4() {
+        if (openNumber != null) {
+            String digits = openNumber.replaceAll("\\s+", "");
+            last4 = digits.substring(Math.max(digits.length() - 4, 0));
+        }
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
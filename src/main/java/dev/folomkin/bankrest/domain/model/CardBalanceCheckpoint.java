@@ -0,0 +1,41 @@
+package dev.folomkin.bankrest.domain.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Баланс карты с учетом всех проводок, созданных не позже coveredUntil.
+ * Текущий баланс = последний снимок + проводки после его coveredUntil
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "card_balance_checkpoints")
+public class CardBalanceCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @Column(name = "balance_minor", nullable = false)
+    private long balanceMinor;
+
+    @Column(name = "covered_until", nullable = false)
+    private LocalDateTime coveredUntil;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public CardBalanceCheckpoint(Long cardId, long balanceMinor, LocalDateTime coveredUntil) {
+        this.cardId = cardId;
+        this.balanceMinor = balanceMinor;
+        this.coveredUntil = coveredUntil;
+        this.createdAt = LocalDateTime.now();
+    }
+}
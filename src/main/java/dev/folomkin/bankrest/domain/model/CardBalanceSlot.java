@@ -0,0 +1,63 @@
+package dev.folomkin.bankrest.domain.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Слот подбаланса "горячей" карты.
+ * <p>
+ * Зачисления на карту со слотами обновляют случайный слот, а не строку
+ * cards, поэтому параллельные зачисления не ждут друг друга. Баланс карты =
+ * cards.balance_minor + сумма слотов. Перед списанием слоты сворачиваются
+ * в основной баланс, если его не хватает.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@IdClass(CardBalanceSlot.Key.class)
+@Table(name = "card_balance_slots")
+public class CardBalanceSlot {
+
+    @Id
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @Id
+    @Column(name = "slot", nullable = false)
+    private int slot;
+
+    @Column(name = "balance_minor", nullable = false)
+    private long balanceMinor;
+
+    public CardBalanceSlot(Long cardId, int slot) {
+        this.cardId = cardId;
+        this.slot = slot;
+    }
+
+    public static class Key implements Serializable {
+        private Long cardId;
+        private int slot;
+
+        public Key() {
+        }
+
+        public Key(Long cardId, int slot) {
+            this.cardId = cardId;
+            this.slot = slot;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && slot == key.slot && Objects.equals(cardId, key.cardId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(cardId, slot);
+        }
+    }
+}
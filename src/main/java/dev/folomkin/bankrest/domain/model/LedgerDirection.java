@@ -0,0 +1,9 @@
+package dev.folomkin.bankrest.domain.model;
+
+/**
+ * Сторона проводки: списание с карты или зачисление на карту
+ */
+public enum LedgerDirection {
+    DEBIT,
+    CREDIT
+}
@@ -0,0 +1,53 @@
+package dev.folomkin.bankrest.domain.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Проводка по карте. Записи только добавляются: каждый перевод дает
+ * списание с карты-отправителя и зачисление на карту-получателя с общим transferId.
+ * <p>
+ * Id берутся из последовательности с шагом 50, чтобы Hibernate мог
+ * отправлять вставки JDBC-батчами (с IDENTITY батчинг вставок отключается).
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "ledger_entries")
+public class LedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_entries_seq")
+    @SequenceGenerator(name = "ledger_entries_seq", sequenceName = "ledger_entries_seq", allocationSize = 50)
+    private Long id;
+
+    /// Только id: проводке не нужна сама карта, а связь загружала бы ее при чтении истории
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @Column(name = "transfer_id", nullable = false)
+    private UUID transferId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "direction", nullable = false, length = 10)
+    private LedgerDirection direction;
+
+    @Column(name = "amount_minor", nullable = false)
+    private long amountMinor;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public LedgerEntry(Long cardId, UUID transferId, LedgerDirection direction, long amountMinor) {
+        this.cardId = cardId;
+        this.transferId = transferId;
+        this.direction = direction;
+        this.amountMinor = amountMinor;
+    }
+}
@@ -0,0 +1,44 @@
+package dev.folomkin.bankrest.domain.model;
+
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+
+import java.math.BigDecimal;
+
+/**
+ * Денежные суммы в копейках (long).
+ * <p>
+ * Внутри приложения и в базе суммы хранятся целым числом копеек: сложение
+ * и сравнение точные и не создают объектов. BigDecimal остается только на
+ * границе JSON - в запросах и ответах.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    /// Сумма из запроса. Дробная часть меньше копейки не допускается
+    public static long toMinor(BigDecimal amount) {
+        if (amount.stripTrailingZeros().scale() > SCALE) {
+            throw new InvalidCardFieldException("Сумма указывается с точностью до копеек");
+        }
+        try {
+            return amount.movePointRight(SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new InvalidCardFieldException("Слишком большая сумма");
+        }
+    }
+
+    public static BigDecimal toDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    public static long add(long minor, long amountMinor) {
+        return Math.addExact(minor, amountMinor);
+    }
+
+    public static long subtract(long minor, long amountMinor) {
+        return Math.subtractExact(minor, amountMinor);
+    }
+}
@@ -2,10 +2,17 @@ package dev.folomkin.bankrest.domain.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
+/// Справочник ролей: не меняется приложением, поэтому в кеше второго уровня READ_ONLY
 @Entity
 @Data
 @Table(name = "roles")
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "roles")
+@NaturalIdCache(region = "role-names")
 public class Role {
 
     @Id
@@ -14,6 +21,7 @@ public class Role {
     private Integer id;
 
 
+    @NaturalId
     @Column(name = "name")
     private String name;
 
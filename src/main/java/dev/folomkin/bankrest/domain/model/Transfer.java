@@ -0,0 +1,64 @@
+package dev.folomkin.bankrest.domain.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Выполненный перевод для истории пользователя.
+ * <p>
+ * Последние 4 цифры карт хранятся в самой записи: история не меняется
+ * после удаления карты, а фильтр по карте идет по индексу без соединения с cards.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "transfers")
+public class Transfer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transfers_seq")
+    @SequenceGenerator(name = "transfers_seq", sequenceName = "transfers_seq", allocationSize = 50)
+    private Long id;
+
+    /// Общий с проводками перевода, см. {@link LedgerEntry}
+    @Column(name = "transfer_id", nullable = false)
+    private UUID transferId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "card_out_id", nullable = false)
+    private Long cardOutId;
+
+    @Column(name = "card_out_last4", nullable = false, length = 4)
+    private String cardOutLast4;
+
+    @Column(name = "card_in_id", nullable = false)
+    private Long cardInId;
+
+    @Column(name = "card_in_last4", nullable = false, length = 4)
+    private String cardInLast4;
+
+    @Column(name = "amount_minor", nullable = false)
+    private long amountMinor;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public Transfer(Long userId, Long cardOutId, String cardOutLast4, Long cardInId, String cardInLast4,
+                    long amountMinor) {
+        this.transferId = UUID.randomUUID();
+        this.userId = userId;
+        this.cardOutId = cardOutId;
+        this.cardOutLast4 = cardOutLast4;
+        this.cardInId = cardInId;
+        this.cardInLast4 = cardInLast4;
+        this.amountMinor = amountMinor;
+    }
+}
@@ -0,0 +1,55 @@
+package dev.folomkin.bankrest.domain.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Сохраненный ответ на перевод с заголовком Idempotency-Key.
+ * Повтор запроса с тем же ключом возвращает этот ответ без повторного списания
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "transfer_idempotency_keys")
+public class TransferIdempotencyRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "idempotency_key", nullable = false, length = 100)
+    private String idempotencyKey;
+
+    /// Параметры исходного запроса: повтор с тем же ключом, но другими параметрами отклоняется
+    @Column(name = "request_fingerprint", nullable = false, length = 64)
+    private String requestFingerprint;
+
+    ///-> Поля ответа пустые, пока перевод в режиме журнала выполняется (ключ зарезервирован)
+    @Column(name = "card_number_out")
+    private String cardNumberOut;
+
+    @Column(name = "balance_out")
+    private BigDecimal balanceOut;
+
+    @Column(name = "card_number_in")
+    private String cardNumberIn;
+
+    @Column(name = "balance_in")
+    private BigDecimal balanceIn;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public boolean isPending() {
+        return cardNumberOut == null;
+    }
+}
@@ -2,8 +2,10 @@ package dev.folomkin.bankrest.exceptions;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.MessageSource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -80,4 +82,42 @@ public class GlobalControllerExceptionHandler extends ResponseEntityExceptionHan
         problemDetail.setDetail(ex.getMessage());
         return problemDetail;
     }
+
+    @ExceptionHandler(value = TransferConflictException.class)
+    @ResponseStatus(value = HttpStatus.CONFLICT)
+    protected ProblemDetail transferConflict(TransferConflictException ex, WebRequest request) {
+        ProblemDetail problemDetail = ProblemDetail
+                .forStatusAndDetail(
+                        HttpStatus.CONFLICT,
+                        ex.getMessage());
+        problemDetail.setTitle(messageSource.getMessage("errors.409.problemDetailsTitle", new Object[0], null));
+        problemDetail.setDetail(ex.getMessage());
+        return problemDetail;
+    }
+
+    @ExceptionHandler(value = TooManyTransfersException.class)
+    @ResponseStatus(value = HttpStatus.TOO_MANY_REQUESTS)
+    protected ProblemDetail tooManyTransfers(TooManyTransfersException ex, WebRequest request) {
+        ProblemDetail problemDetail = ProblemDetail
+                .forStatusAndDetail(
+                        HttpStatus.TOO_MANY_REQUESTS,
+                        ex.getMessage());
+        problemDetail.setTitle(messageSource.getMessage("errors.429.problemDetailsTitle", new Object[0], null));
+        problemDetail.setDetail(ex.getMessage());
+        return problemDetail;
+    }
+
+    ///-> Retry-After: хеширование паролей разгружается за секунды
+    @ExceptionHandler(value = ServiceOverloadedException.class)
+    protected ResponseEntity<ProblemDetail> serviceOverloaded(ServiceOverloadedException ex, WebRequest request) {
+        ProblemDetail problemDetail = ProblemDetail
+                .forStatusAndDetail(
+                        HttpStatus.SERVICE_UNAVAILABLE,
+                        ex.getMessage());
+        problemDetail.setTitle(messageSource.getMessage("errors.503.problemDetailsTitle", new Object[0], null));
+        problemDetail.setDetail(ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(problemDetail);
+    }
 }
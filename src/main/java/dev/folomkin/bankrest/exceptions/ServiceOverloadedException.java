@@ -0,0 +1,15 @@
+package dev.folomkin.bankrest.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceOverloadedException extends RuntimeException {
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
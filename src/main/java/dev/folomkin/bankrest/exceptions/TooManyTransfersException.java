@@ -0,0 +1,15 @@
+package dev.folomkin.bankrest.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyTransfersException extends RuntimeException {
+    public TooManyTransfersException(String message) {
+        super(message);
+    }
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,15 @@
+package dev.folomkin.bankrest.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class TransferConflictException extends RuntimeException {
+    public TransferConflictException(String message) {
+        super(message);
+    }
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,44 @@
+package dev.folomkin.bankrest.repository;
+
+import dev.folomkin.bankrest.domain.model.CardBalanceCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface CardBalanceCheckpointRepository extends JpaRepository<CardBalanceCheckpoint, Long> {
+
+    Optional<CardBalanceCheckpoint> findFirstByCardIdOrderByCoveredUntilDesc(Long cardId);
+
+    @Query("SELECT MAX(c.coveredUntil) FROM CardBalanceCheckpoint c")
+    Optional<LocalDateTime> findLatestCoveredUntil();
+
+    /**
+     * Карты, у которых баланс (вместе со слотами) не равен последнему снимку плюс
+     * проводкам после него. Один запрос - один снимок базы: перевод меняет карты
+     * и пишет проводки в одной транзакции, поэтому в запросе виден целиком или не виден
+     */
+    @Query(value = "SELECT id AS \"cardId\", card_balance AS \"cardBalanceMinor\", ledger_balance AS \"ledgerBalanceMinor\" " +
+            "FROM (SELECT c.id, " +
+            "c.balance_minor + COALESCE((SELECT SUM(s.balance_minor) FROM card_balance_slots s " +
+            "WHERE s.card_id = c.id), 0) AS card_balance, " +
+            "k.balance_minor + COALESCE((SELECT SUM(CASE WHEN e.direction = 'DEBIT' THEN -e.amount_minor " +
+            "ELSE e.amount_minor END) FROM ledger_entries e " +
+            "WHERE e.card_id = c.id AND e.created_at > k.covered_until), 0) AS ledger_balance " +
+            "FROM cards c CROSS JOIN LATERAL (SELECT balance_minor, covered_until FROM card_balance_checkpoints " +
+            "WHERE card_id = c.id ORDER BY covered_until DESC LIMIT 1) k) b " +
+            "WHERE card_balance <> ledger_balance ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<BalanceMismatch> findBalanceMismatches(@Param("limit") int limit);
+
+    interface BalanceMismatch {
+
+        Long getCardId();
+
+        Long getCardBalanceMinor();
+
+        Long getLedgerBalanceMinor();
+    }
+}
@@ -0,0 +1,25 @@
+package dev.folomkin.bankrest.repository;
+
+import dev.folomkin.bankrest.domain.model.CardBalanceSlot;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface CardBalanceSlotRepository extends JpaRepository<CardBalanceSlot, CardBalanceSlot.Key> {
+
+    /// Зачисление в слот одним UPDATE. 0 - у карты уже нет такого слота
+    @Modifying
+    @Query("UPDATE CardBalanceSlot s SET s.balanceMinor = s.balanceMinor + :amount " +
+            "WHERE s.cardId = :cardId AND s.slot = :slot")
+    int credit(@Param("cardId") Long cardId, @Param("slot") int slot, @Param("amount") long amountMinor);
+
+    /// Все слоты карты под блокировкой: зачисления в них ждут до конца транзакции
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM CardBalanceSlot s WHERE s.cardId = :cardId ORDER BY s.slot")
+    List<CardBalanceSlot> findAllForUpdate(@Param("cardId") Long cardId);
+}
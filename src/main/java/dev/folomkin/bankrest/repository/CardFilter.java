@@ -0,0 +1,35 @@
+package dev.folomkin.bankrest.repository;
+
+import dev.folomkin.bankrest.domain.model.CardStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Условия выборки карт для {@link CardSpecifications#filter(CardFilter)}.
+ * null или пустая строка - условие не применяется.
+ *
+ * @param userId           id владельца
+ * @param last4            последние 4 цифры номера
+ * @param status           статус карты
+ * @param expiresFrom      срок действия не раньше, включительно
+ * @param expiresTo        срок действия не позже, включительно
+ * @param balanceFromMinor баланс не меньше, в копейках
+ * @param balanceToMinor   баланс не больше, в копейках
+ * @param ownerPrefix      начало email или имени пользователя владельца, без учета регистра
+ */
+public record CardFilter(
+        Long userId,
+        String last4,
+        CardStatus status,
+        LocalDate expiresFrom,
+        LocalDate expiresTo,
+        Long balanceFromMinor,
+        Long balanceToMinor,
+        String ownerPrefix
+) {
+
+    /// Карты владельца, при необходимости одна - по последним цифрам номера
+    public static CardFilter ofUser(Long userId, String last4) {
+        return new CardFilter(userId, last4, null, null, null, null, null, null);
+    }
+}
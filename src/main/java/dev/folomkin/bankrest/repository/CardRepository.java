@@ -1,28 +1,91 @@
 package dev.folomkin.bankrest.repository;
 
 import dev.folomkin.bankrest.domain.model.Card;
-import org.springframework.data.domain.PageRequest;
+import dev.folomkin.bankrest.domain.model.CardStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface CardRepository extends JpaRepository<Card, Long> {
+public interface CardRepository extends JpaRepository<Card, Long>, JpaSpecificationExecutor<Card>, CardViewRepository {
 
     List<Card> findAll();
 
-    @Query("SELECT c FROM Card c WHERE c.encryptedNumber LIKE %:last4")
-    Card findCardByLast4(@Param("last4") String last4);
+    boolean existsByLast4(String last4);
+
+    /// Поиск карты владельца по индексу (user_id, last4)
+    Optional<Card> findByUserIdAndLast4(Long userId, String last4);
+
+    /// Только id карты: не загружает сущность в контекст до взятия блокировки
+    @Query("SELECT c.id FROM Card c WHERE c.user.id = :userId AND c.last4 = :last4")
+    Long findCardIdByUserIdAndLast4(@Param("userId") Long userId, @Param("last4") String last4);
+
+    /// id карт с такими последними цифрами среди всех владельцев
+    @Query("SELECT c.id FROM Card c WHERE c.last4 = :last4")
+    List<Long> findCardIdsByLast4(@Param("last4") String last4);
+
+    /// (id, id владельца, last4) всех карт потоком, для загрузки индекса номеров
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    @Query("SELECT c.id, c.user.id, c.last4 FROM Card c")
+    Stream<Object[]> streamNumberKeys();
+
+    /// SELECT ... FOR UPDATE по первичному ключу
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id = :id")
+    Optional<Card> findByIdForUpdate(@Param("id") Long id);
+
+    /// Карты пакета переводов под блокировкой. Порядок по id исключает взаимные блокировки пакетов
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.user.id IN :userIds AND c.last4 IN :last4s ORDER BY c.id")
+    List<Card> findAllForUpdate(@Param("userIds") Collection<Long> userIds,
+                                @Param("last4s") Collection<String> last4s);
+
+    /// Списание одним UPDATE: строка меняется, только если хватает средств
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Card c SET c.balanceMinor = c.balanceMinor - :amount, c.version = c.version + 1 " +
+            "WHERE c.id = :id AND c.user.id = :userId AND c.balanceMinor >= :amount " +
+            "AND c.cardStatus NOT IN :blockedStatuses")
+    int debitIfSufficient(@Param("id") Long id,
+                          @Param("userId") Long userId,
+                          @Param("amount") long amountMinor,
+                          @Param("blockedStatuses") Collection<CardStatus> blockedStatuses);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Card c SET c.balanceMinor = c.balanceMinor + :amount, c.version = c.version + 1 " +
+            "WHERE c.id = :id AND c.user.id = :userId AND c.cardStatus NOT IN :blockedStatuses")
+    int credit(@Param("id") Long id,
+               @Param("userId") Long userId,
+               @Param("amount") long amountMinor,
+               @Param("blockedStatuses") Collection<CardStatus> blockedStatuses);
+
+    /// Карты, зачисления на которые идут в слоты подбаланса
+    @Query("SELECT c.id FROM Card c WHERE c.balanceSlots > 0")
+    List<Long> findSlottedCardIds();
 
     List<Card> findAllCardsByUserId(Long userId);
 
-    @Query("SELECT cl FROM Card cl WHERE cl.user.id = :id")
-    List<Card> findAllCardsByUserIdPages(PageRequest pageRequest, @Param("id") Long id);
+    /// Списки карт без загрузки сущностей, см. CardView. В транзакции строки читаются курсором
+    /// порциями по 1000, а не всем результатом в буфер драйвера
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(CardView.SELECT + "ORDER BY c.id")
+    List<CardView> findAllViews();
 
-    @Query("SELECT cl FROM Card cl WHERE cl.user.email = :email")
-    List<Card> findAllCardsByUserEmailPages(PageRequest pageRequest, @Param("email") String email);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(CardView.SELECT + "WHERE c.user.id = :userId ORDER BY c.id")
+    List<CardView> findViewsByUserId(@Param("userId") Long userId);
 
-    @Query("SELECT c FROM Card c WHERE c.cardStatus = 'BLOCKREQUEST' ")
-    List<Card> findAllCardsByBlockRequest();
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(CardView.SELECT + "WHERE c.cardStatus = :status ORDER BY c.id")
+    List<CardView> findViewsByStatus(@Param("status") CardStatus status);
 }
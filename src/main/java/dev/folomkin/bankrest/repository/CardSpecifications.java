@@ -0,0 +1,129 @@
+package dev.folomkin.bankrest.repository;
+
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.User;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Условия выборки карт для {@link CardRepository} (JpaSpecificationExecutor).
+ * <p>
+ * Все фильтры собираются в один WHERE, сортировка и LIMIT/OFFSET - из
+ * Pageable, поэтому страница карт читается одним запросом. Владелец
+ * загружается тем же запросом через fetch join (связь EAGER иначе
+ * дочитывается отдельным select на каждого владельца); в запросе
+ * количества и в выборке CardView - обычный join, см. {@link #owner}.
+ * <p>
+ * Под каждый фильтр есть индекс: (status, expiration_date),
+ * (expiration_date, id), (balance_minor, id) (и частичный индекс карт со слотами
+ * подбаланса), lower(email) и lower(username) с text_pattern_ops для
+ * поиска по началу строки. См. CardFilterQueryPlanIT.
+ */
+public final class CardSpecifications {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private CardSpecifications() {
+    }
+
+    public static Specification<Card> filter(CardFilter filter) {
+        return (root, query, cb) -> {
+            From<Card, User> user;
+            if (Card.class == query.getResultType()) {
+                //noinspection unchecked
+                user = (From<Card, User>) root.<Card, User>fetch("user", JoinType.LEFT);
+            } else {
+                user = owner(root);
+            }
+            List<Predicate> predicates = new ArrayList<>();
+            if (filter.userId() != null) {
+                predicates.add(cb.equal(user.get("id"), filter.userId()));
+            }
+            if (hasText(filter.last4())) {
+                predicates.add(cb.equal(root.get("last4"), filter.last4()));
+            }
+            if (filter.status() != null) {
+                predicates.add(cb.equal(root.get("cardStatus"), filter.status()));
+            }
+            if (filter.expiresFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("expirationDate"), filter.expiresFrom()));
+            }
+            if (filter.expiresTo() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("expirationDate"), filter.expiresTo()));
+            }
+            if (filter.balanceFromMinor() != null || filter.balanceToMinor() != null) {
+                predicates.add(balance(root, cb, filter.balanceFromMinor(), filter.balanceToMinor()));
+            }
+            if (hasText(filter.ownerPrefix())) {
+                String pattern = likePrefix(filter.ownerPrefix());
+                predicates.add(cb.or(
+                        cb.like(cb.lower(user.get("email")), pattern, LIKE_ESCAPE),
+                        cb.like(cb.lower(user.get("username")), pattern, LIKE_ESCAPE)));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    /**
+     * Баланс в том же виде, что и в ответе: у карты со слотами подбаланса -
+     * строка карты плюс сумма слотов. Условие разбито на две ветви, чтобы
+     * обычные карты искались по idx_cards_balance_minor_id, а карты со слотами -
+     * по частичному индексу idx_cards_with_balance_slots.
+     */
+    private static Predicate balance(Root<Card> root, CriteriaBuilder cb, Long fromMinor, Long toMinor) {
+        Expression<Integer> slots = root.get("balanceSlots");
+        Expression<Long> rowBalance = root.get("balanceMinor");
+        Expression<Long> totalBalance = cb.sum(rowBalance, root.<Long>get("slotsBalanceMinor"));
+        return cb.or(
+                cb.and(cb.equal(slots, cb.literal(0)), between(cb, rowBalance, fromMinor, toMinor)),
+                cb.and(cb.greaterThan(slots, cb.literal(0)), between(cb, totalBalance, fromMinor, toMinor)));
+    }
+
+    private static Predicate between(CriteriaBuilder cb, Expression<Long> balance, Long fromMinor, Long toMinor) {
+        List<Predicate> bounds = new ArrayList<>(2);
+        if (fromMinor != null) {
+            bounds.add(cb.greaterThanOrEqualTo(balance, fromMinor));
+        }
+        if (toMinor != null) {
+            bounds.add(cb.lessThanOrEqualTo(balance, toMinor));
+        }
+        return cb.and(bounds.toArray(Predicate[]::new));
+    }
+
+    /// Join владельца для запросов не сущностей (количество, CardView); повторный вызов возвращает тот же join
+    @SuppressWarnings("unchecked")
+    public static From<Card, User> owner(Root<Card> root) {
+        for (Join<Card, ?> join : root.getJoins()) {
+            if ("user".equals(join.getAttribute().getName())) {
+                return (From<Card, User>) join;
+            }
+        }
+        return root.join("user", JoinType.LEFT);
+    }
+
+    ///-> Символы шаблона LIKE в строке пользователя экранируются, иначе "%" превратит поиск по началу в полный перебор
+    static String likePrefix(String prefix) {
+        StringBuilder pattern = new StringBuilder(prefix.length() + 2);
+        for (char c : prefix.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                pattern.append(LIKE_ESCAPE);
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isEmpty();
+    }
+}
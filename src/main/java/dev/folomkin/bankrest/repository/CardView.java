@@ -0,0 +1,32 @@
+package dev.folomkin.bankrest.repository;
+
+import dev.folomkin.bankrest.domain.model.CardStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Строка карты для списков: только колонки CardResponse и три поля
+ * владельца, выбранные одним запросом с join. Сущности Card и User не
+ * создаются и не попадают в контекст персистентности, пароль и роли
+ * владельца не читаются.
+ *
+ * @param balanceMinor      баланс строки карты, в копейках
+ * @param slotsBalanceMinor сумма слотов подбаланса, в копейках
+ */
+public record CardView(
+        Long id,
+        String encryptedNumber,
+        LocalDate expirationDate,
+        CardStatus cardStatus,
+        long balanceMinor,
+        long slotsBalanceMinor,
+        Long ownerId,
+        String ownerUsername,
+        String ownerEmail
+) {
+
+    /// Выражение для SELECT new в JPQL; псевдонимы: c - карта, u - владелец (LEFT JOIN)
+    static final String SELECT = "SELECT new dev.folomkin.bankrest.repository.CardView(" +
+            "c.id, c.encryptedNumber, c.expirationDate, c.cardStatus, c.balanceMinor, c.slotsBalanceMinor, " +
+            "u.id, u.username, u.email) FROM Card c LEFT JOIN c.user u ";
+}
@@ -0,0 +1,23 @@
+package dev.folomkin.bankrest.repository;
+
+import dev.folomkin.bankrest.domain.model.Card;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/// Выборки CardView по спецификации: фрагмент CardRepository для страниц поиска карт
+public interface CardViewRepository {
+
+    /// Страница без запроса количества
+    Slice<CardView> findViewSlice(Specification<Card> spec, Pageable pageable);
+
+    /// Страница с количеством; запрос количества пропускается, если итог виден по странице
+    Page<CardView> findViewPage(Specification<Card> spec, Pageable pageable);
+
+    /// Первые limit строк в порядке sort
+    List<CardView> findViews(Specification<Card> spec, Sort sort, int limit);
+}
@@ -0,0 +1,96 @@
+package dev.folomkin.bankrest.repository;
+
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Выборка CardView через Criteria API: те же условия
+ * {@link CardSpecifications}, что и для сущностей, но в SELECT только
+ * колонки ответа. Владелец присоединяется тем же join, что строит
+ * спецификация.
+ */
+@Transactional(readOnly = true)
+public class CardViewRepositoryImpl implements CardViewRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Slice<CardView> findViewSlice(Specification<Card> spec, Pageable pageable) {
+        ///-> На одну строку больше: так видно, есть ли следующая страница
+        List<CardView> rows = query(spec, pageable.getSort())
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+    }
+
+    @Override
+    public Page<CardView> findViewPage(Specification<Card> spec, Pageable pageable) {
+        List<CardView> rows = query(spec, pageable.getSort())
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        return PageableExecutionUtils.getPage(rows, pageable, () -> count(spec));
+    }
+
+    @Override
+    public List<CardView> findViews(Specification<Card> spec, Sort sort, int limit) {
+        return query(spec, sort).setMaxResults(limit).getResultList();
+    }
+
+    private TypedQuery<CardView> query(Specification<Card> spec, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CardView> query = cb.createQuery(CardView.class);
+        Root<Card> card = query.from(Card.class);
+        Predicate where = spec.toPredicate(card, query, cb);
+        From<Card, User> user = CardSpecifications.owner(card);
+        query.select(cb.construct(CardView.class,
+                card.get("id"),
+                card.get("encryptedNumber"),
+                card.get("expirationDate"),
+                card.get("cardStatus"),
+                card.get("balanceMinor"),
+                card.get("slotsBalanceMinor"),
+                user.get("id"),
+                user.get("username"),
+                user.get("email")));
+        if (where != null) {
+            query.where(where);
+        }
+        query.orderBy(QueryUtils.toOrders(sort, card, cb));
+        return entityManager.createQuery(query);
+    }
+
+    private long count(Specification<Card> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Card> card = query.from(Card.class);
+        Predicate where = spec.toPredicate(card, query, cb);
+        query.select(cb.count(card));
+        if (where != null) {
+            query.where(where);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
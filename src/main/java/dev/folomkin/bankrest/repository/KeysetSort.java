@@ -0,0 +1,114 @@
+package dev.folomkin.bankrest.repository;
+
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import jakarta.persistence.criteria.Expression;
+import org.hibernate.query.sqm.NodeBuilder;
+import org.hibernate.query.sqm.tree.expression.SqmExpression;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Пагинация по ключу (seek) для выборок через JpaSpecificationExecutor.
+ * <p>
+ * Порядок - поле сортировки и id по возрастанию. Курсор - поле, его значение
+ * и id последней строки страницы в base64. Следующая страница читается
+ * сравнением строк (field, id) > (value, lastId): по индексу (field, id) это
+ * начало диапазона, поэтому страница 10 000 стоит столько же, сколько первая,
+ * без OFFSET и без запроса количества - даже среди тысяч строк с одним
+ * значением поля.
+ *
+ * @param field  поле сущности, по которому есть индекс (field, id)
+ * @param key    значение поля у строки страницы
+ * @param parser значение поля из курсора
+ * @param id     id строки страницы
+ */
+public record KeysetSort<T>(String field,
+                            Function<T, ?> key,
+                            Function<String, ? extends Comparable<?>> parser,
+                            Function<T, Long> id) {
+
+    public static final String ID = "id";
+
+    /// Поле из запроса клиента; сортировка без индекса по полю не поддерживается
+    public static <T> KeysetSort<T> select(Map<String, KeysetSort<T>> sorts, String field) {
+        KeysetSort<T> sort = sorts.get(field);
+        if (sort == null) {
+            throw new InvalidCardFieldException("Постраничный вывод по курсору поддерживает сортировку по полям: "
+                    + String.join(", ", sorts.keySet()));
+        }
+        return sort;
+    }
+
+    public Sort sort() {
+        return ID.equals(field) ? Sort.by(ID) : Sort.by(field, ID);
+    }
+
+    /// Строки после курсора; пустой курсор - с начала. Сущность спецификации может отличаться
+    /// от T, если страница читается проекцией с теми же полями
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <E> Specification<E> after(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return (root, query, cb) -> cb.conjunction();
+        }
+        String[] parts = decode(cursor);
+        long lastId = parseId(parts[1]);
+        if (ID.equals(field)) {
+            return (root, query, cb) -> cb.greaterThan(root.get(ID), lastId);
+        }
+        Comparable value = parseValue(parts[2]);
+        ///-> В JPA Criteria нет сравнения строк, поэтому кортежи строятся через NodeBuilder Hibernate
+        return (root, query, cb) -> {
+            NodeBuilder nodes = (NodeBuilder) cb;
+            Expression row = nodes.tuple((Class) null,
+                    (SqmExpression<?>) root.get(field), (SqmExpression<?>) root.get(ID));
+            Expression cursorRow = nodes.tuple((Class) null,
+                    (SqmExpression<?>) nodes.value(value), (SqmExpression<?>) nodes.value(lastId));
+            return cb.greaterThan(row, cursorRow);
+        };
+    }
+
+    public String cursorAfter(T last) {
+        String value = ID.equals(field) ? "" : String.valueOf(key.apply(last));
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((field + ":" + id.apply(last) + ":" + value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    ///-> Значение поля последним: в нем может быть ':'
+    private String[] decode(String cursor) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 3);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCardFieldException("Некорректный курсор страницы");
+        }
+        if (parts.length != 3) {
+            throw new InvalidCardFieldException("Некорректный курсор страницы");
+        }
+        if (!field.equals(parts[0])) {
+            throw new InvalidCardFieldException("Курсор получен для сортировки по полю " + parts[0]);
+        }
+        return parts;
+    }
+
+    private static long parseId(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidCardFieldException("Некорректный курсор страницы");
+        }
+    }
+
+    private Comparable<?> parseValue(String value) {
+        try {
+            return parser.apply(value);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCardFieldException("Некорректный курсор страницы");
+        }
+    }
+}
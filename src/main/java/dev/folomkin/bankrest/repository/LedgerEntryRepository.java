@@ -0,0 +1,31 @@
+package dev.folomkin.bankrest.repository;
+
+import dev.folomkin.bankrest.domain.model.LedgerEntry;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    /// История карты по индексу (card_id, created_at)
+    Page<LedgerEntry> findByCardIdOrderByCreatedAtDescIdDesc(Long cardId, Pageable pageable);
+
+    boolean existsByCardId(Long cardId);
+
+    /// Сумма проводок карты в копейках в интервале (after, until]. null, если проводок нет
+    @Query("SELECT SUM(CASE WHEN e.direction = dev.folomkin.bankrest.domain.model.LedgerDirection.DEBIT " +
+            "THEN -e.amountMinor ELSE e.amountMinor END) " +
+            "FROM LedgerEntry e WHERE e.cardId = :cardId AND e.createdAt > :after AND e.createdAt <= :until")
+    Long sumBetween(@Param("cardId") Long cardId,
+                          @Param("after") LocalDateTime after,
+                          @Param("until") LocalDateTime until);
+
+    @Query("SELECT DISTINCT e.cardId FROM LedgerEntry e WHERE e.createdAt > :after AND e.createdAt <= :until")
+    List<Long> findCardIdsWithEntriesBetween(@Param("after") LocalDateTime after,
+                                             @Param("until") LocalDateTime until);
+}
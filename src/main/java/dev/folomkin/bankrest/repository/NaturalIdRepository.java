@@ -0,0 +1,9 @@
+package dev.folomkin.bankrest.repository;
+
+import java.util.Optional;
+
+/// Поиск сущности по @NaturalId через кеш второго уровня: natural id -> id -> сущность, запрос в базу только при промахе
+public interface NaturalIdRepository {
+
+    <T> Optional<T> findByNaturalId(Class<T> type, Object naturalId);
+}
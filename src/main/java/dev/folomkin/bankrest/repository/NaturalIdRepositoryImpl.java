@@ -0,0 +1,25 @@
+package dev.folomkin.bankrest.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Загрузка по natural id через Session.bySimpleNaturalId. Запрос
+ * Spring Data вида findByUsername всегда идет в базу, этот - сначала в
+ * регион natural id и регион сущности кеша второго уровня.
+ */
+@Transactional(readOnly = true)
+public class NaturalIdRepositoryImpl implements NaturalIdRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public <T> Optional<T> findByNaturalId(Class<T> type, Object naturalId) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(type).loadOptional(naturalId);
+    }
+}
@@ -7,6 +7,11 @@ import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
 @Repository
-public interface RoleRepository extends CrudRepository<Role, Integer>  {
+public interface RoleRepository extends CrudRepository<Role, Integer>, NaturalIdRepository {
     Optional<Role> findByName(String name);
+
+    /// По имени роли через кеш второго уровня
+    default Optional<Role> findCachedByName(String name) {
+        return findByNaturalId(Role.class, name);
+    }
 }
@@ -0,0 +1,29 @@
+package dev.folomkin.bankrest.repository;
+
+import dev.folomkin.bankrest.domain.model.TransferIdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface TransferIdempotencyRepository extends JpaRepository<TransferIdempotencyRecord, Long> {
+
+    Optional<TransferIdempotencyRecord> findByUserIdAndIdempotencyKey(Long userId, String idempotencyKey);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TransferIdempotencyRecord r WHERE r.createdAt < :threshold")
+    int deleteCreatedBefore(@Param("threshold") LocalDateTime threshold);
+
+    /// Один просроченный ключ, еще не удаленный очисткой
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TransferIdempotencyRecord r WHERE r.userId = :userId " +
+            "AND r.idempotencyKey = :idempotencyKey AND r.createdAt < :threshold")
+    int deleteExpired(@Param("userId") Long userId, @Param("idempotencyKey") String idempotencyKey,
+                      @Param("threshold") LocalDateTime threshold);
+}
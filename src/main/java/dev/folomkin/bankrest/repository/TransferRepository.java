@@ -0,0 +1,54 @@
+package dev.folomkin.bankrest.repository;
+
+import dev.folomkin.bankrest.domain.model.Transfer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Страницы истории переводов по курсору (created_at, id), от новых к старым.
+ * <p>
+ * Страница читается с места курсора по индексу, поэтому ее стоимость не
+ * зависит от того, сколько переводов уже пролистано.
+ */
+public interface TransferRepository extends JpaRepository<Transfer, Long> {
+
+    /// Индекс (user_id, created_at, id)
+    @Query(value = "SELECT * FROM transfers " +
+            "WHERE user_id = :userId AND created_at >= :from AND created_at < :to " +
+            "AND (created_at, id) < (:cursorCreatedAt, :cursorId) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<Transfer> findPage(@Param("userId") Long userId,
+                            @Param("from") LocalDateTime from,
+                            @Param("to") LocalDateTime to,
+                            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                            @Param("cursorId") Long cursorId,
+                            @Param("limit") int limit);
+
+    /**
+     * Переводы с карты и на карту. Каждая половина читает не больше limit строк
+     * по своему индексу (user_id, card_*_last4, created_at, id): OR по двум
+     * колонкам заставил бы базу собрать и отсортировать все переводы карты
+     */
+    @Query(value = "SELECT * FROM (" +
+            "(SELECT * FROM transfers " +
+            "WHERE user_id = :userId AND card_out_last4 = :last4 AND created_at >= :from AND created_at < :to " +
+            "AND (created_at, id) < (:cursorCreatedAt, :cursorId) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit) " +
+            "UNION ALL " +
+            "(SELECT * FROM transfers " +
+            "WHERE user_id = :userId AND card_in_last4 = :last4 AND created_at >= :from AND created_at < :to " +
+            "AND (created_at, id) < (:cursorCreatedAt, :cursorId) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit)" +
+            ") t ORDER BY created_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<Transfer> findCardPage(@Param("userId") Long userId,
+                                @Param("last4") String last4,
+                                @Param("from") LocalDateTime from,
+                                @Param("to") LocalDateTime to,
+                                @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                @Param("cursorId") Long cursorId,
+                                @Param("limit") int limit);
+}
@@ -1,16 +1,35 @@
 package dev.folomkin.bankrest.repository;
 
+import dev.folomkin.bankrest.domain.dto.user.UserResponse;
 import dev.folomkin.bankrest.domain.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.List;
 import java.util.Optional;
 
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User>,
+        NaturalIdRepository {
     Optional<User> findByUsername(String username);
+
+    /// По имени пользователя через кеш второго уровня
+    default Optional<User> findCachedByUsername(String username) {
+        return findByNaturalId(User.class, username);
+    }
+
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
     List<User> findAll();
 
     User findByEmail(String email);
+
+    /// Список пользователей без сущностей и ролей; строки читаются курсором порциями
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new dev.folomkin.bankrest.domain.dto.user.UserResponse(u.id, u.username, u.email) " +
+            "FROM User u ORDER BY u.id")
+    List<UserResponse> findAllResponses();
 }
@@ -1,15 +1,19 @@
 package dev.folomkin.bankrest.service.card;
 
+import dev.folomkin.bankrest.domain.dto.CursorPageResponse;
 import dev.folomkin.bankrest.domain.dto.card.*;
-import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 public interface CardService {
-    CardResponse createCard(CardRequest cardRequest, User user);
+    CardResponse createCard(CardRequest cardRequest, AuthenticatedUser user);
 
     List<CardResponse> getCards();
 
@@ -17,23 +21,38 @@ public interface CardService {
 
     CardResponse getCardByNumber(String last4);
 
-    CardBalanceChangeResponse balanceChange(CardBalanceChangeRequest cardBalanceChangeRequest, User user);
+    CardBalanceChangeResponse balanceChange(CardBalanceChangeRequest cardBalanceChangeRequest, AuthenticatedUser user);
+
+    CardBalanceChangeResponse balanceChange(CardBalanceChangeRequest cardBalanceChangeRequest, AuthenticatedUser user, String idempotencyKey);
+
+    CompletableFuture<CardBalanceChangeResponse> balanceChangeAsync(CardBalanceChangeRequest cardBalanceChangeRequest, AuthenticatedUser user);
+
+    CardBatchTransferResponse batchBalanceChange(CardBatchTransferRequest batchRequest, AuthenticatedUser user);
 
     List<CardResponse> getCardsByUserId(Long userId);
 
-    Page<CardResponse> getCardsByPrincipal(PageRequest pageRequest, String cardNumber, User userId);
+    Slice<CardResponse> getCardsByPrincipal(PageRequest pageRequest, String cardNumber, boolean withTotal, AuthenticatedUser userId);
 
     CardResponse updateStatusById(Long cardId, CardStatusRequest cardRequest);
 
     CardResponse updateStatusByNumber(String cardNumber, CardStatusRequest cardRequest);
 
+    CardResponse updateBalanceSlotsById(Long cardId, CardBalanceSlotsRequest slotsRequest);
+
     void deleteCardById(Long id);
 
     void deleteCardByNumber(String last4);
 
-    CardResponse sendingBlockingRequest(String cardNumber, User user);
+    CardResponse sendingBlockingRequest(String cardNumber, AuthenticatedUser user);
+
+    Page<CardLedgerEntryResponse> getCardHistory(String cardNumber, PageRequest pageRequest, AuthenticatedUser user);
+
+    TransferPageResponse getTransfers(AuthenticatedUser user, String cardNumber, LocalDateTime from, LocalDateTime to,
+                                      String cursor, int limit);
 
     List<CardResponse> getCardsByBlockRequest();
 
-    Page<CardResponse> getCardsPages(PageRequest pageRequest, String owner);
+    Slice<CardResponse> getCardsPages(PageRequest pageRequest, CardSearchRequest search, boolean withTotal);
+
+    CursorPageResponse<CardResponse> scrollCards(CardSearchRequest search, String sortField, String cursor, int limit);
 }
@@ -1,88 +1,183 @@
 package dev.folomkin.bankrest.service.card;
 
+import dev.folomkin.bankrest.config.datasource.ReadYourWrites;
+import dev.folomkin.bankrest.domain.dto.CursorPageResponse;
 import dev.folomkin.bankrest.domain.dto.card.*;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
 import dev.folomkin.bankrest.domain.mapper.CardMapper;
 import dev.folomkin.bankrest.domain.model.Card;
 import dev.folomkin.bankrest.domain.model.CardStatus;
-import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.domain.model.Money;
 import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
 import dev.folomkin.bankrest.exceptions.NoSuchElementException;
+import dev.folomkin.bankrest.repository.CardFilter;
 import dev.folomkin.bankrest.repository.CardRepository;
+import dev.folomkin.bankrest.repository.CardSpecifications;
+import dev.folomkin.bankrest.repository.CardView;
+import dev.folomkin.bankrest.repository.KeysetSort;
 import dev.folomkin.bankrest.repository.UserRepository;
+import dev.folomkin.bankrest.service.card.cache.CardResponseCache;
+import dev.folomkin.bankrest.service.card.index.CardNumberIndex;
+import dev.folomkin.bankrest.service.card.journal.JournalTransferEngine;
+import dev.folomkin.bankrest.service.card.ledger.LedgerService;
+import dev.folomkin.bankrest.service.card.ledger.TransferHistoryService;
+import dev.folomkin.bankrest.service.card.transfer.BalanceSlotService;
+import dev.folomkin.bankrest.service.card.transfer.BatchTransferProcessor;
+import dev.folomkin.bankrest.service.card.transfer.TransferCommand;
+import dev.folomkin.bankrest.service.card.transfer.TransferIdempotencyService;
+import dev.folomkin.bankrest.service.card.transfer.TransferOutcome;
+import dev.folomkin.bankrest.service.card.transfer.TransferSequencer;
 import dev.folomkin.bankrest.utils.CardBalanceServiceUtil;
 import dev.folomkin.bankrest.utils.CardSaveServiceUtil;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
 @AllArgsConstructor
 public class CardServiceImpl implements CardService {
 
+    /// Поля сортировки для пагинации по курсору: у каждого есть индекс
+    private static final Map<String, KeysetSort<CardView>> SCROLL_SORTS = Map.of(
+            KeysetSort.ID, new KeysetSort<>(KeysetSort.ID, CardView::id, Long::valueOf, CardView::id),
+            "expirationDate", new KeysetSort<>("expirationDate", CardView::expirationDate, LocalDate::parse, CardView::id),
+            "balanceMinor", new KeysetSort<>("balanceMinor", CardView::balanceMinor, Long::valueOf, CardView::id));
+
+    /// Поля сортировки постраничного вывода: имя в запросе -> атрибут сущности.
+    /// Баланс хранится в копейках, поэтому публичное balance сортирует по balanceMinor
+    private static final Map<String, String> PAGE_SORTS = Map.of(
+            "id", "id",
+            "expirationDate", "expirationDate",
+            "cardStatus", "cardStatus",
+            "balance", "balanceMinor",
+            "balanceMinor", "balanceMinor");
+
     private CardRepository cardRepository;
     private UserRepository userRepository;
     private CardMapper cardMapper;
     private CardSaveServiceUtil cardSaveServiceUtil;
     private CardBalanceServiceUtil cardBalanceServiceUtil;
+    private BatchTransferProcessor batchTransferProcessor;
+    private TransferIdempotencyService transferIdempotencyService;
+    private TransferSequencer transferSequencer;
+    private LedgerService ledgerService;
+    private JournalTransferEngine journalTransferEngine;
+    private BalanceSlotService balanceSlotService;
+    private TransferHistoryService transferHistoryService;
+    private CardNumberIndex cardNumberIndex;
+    private CardResponseCache cardResponseCache;
 
     @Override
     @Transactional
-    public CardResponse createCard(CardRequest cardRequest, User currentUser) {
+    public CardResponse createCard(CardRequest cardRequest, AuthenticatedUser currentUser) {
         return cardSaveServiceUtil.saveCard(cardRequest, currentUser);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<CardResponse> getCards() {
-        return cardMapper.toCardResponseList(cardRepository.findAll());
+        return cardMapper.toCardResponseList(cardRepository.findAllViews());
     }
 
+    ///-> Без транзакции: ответ обычно из кеша, а транзакция брала бы соединение и при попадании в кеш.
+    ///-> Промах читает карту через findById в транзакции репозитория, см. cachedCardResponse
     public CardResponse getCardById(Long id) {
-        Card card = cardRepository.findById(id).orElseThrow(
-                () -> new NoSuchElementException("Карта с id " + id + " не найдена")
-        );
-        return cardMapper.toCardResponse(card);
+        CardResponse response = cachedCardResponse(id);
+        if (response == null) {
+            throw new NoSuchElementException("Карта с id " + id + " не найдена");
+        }
+        return response;
     }
 
     public CardResponse getCardByNumber(String last4) {
-        Card card = cardRepository.findCardByLast4(last4);
-        if (card == null) {
-            throw new NoSuchElementException("Карта с номером **** **** **** " + last4 + " не найдена");
+        return cardNumberIndex.findCard(last4, id -> Optional.ofNullable(cachedCardResponse(id))).orElseThrow(
+                () -> new NoSuchElementException("Карта с номером **** **** **** " + last4 + " не найдена")
+        );
+    }
+
+    /// Транзакцией управляет CardBalanceServiceUtil (нужно для повторов при оптимистической блокировке)
+    /// или поток очереди переводов, если она включена. В режиме журнала перевод пишется в журнал
+    @Override
+    public CardBalanceChangeResponse balanceChange(CardBalanceChangeRequest request, AuthenticatedUser user) {
+        if (journalTransferEngine.isEnabled()) {
+            return journalTransferEngine.transfer(request, user);
         }
-        return cardMapper.toCardResponse(card);
+        if (!transferSequencer.isEnabled()) {
+            return cardBalanceServiceUtil.balanceChange(request, user);
+        }
+        return transferSequencer.execute(request, user, null);
+    }
+
+    @Override
+    public CompletableFuture<CardBalanceChangeResponse> balanceChangeAsync(CardBalanceChangeRequest request, AuthenticatedUser user) {
+        if (journalTransferEngine.isEnabled()) {
+            return CompletableFuture.completedFuture(journalTransferEngine.transfer(request, user));
+        }
+        if (!transferSequencer.isEnabled()) {
+            return CompletableFuture.completedFuture(cardBalanceServiceUtil.balanceChange(request, user));
+        }
+        return transferSequencer.submit(request, user);
+    }
+
+    @Override
+    public CardBalanceChangeResponse balanceChange(CardBalanceChangeRequest request, AuthenticatedUser user, String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return balanceChange(request, user);
+        }
+        return transferIdempotencyService.balanceChange(idempotencyKey, request, user);
     }
 
     @Override
     @Transactional
-    public CardBalanceChangeResponse balanceChange(CardBalanceChangeRequest request, User user) {
-        return cardBalanceServiceUtil.balanceChange(request, user);
+    public CardBatchTransferResponse batchBalanceChange(CardBatchTransferRequest batchRequest, AuthenticatedUser user) {
+        List<TransferCommand> commands = batchRequest.transfers().stream()
+                .map(request -> new TransferCommand(request, user))
+                .toList();
+        List<TransferOutcome> outcomes = journalTransferEngine.isEnabled()
+                ? journalTransferEngine.transferBatch(commands, batchRequest.mode())
+                : batchTransferProcessor.process(commands, batchRequest.mode());
+
+        List<CardBatchTransferItemResult> results = new ArrayList<>(outcomes.size());
+        int succeeded = 0;
+        for (int i = 0; i < outcomes.size(); i++) {
+            TransferOutcome outcome = outcomes.get(i);
+            if (outcome.isSuccess()) {
+                succeeded++;
+                results.add(new CardBatchTransferItemResult(i, true, outcome.response(), null));
+            } else {
+                results.add(new CardBatchTransferItemResult(i, false, null, outcome.error().getMessage()));
+            }
+        }
+        return new CardBatchTransferResponse(succeeded, outcomes.size() - succeeded, results);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<CardResponse> getCardsByUserId(Long userId) {
-        List<Card> cards = cardRepository.findAllCardsByUserId(userId);
-        return cardMapper.toCardResponseList(cards);
+        return cardMapper.toCardResponseList(cardRepository.findViewsByUserId(userId));
     }
 
     @Override
-    public Page<CardResponse> getCardsByPrincipal(PageRequest pageRequest, String cardNumber, User principal) {
-        ///-> Получаем все карты пользователя с пагинацией
-        List<Card> cards = cardRepository.findAllCardsByUserIdPages(pageRequest, principal.getId());
-        ///-> Получаем карту по номеру
-        Card card = cardRepository.findCardByLast4(cardNumber);
-        if (cardNumber != null && !cardNumber.isEmpty()) {
-            return new PageImpl<>(
-                    cardMapper.toCardResponseList(
-                            cards.stream().filter(c -> c.equals(card)).toList()
-                    ), pageRequest, cards.size());
-        }
-        return new PageImpl<>(cardMapper.toCardResponseList(cards), pageRequest, cards.size());
+    @Transactional(readOnly = true)
+    public Slice<CardResponse> getCardsByPrincipal(PageRequest pageRequest, String cardNumber, boolean withTotal,
+                                                   AuthenticatedUser principal) {
+        ///-> Фильтр по владельцу и номеру - в том же запросе, что и страница
+        return findCards(CardFilter.ofUser(principal.id(), cardNumber), pageRequest, withTotal);
     }
 
     @Override
@@ -92,7 +187,21 @@ public class CardServiceImpl implements CardService {
                 () -> new NoSuchElementException("Карта с id " + cardId + " не найдена")
         );
         card.setCardStatus(cardRequest.cardStatus());
+        journalTransferEngine.cardStatusChanged(card.getId(), card.getCardStatus());
+        cardRepository.save(card);
+        cardResponseCache.evictAfterCommit(card.getId());
+        return cardMapper.toCardResponse(card);
+    }
+
+    @Override
+    @Transactional
+    public CardResponse updateBalanceSlotsById(Long cardId, CardBalanceSlotsRequest slotsRequest) {
+        Card card = cardRepository.findByIdForUpdate(cardId).orElseThrow(
+                () -> new NoSuchElementException("Карта с id " + cardId + " не найдена")
+        );
+        balanceSlotService.configure(card, slotsRequest.slots());
         cardRepository.save(card);
+        cardResponseCache.evictAfterCommit(card.getId());
         return cardMapper.toCardResponse(card);
     }
 
@@ -106,12 +215,14 @@ public class CardServiceImpl implements CardService {
         if (!isValidNumber) {
             throw new InvalidCardFieldException("Укажите только 4 последние цифры номера карты");
         }
-        Card card = cardRepository.findCardByLast4(cardNumber);
+        Card card = findCardByLast4(cardNumber);
         if (card == null) {
             throw new NoSuchElementException("Карта с номером **** **** **** " + cardNumber + " не найдена");
         }
         card.setCardStatus(cardRequest.cardStatus());
+        journalTransferEngine.cardStatusChanged(card.getId(), card.getCardStatus());
         cardRepository.save(card);
+        cardResponseCache.evictAfterCommit(card.getId());
         return cardMapper.toCardResponse(card);
     }
 
@@ -121,51 +232,136 @@ public class CardServiceImpl implements CardService {
         Card card = cardRepository.findById(id).orElseThrow(
                 () -> new NoSuchElementException("Карта с id " + id + " не найдена")
         );
-        cardRepository.delete(card);
+        deleteCard(card);
     }
 
     @Override
     @Transactional
     public void deleteCardByNumber(String cardNumber) {
-        Card card = cardRepository.findCardByLast4(cardNumber);
+        Card card = findCardByLast4(cardNumber);
         if (card == null) {
             throw new NoSuchElementException("Карта с номером **** **** **** " + cardNumber + " не найдена");
         }
+        deleteCard(card);
+    }
+
+    /// Проводки не удаляются вместе с картой (внешний ключ RESTRICT): карту с историей можно только заблокировать.
+    /// В режиме журнала проверка проводок не видит еще не перенесенные переводы - их проверяет cardDeleted
+    private void deleteCard(Card card) {
+        if (ledgerService.hasEntries(card.getId())) {
+            throw new InvalidCardFieldException("По карте есть операции, ее нельзя удалить - карту можно заблокировать");
+        }
+        journalTransferEngine.cardDeleted(card.getId());
         cardRepository.delete(card);
+        cardResponseCache.evictAfterCommit(card.getId());
     }
 
     @Override
     @Transactional
-    public CardResponse sendingBlockingRequest(String cardNumber, User user) {
-        Card card = cardRepository.findCardByLast4(cardNumber);
-        if (card == null) {
-            throw new NoSuchElementException("Карта с номером **** **** **** " + cardNumber + " не найдена");
-        }
-        if (!card.getUser().getId().equals(user.getId())) {
-            throw new InvalidCardFieldException("Вы можете запрашивать блокировку только своих карт");
-        }
+    public CardResponse sendingBlockingRequest(String cardNumber, AuthenticatedUser user) {
+        ///-> Ищем только среди карт пользователя: чужая карта просто не будет найдена
+        Card card = findCardByUserAndLast4(user.id(), cardNumber).orElseThrow(
+                () -> new NoSuchElementException("Карта с номером **** **** **** " + cardNumber + " не найдена")
+        );
         card.setCardStatus(CardStatus.BLOCKREQUEST);
+        journalTransferEngine.cardStatusChanged(card.getId(), card.getCardStatus());
         cardRepository.save(card);
+        cardResponseCache.evictAfterCommit(card.getId());
         return cardMapper.toCardResponse(card);
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Page<CardLedgerEntryResponse> getCardHistory(String cardNumber, PageRequest pageRequest, AuthenticatedUser user) {
+        Long cardId = cardNumberIndex.findCardId(user.id(), cardNumber);
+        if (cardId == null) {
+            throw new NoSuchElementException("Карта с номером **** **** **** " + cardNumber + " не найдена");
+        }
+        return ledgerService.history(cardId, pageRequest).map(cardMapper::toLedgerEntryResponse);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TransferPageResponse getTransfers(AuthenticatedUser user, String cardNumber, LocalDateTime from, LocalDateTime to,
+                                             String cursor, int limit) {
+        return transferHistoryService.page(user, cardNumber, from, to, cursor, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<CardResponse> getCardsByBlockRequest() {
-        return cardMapper.toCardResponseList(cardRepository.findAllCardsByBlockRequest());
+        return cardMapper.toCardResponseList(cardRepository.findViewsByStatus(CardStatus.BLOCKREQUEST));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<CardResponse> getCardsPages(PageRequest pageRequest, CardSearchRequest search, boolean withTotal) {
+        return findCards(toFilter(search), pageRequest, withTotal);
     }
 
     @Override
-    public Page<CardResponse> getCardsPages(PageRequest pageRequest, String owner) {
-        List<Card> cards = cardRepository.findAll(pageRequest).getContent();
-        if (owner != null) {
-            List<Card> cardsUserByEmail = cardRepository.findAllCardsByUserEmailPages(pageRequest, owner);
-            return new PageImpl<>(cardMapper.toCardResponseList(
-                    cardsUserByEmail.stream()
-                            .filter(c -> c.getUser().getEmail().equals(owner))
-                            .toList()
-            ), pageRequest, cardsUserByEmail.size());
-        } else {
-            return new PageImpl<>(cardMapper.toCardResponseList(cards), pageRequest, cards.size());
+    @Transactional(readOnly = true)
+    public CursorPageResponse<CardResponse> scrollCards(CardSearchRequest search, String sortField,
+                                                        String cursor, int limit) {
+        KeysetSort<CardView> sort = KeysetSort.select(SCROLL_SORTS, sortField);
+        Specification<Card> spec = CardSpecifications.filter(toFilter(search)).and(sort.after(cursor));
+        ///-> На одну строку больше: так видно, есть ли следующая страница
+        List<CardView> rows = cardRepository.findViews(spec, sort.sort(), limit + 1);
+        boolean hasNext = rows.size() > limit;
+        List<CardView> page = hasNext ? rows.subList(0, limit) : rows;
+        return new CursorPageResponse<>(cardMapper.toCardResponseList(page),
+                hasNext ? sort.cursorAfter(page.get(limit - 1)) : null);
+    }
+
+    private static CardFilter toFilter(CardSearchRequest search) {
+        return new CardFilter(
+                null,
+                null,
+                search.status(),
+                search.expiresFrom(),
+                search.expiresTo(),
+                search.balanceFrom() == null ? null : Money.toMinor(search.balanceFrom()),
+                search.balanceTo() == null ? null : Money.toMinor(search.balanceTo()),
+                search.owner());
+    }
+
+    ///-> Страница одним запросом; запрос количества - только если клиент просит итоги.
+    ///-> id в конце сортировки делает порядок страниц устойчивым при равных значениях поля
+    private Slice<CardResponse> findCards(CardFilter filter, PageRequest pageRequest, boolean withTotal) {
+        Specification<Card> spec = CardSpecifications.filter(filter);
+        PageRequest stable = pageRequest.withSort(toEntitySort(pageRequest.getSort()).and(Sort.by("id")));
+        Slice<CardView> cards = withTotal
+                ? cardRepository.findViewPage(spec, stable)
+                : cardRepository.findViewSlice(spec, stable);
+        return cards.map(cardMapper::toCardResponse);
+    }
+
+    ///-> Неизвестное поле - ошибка клиента, а не исключение Hibernate на запросе
+    private static Sort toEntitySort(Sort sort) {
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            String attribute = PAGE_SORTS.get(order.getProperty());
+            if (attribute == null) {
+                throw new InvalidCardFieldException("Сортировка карт поддерживается по полям: "
+                        + String.join(", ", PAGE_SORTS.keySet()));
+            }
+            orders.add(order.withProperty(attribute));
         }
+        return Sort.by(orders);
+    }
+
+    ///-> Промах после вытеснения читает основную базу: отстающая реплика закешировала бы старую карту на весь ttl
+    private CardResponse cachedCardResponse(Long cardId) {
+        return cardResponseCache.get(cardId, id -> ReadYourWrites.onPrimary(
+                () -> cardRepository.findById(id).map(cardMapper::toCardResponse).orElse(null)));
+    }
+
+    ///-> id из индекса номеров в памяти, сама карта - по первичному ключу
+    private Card findCardByLast4(String last4) {
+        return cardNumberIndex.findCard(last4, cardRepository::findById).orElse(null);
+    }
+
+    private Optional<Card> findCardByUserAndLast4(Long userId, String last4) {
+        return cardNumberIndex.findCard(userId, last4, cardRepository::findById);
     }
 }
@@ -0,0 +1,14 @@
+package dev.folomkin.bankrest.service.card.bulk;
+
+import java.util.UUID;
+
+/**
+ * Итог пакетной загрузки карт.
+ *
+ * @param importId id загрузки, по нему читается файл отклоненных строк
+ * @param total    строк с картами в файле
+ * @param imported создано карт
+ * @param rejected отклонено строк: ошибки проверки и конфликты с существующими картами
+ */
+public record CardImportResult(UUID importId, long total, long imported, long rejected) {
+}
@@ -0,0 +1,335 @@
+package dev.folomkin.bankrest.service.card.bulk;
+
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.model.Money;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import dev.folomkin.bankrest.service.card.index.CardNumberIndex;
+import dev.folomkin.bankrest.service.card.ledger.LedgerService;
+import dev.folomkin.bankrest.utils.CardSaveServiceUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+
+/**
+ * Пакетная загрузка карт из CSV.
+ * <p>
+ * Файл читается построчно, каждая строка проверяется как в
+ * {@link CardSaveServiceUtil}: формат номера, неотрицательный баланс,
+ * существующий владелец (id всех пользователей загружаются заранее), номер
+ * маскируется. Строки, в том числе отклоненные с причиной, сразу уходят в
+ * card_import_staging через COPY FROM STDIN - файл целиком в памяти не
+ * держится.
+ * <p>
+ * Затем один запрос переносит проверенные строки в cards, создает
+ * начальные снимки баланса и отмечает конфликты: номер или последние
+ * 4 цифры уже есть в базе или повторяются в файле. Последние цифры
+ * уникальны глобально, как в /create-card: по ним карты ищут эндпоинты
+ * администратора и {@link CardNumberIndex}. Отклоненные строки отдаются
+ * файлом {@link #writeRejected}, после чего строки загрузки удаляются.
+ */
+@Slf4j
+@Service
+public class CardImportService {
+
+    public static final String HEADER = "openNumber,expirationDate,balance,userId";
+
+    private static final Pattern OPEN_NUMBER = Pattern.compile("^(\\d{4}(\\s)\\d{4}(\\s)\\d{4}(\\s)\\d{4})$");
+    private static final int BUFFER = 64 * 1024;
+    private static final int FETCH_SIZE = 10_000;
+
+    private static final String COPY_SQL = """
+            COPY card_import_staging (import_id, line_no, open_number, encrypted_number, last4,
+                                      expiration_date, balance_minor, user_id, reason)
+            FROM STDIN WITH (FORMAT csv)
+            """;
+
+    ///-> Первая строка файла для каждого номера и для каждых последних цифр - кандидат;
+    ///-> ON CONFLICT ловит номера, вставленные параллельно. Результат - строка на созданную карту
+    ///-> (хотя бы одна, с id null, если карт не создано) и число отклоненных строк
+    private static final String MERGE_SQL = """
+            WITH candidates AS (
+                SELECT line_no, open_number,
+                       row_number() OVER (PARTITION BY open_number ORDER BY line_no) AS number_rank,
+                       row_number() OVER (PARTITION BY last4 ORDER BY line_no) AS last4_rank
+                FROM card_import_staging
+                WHERE import_id = ? AND reason IS NULL
+            ), inserted AS (
+                INSERT INTO cards (open_number, encrypted_number, last4, expiration_date, status,
+                                   balance_minor, balance_slots, user_id, version)
+                SELECT s.open_number, s.encrypted_number, s.last4, s.expiration_date, 'ACTIVE',
+                       s.balance_minor, 0, s.user_id, 0
+                FROM card_import_staging s
+                JOIN candidates c ON c.line_no = s.line_no
+                WHERE s.import_id = ? AND c.number_rank = 1 AND c.last4_rank = 1
+                  AND NOT EXISTS (SELECT 1 FROM cards x WHERE x.last4 = s.last4)
+                ON CONFLICT (open_number) DO NOTHING
+                RETURNING id, open_number, balance_minor, user_id, last4
+            ), checkpoints AS (
+                INSERT INTO card_balance_checkpoints (card_id, balance_minor, covered_until, created_at)
+                SELECT id, balance_minor, ?, CURRENT_TIMESTAMP FROM inserted
+            ), rejected AS (
+                UPDATE card_import_staging s
+                SET reason = CASE
+                    WHEN c.number_rank > 1 THEN 'Номер карты повторяется в файле'
+                    WHEN c.last4_rank > 1 THEN 'Последние цифры номера повторяются в файле'
+                    ELSE 'Карта с таким номером или с такими последними цифрами уже существует'
+                END
+                FROM candidates c
+                LEFT JOIN inserted i ON i.open_number = c.open_number
+                WHERE s.import_id = ? AND s.line_no = c.line_no
+                  AND (i.id IS NULL OR c.number_rank > 1 OR c.last4_rank > 1)
+                RETURNING s.line_no
+            )
+            SELECT i.id, i.user_id, i.last4, r.rejected
+            FROM (SELECT count(*) AS rejected FROM rejected) r
+            LEFT JOIN inserted i ON TRUE
+            """;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final CardSaveServiceUtil cardSaveServiceUtil;
+    private final CardNumberIndex cardNumberIndex;
+
+    public CardImportService(DataSource dataSource,
+                             PlatformTransactionManager transactionManager,
+                             CardSaveServiceUtil cardSaveServiceUtil,
+                             CardNumberIndex cardNumberIndex) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.cardSaveServiceUtil = cardSaveServiceUtil;
+        this.cardNumberIndex = cardNumberIndex;
+    }
+
+    /// Загрузка файла: заголовок HEADER, далее строка на карту. userId 0 - текущий пользователь
+    public CardImportResult importCards(InputStream csv, AuthenticatedUser currentUser) {
+        long started = System.nanoTime();
+        UUID importId = UUID.randomUUID();
+        long[] userIds = loadUserIds();
+
+        CardImportResult result = transactionTemplate.execute(status -> {
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            try {
+                CopyIn copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+                long[] counts;
+                try {
+                    counts = stage(csv, importId, userIds, currentUser, copy);
+                    copy.endCopy();
+                } finally {
+                    if (copy.isActive()) {
+                        copy.cancelCopy();
+                    }
+                }
+                List<ImportedCard> imported = new ArrayList<>();
+                long[] rejected = new long[1];
+                jdbcTemplate.query(MERGE_SQL, (RowCallbackHandler) rs -> {
+                    rejected[0] = rs.getLong("rejected");
+                    long cardId = rs.getLong("id");
+                    if (!rs.wasNull()) {
+                        imported.add(new ImportedCard(cardId, rs.getLong("user_id"), rs.getString("last4")));
+                    }
+                }, importId, importId, Timestamp.valueOf(LedgerService.BEGINNING), importId);
+                indexAfterCommit(imported);
+                return new CardImportResult(importId, counts[0], imported.size(), counts[1] + rejected[0]);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Ошибка загрузки карт в базу", e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        log.info("Загрузка карт {}: строк {}, создано {}, отклонено {} за {} мс", importId,
+                result.total(), result.imported(), result.rejected(), (System.nanoTime() - started) / 1_000_000);
+        return result;
+    }
+
+    ///-> Новые карты - в индекс номеров после коммита, как и карты, созданные по одной
+    private void indexAfterCommit(List<ImportedCard> imported) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                for (ImportedCard card : imported) {
+                    cardNumberIndex.cardCreated(card.id(), card.userId(), card.last4());
+                }
+            }
+        });
+    }
+
+    /// CSV отклоненных строк: номер строки файла и причина. Затем строки загрузки удаляются
+    public void writeRejected(UUID importId, OutputStream out) {
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER);
+            writer.write("line,reason\r\n");
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query("""
+                    SELECT line_no, reason FROM card_import_staging
+                    WHERE import_id = ? AND reason IS NOT NULL
+                    ORDER BY line_no
+                    """, rs -> {
+                try {
+                    writer.write(Long.toString(rs.getLong(1)));
+                    writer.write(",\"");
+                    writer.write(rs.getString(2).replace("\"", "\"\""));
+                    writer.write("\"\r\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, importId));
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            jdbcTemplate.update("DELETE FROM card_import_staging WHERE import_id = ?", importId);
+        }
+    }
+
+    /// Все строки файла в COPY; возвращает {строк с картами, отклонено проверкой}
+    private long[] stage(InputStream csv, UUID importId, long[] userIds, AuthenticatedUser currentUser, CopyIn copy)
+            throws IOException, SQLException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8), BUFFER);
+        String header = reader.readLine();
+        if (header == null || !HEADER.equals(header.replace("﻿", "").trim())) {
+            throw new InvalidCardFieldException("Первая строка файла должна быть заголовком " + HEADER);
+        }
+        StringBuilder rows = new StringBuilder(BUFFER + 256);
+        long lineNo = 1;
+        long total = 0;
+        long invalid = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank()) {
+                continue;
+            }
+            total++;
+            rows.append(importId).append(',').append(lineNo).append(',');
+            try {
+                ImportRow row = parse(line, userIds, currentUser);
+                rows.append(row.openNumber()).append(',')
+                        .append(row.encryptedNumber()).append(',')
+                        .append(row.last4()).append(',')
+                        .append(row.expirationDate()).append(',')
+                        .append(row.balanceMinor()).append(',')
+                        .append(row.userId()).append(",\n");
+            } catch (InvalidCardFieldException e) {
+                invalid++;
+                rows.append(",,,,,,\"").append(e.getMessage().replace("\"", "\"\"")).append("\"\n");
+            }
+            if (rows.length() >= BUFFER) {
+                flush(rows, copy);
+            }
+        }
+        flush(rows, copy);
+        return new long[]{total, invalid};
+    }
+
+    private ImportRow parse(String line, long[] userIds, AuthenticatedUser currentUser) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 4) {
+            throw new InvalidCardFieldException("Ожидается 4 поля: " + HEADER);
+        }
+        String openNumber = unquote(fields[0]);
+        if (!OPEN_NUMBER.matcher(openNumber).matches()) {
+            throw new InvalidCardFieldException(
+                    "Номер карты должен содержать 16 цифр и соответствовать паттерну 1111 2222 3333 4444");
+        }
+        LocalDate expirationDate;
+        try {
+            expirationDate = LocalDate.parse(unquote(fields[1]));
+        } catch (DateTimeParseException e) {
+            throw new InvalidCardFieldException("Дата окончания действия карты указывается в формате ГГГГ-ММ-ДД");
+        }
+        BigDecimal balance;
+        try {
+            balance = new BigDecimal(unquote(fields[2]));
+        } catch (NumberFormatException e) {
+            throw new InvalidCardFieldException("Баланс должен быть числом");
+        }
+        if (balance.signum() == -1) {
+            throw new InvalidCardFieldException("Баланс не должен быть отрицательным");
+        }
+        long balanceMinor = Money.toMinor(balance);
+        long userId;
+        try {
+            userId = Long.parseLong(unquote(fields[3]));
+        } catch (NumberFormatException e) {
+            throw new InvalidCardFieldException("ID владельца карты должен быть числом");
+        }
+        if (userId == 0 && currentUser != null) {
+            userId = currentUser.id();
+        }
+        if (Arrays.binarySearch(userIds, userId) < 0) {
+            throw new InvalidCardFieldException("Пользователь с id " + userId + " не найден");
+        }
+        return new ImportRow(openNumber, cardSaveServiceUtil.encryptedNumber(openNumber),
+                openNumber.substring(openNumber.length() - 4), expirationDate, balanceMinor, userId);
+    }
+
+    private long[] loadUserIds() {
+        LongStream.Builder ids = LongStream.builder();
+        jdbcTemplate.query("SELECT id FROM users ORDER BY id", rs -> {
+            ids.add(rs.getLong(1));
+        });
+        return ids.build().toArray();
+    }
+
+    private static void flush(StringBuilder rows, CopyIn copy) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+
+    private static String unquote(String field) {
+        String value = field.trim();
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1).trim();
+        }
+        return value;
+    }
+
+    private record ImportRow(String openNumber, String encryptedNumber, String last4,
+                             LocalDate expirationDate, long balanceMinor, long userId) {
+    }
+
+    private record ImportedCard(long id, long userId, String last4) {
+    }
+}
@@ -0,0 +1,72 @@
+package dev.folomkin.bankrest.service.card.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.folomkin.bankrest.domain.dto.card.CardResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Кеш {@link CardResponse} по id карты.
+ * <p>
+ * Caffeine с ограничением по размеру: вытеснение W-TinyLFU учитывает
+ * частоту обращений, поэтому часто читаемые карты не вытесняются потоком
+ * разовых чтений. Статистика (попадания, вытеснения, время загрузки)
+ * публикуется в метриках cache.* с тегом cache=card-responses.
+ * <p>
+ * Все изменения карт (переводы, статус, слоты, удаление) вызывают
+ * {@link #evictAfterCommit} в своей транзакции. Запись удаляется после
+ * завершения транзакции; если в этот момент карта загружается, Caffeine
+ * дожидается загрузки и удаляет уже ее результат, поэтому старое значение
+ * не переживает изменение. expire-after-write ограничивает устаревание от
+ * изменений, сделанных другими экземплярами приложения.
+ */
+@Component
+public class CardResponseCache {
+
+    private final Cache<Long, CardResponse> cache;
+
+    public CardResponseCache(MeterRegistry meterRegistry,
+                             @Value("${bank.card-cache.maximum-size:100000}") long maximumSize,
+                             @Value("${bank.card-cache.expire-after-write:PT1M}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "card-responses");
+    }
+
+    /// Ответ из кеша или загруженный loader. null от loader (карты нет) не кешируется
+    public CardResponse get(Long cardId, Function<Long, CardResponse> loader) {
+        return cache.get(cardId, loader);
+    }
+
+    public void evictAfterCommit(Long... cardIds) {
+        evictAfterCommit(List.of(cardIds));
+    }
+
+    public void evictAfterCommit(Collection<Long> cardIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidateAll(cardIds);
+            return;
+        }
+        ///-> Копия: коллекция вызывающего может измениться до коммита
+        List<Long> ids = List.copyOf(cardIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                cache.invalidateAll(ids);
+            }
+        });
+    }
+}
@@ -0,0 +1,299 @@
+package dev.folomkin.bankrest.service.card.index;
+
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.repository.CardRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Индекс номеров карт в памяти: (владелец, последние 4 цифры) -> id карты.
+ * <p>
+ * Ключ - id владельца и 4 цифры, упакованные в один long, значения лежат в
+ * {@link LongLongOpenHashMap}, поэтому 10 млн карт занимают 256 МиБ
+ * (HashMap со строковыми ключами - 1,1 ГиБ, см. CardNumberIndexBenchmark). Отдельно хранится
+ * последние 4 цифры -> id для поиска без владельца: номера создаются
+ * уникальными по последним цифрам, совпадения помечаются и ищутся в базе.
+ * <p>
+ * Загружается потоком из cards после старта, изменения приходят из
+ * {@link CardNumberIndexListener} после коммита. Промах, в том числе до
+ * окончания загрузки или для карты, созданной другим экземпляром, ищется в
+ * базе и добавляется в индекс. Владелец и номер карты после создания не
+ * меняются, поэтому найденный id либо верен, либо карта уже удалена: ее
+ * удалил другой экземпляр, или промах добавил id в индекс уже после
+ * удаления. Такую запись убирают {@link #findCard} и {@link #evictIfMissing},
+ * когда карта по id не находится.
+ * <p>
+ * Выключается свойством bank.card-index.enabled.
+ */
+@Slf4j
+@Component
+public class CardNumberIndex {
+
+    private static final int LAST4_VALUES = 10_000;
+    private static final long AMBIGUOUS = -1L;
+
+    private final CardRepository cardRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+
+    private final StampedLock lock = new StampedLock();
+    private final LongLongOpenHashMap byOwner;
+    private final long[] byLast4 = new long[LAST4_VALUES];
+
+    /// Карты, удаленные во время загрузки: загрузка могла прочитать их раньше удаления
+    private final Set<Long> removedWhileLoading = ConcurrentHashMap.newKeySet();
+    private volatile boolean loading;
+
+    public CardNumberIndex(CardRepository cardRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${bank.card-index.enabled:true}") boolean enabled,
+                           @Value("${bank.card-index.expected-size:100000}") int expectedSize) {
+        this.cardRepository = cardRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.byOwner = new LongLongOpenHashMap(enabled ? expectedSize : 0);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        loading = true;
+        try {
+            ///-> Транзакция нужна, чтобы Postgres отдавал строки курсором по fetch size, а не все сразу
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<Object[]> rows = cardRepository.streamNumberKeys()) {
+                    rows.forEach(row -> {
+                        Long cardId = (Long) row[0];
+                        if (!removedWhileLoading.contains(cardId)) {
+                            put((Long) row[1], (String) row[2], cardId);
+                        }
+                    });
+                }
+            });
+        } finally {
+            loading = false;
+            removedWhileLoading.clear();
+        }
+        log.info("Индекс номеров карт загружен за {} мс: карт {}, {} КиБ",
+                (System.nanoTime() - started) / 1_000_000, size(), memoryBytes() / 1024);
+    }
+
+    /// id карты владельца или null, если такой карты нет
+    public Long findCardId(Long userId, String last4) {
+        long key = key(userId, last4);
+        if (!enabled || key == 0L) {
+            return cardRepository.findCardIdByUserIdAndLast4(userId, last4);
+        }
+        long cardId = get(key);
+        if (cardId != LongLongOpenHashMap.NO_VALUE) {
+            return cardId;
+        }
+        Long found = cardRepository.findCardIdByUserIdAndLast4(userId, last4);
+        if (found != null) {
+            put(userId, last4, found);
+        }
+        return found;
+    }
+
+    /// id карты с такими последними цифрами среди всех карт или null
+    public Long findCardId(String last4) {
+        int digits = digits(last4);
+        if (!enabled || digits < 0) {
+            return single(cardRepository.findCardIdsByLast4(last4));
+        }
+        long cardId;
+        long stamp = lock.tryOptimisticRead();
+        cardId = byLast4[digits];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                cardId = byLast4[digits];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (cardId > 0) {
+            return cardId;
+        }
+        return single(cardRepository.findCardIdsByLast4(last4));
+    }
+
+    /**
+     * Карта владельца по id из индекса, loader читает ее по id. Если карты с
+     * этим id нет, запись индекса удаляется и id ищется в базе еще раз
+     */
+    public <T> Optional<T> findCard(Long userId, String last4, Function<Long, Optional<T>> loader) {
+        Long cardId = findCardId(userId, last4);
+        if (cardId == null) {
+            return Optional.empty();
+        }
+        Optional<T> card = loader.apply(cardId);
+        if (card.isPresent() || !enabled) {
+            return card;
+        }
+        forget(userId, last4, cardId);
+        Long found = findCardId(userId, last4);
+        return found == null ? Optional.empty() : loader.apply(found);
+    }
+
+    /// То же среди всех карт, по последним цифрам
+    public <T> Optional<T> findCard(String last4, Function<Long, Optional<T>> loader) {
+        Long cardId = findCardId(last4);
+        if (cardId == null) {
+            return Optional.empty();
+        }
+        Optional<T> card = loader.apply(cardId);
+        if (card.isPresent() || !enabled) {
+            return card;
+        }
+        forget(null, last4, cardId);
+        Long found = findCardId(last4);
+        return found == null ? Optional.empty() : loader.apply(found);
+    }
+
+    /**
+     * Удаление записи, если карты cardId уже нет в базе. Для тех, кто берет из
+     * индекса только id, когда операция по нему не нашла карту.
+     * true - запись была устаревшей
+     */
+    public boolean evictIfMissing(Long userId, String last4, Long cardId) {
+        if (!enabled || cardId == null || cardRepository.existsById(cardId)) {
+            return false;
+        }
+        forget(userId, last4, cardId);
+        return true;
+    }
+
+    /// Карта, созданная в обход JPA (пакетная загрузка). Вызывается после коммита
+    public void cardCreated(Long cardId, Long userId, String last4) {
+        if (enabled) {
+            put(userId, last4, cardId);
+        }
+    }
+
+    void cardSaved(Card card) {
+        if (enabled && card.getUser() != null) {
+            put(card.getUser().getId(), card.getLast4(), card.getId());
+        }
+    }
+
+    void cardRemoved(Card card) {
+        if (enabled && card.getUser() != null) {
+            forget(card.getUser().getId(), card.getLast4(), card.getId());
+        }
+    }
+
+    /// Удаление записей карты, если они еще указывают на нее. userId null - только по последним цифрам
+    private void forget(Long userId, String last4, Long cardId) {
+        if (loading) {
+            removedWhileLoading.add(cardId);
+        }
+        long key = key(userId, last4);
+        int digits = digits(last4);
+        long stamp = lock.writeLock();
+        try {
+            if (key != 0L) {
+                byOwner.remove(key, cardId);
+            }
+            if (digits >= 0 && byLast4[digits] == cardId) {
+                byLast4[digits] = 0L;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return byOwner.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /// Память под массивы индекса, байт
+    public long memoryBytes() {
+        long stamp = lock.readLock();
+        try {
+            return byOwner.memoryBytes() + (long) byLast4.length * Long.BYTES;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        long cardId = byOwner.get(key);
+        if (lock.validate(stamp)) {
+            return cardId;
+        }
+        stamp = lock.readLock();
+        try {
+            return byOwner.get(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void put(Long userId, String last4, Long cardId) {
+        long key = key(userId, last4);
+        if (key == 0L || cardId == null) {
+            return;
+        }
+        int digits = digits(last4);
+        long stamp = lock.writeLock();
+        try {
+            byOwner.put(key, cardId);
+            long current = byLast4[digits];
+            byLast4[digits] = current == 0L || current == cardId ? cardId : AMBIGUOUS;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /// Старшие биты - id владельца, младшие 14 - число из 4 цифр. 0 - номер не из 4 цифр
+    public static long key(Long userId, String last4) {
+        int digits = digits(last4);
+        if (userId == null || userId <= 0 || userId >= (1L << 49) || digits < 0) {
+            return 0L;
+        }
+        return userId << 14 | digits;
+    }
+
+    private static int digits(String last4) {
+        if (last4 == null || last4.length() != 4) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = last4.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static Long single(List<Long> cardIds) {
+        return cardIds.size() == 1 ? cardIds.get(0) : null;
+    }
+}
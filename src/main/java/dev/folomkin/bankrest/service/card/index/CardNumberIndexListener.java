@@ -0,0 +1,50 @@
+package dev.folomkin.bankrest.service.card.index;
+
+import dev.folomkin.bankrest.domain.model.Card;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA-слушатель {@link Card}: передает в {@link CardNumberIndex} создание и
+ * удаление карт. Обновления не нужны: владелец и номер карты не меняются.
+ * <p>
+ * Индекс меняется только после коммита, откаченные изменения в него не
+ * попадают. Индекс берется через ObjectProvider: слушатель создается вместе
+ * с EntityManagerFactory, раньше репозиториев, от которых зависит индекс.
+ */
+@Component
+public class CardNumberIndexListener {
+
+    private final ObjectProvider<CardNumberIndex> cardNumberIndex;
+
+    public CardNumberIndexListener(ObjectProvider<CardNumberIndex> cardNumberIndex) {
+        this.cardNumberIndex = cardNumberIndex;
+    }
+
+    @PostPersist
+    void saved(Card card) {
+        afterCommit(() -> cardNumberIndex.ifAvailable(index -> index.cardSaved(card)));
+    }
+
+    @PostRemove
+    void removed(Card card) {
+        afterCommit(() -> cardNumberIndex.ifAvailable(index -> index.cardRemoved(card)));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
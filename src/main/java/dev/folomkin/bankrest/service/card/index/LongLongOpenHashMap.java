@@ -0,0 +1,144 @@
+package dev.folomkin.bankrest.service.card.index;
+
+/**
+ * Хеш-таблица long -> long с открытой адресацией и линейным пробированием.
+ * <p>
+ * Ключи и значения лежат в двух массивах примитивов: ни объекта на запись,
+ * ни упаковки. Ключ 0 означает пустую ячейку, поэтому он не допускается.
+ * Удаление сдвигает следующие записи цепочки назад, без надгробий.
+ * <p>
+ * Не потокобезопасна, синхронизацией управляет {@link CardNumberIndex}.
+ */
+public final class LongLongOpenHashMap {
+
+    public static final long NO_VALUE = 0L;
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int resizeAt;
+
+    public LongLongOpenHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /// Значение по ключу или NO_VALUE. Вызывается и под оптимистичным чтением, когда таблица
+    /// может меняться параллельно: поэтому локальные ссылки на массивы и ограниченное пробирование
+    public long get(long key) {
+        long[] keys = this.keys;
+        long[] values = this.values;
+        int mask = Math.min(keys.length, values.length) - 1;
+        for (int probe = 0, i = slot(key, mask); probe <= mask; probe++, i = (i + 1) & mask) {
+            long current = keys[i];
+            if (current == key) {
+                return values[i];
+            }
+            if (current == 0L) {
+                return NO_VALUE;
+            }
+        }
+        return NO_VALUE;
+    }
+
+    public void put(long key, long value) {
+        checkKey(key);
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != 0L) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /// Удаляет ключ, если ему соответствует именно это значение
+    public boolean remove(long key, long value) {
+        checkKey(key);
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != key) {
+            if (keys[i] == 0L) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        if (values[i] != value) {
+            return false;
+        }
+        ///-> Сдвигаем назад записи, которые без освободившейся ячейки стали бы недостижимы
+        int gap = i;
+        for (int j = (gap + 1) & mask; keys[j] != 0L; j = (j + 1) & mask) {
+            int home = slot(keys[j], mask);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = 0L;
+        values[gap] = NO_VALUE;
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /// Размер массивов таблицы в байтах
+    public long memoryBytes() {
+        return 2L * keys.length * Long.BYTES;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int k = 0; k < oldKeys.length; k++) {
+            if (oldKeys[k] != 0L) {
+                int i = slot(oldKeys[k], mask);
+                while (keys[i] != 0L) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[k];
+                values[i] = oldValues[k];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 16) / (double) LOAD_FACTOR) + 1;
+        return (int) Math.min(1L << 30, Long.highestOneBit(needed - 1) << 1);
+    }
+
+    /// Перемешивание битов (финализатор MurmurHash3): соседние ключи не должны идти подряд
+    private static int slot(long key, int mask) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private static void checkKey(long key) {
+        if (key == 0L) {
+            throw new IllegalArgumentException("Ключ 0 зарезервирован для пустой ячейки");
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package dev.folomkin.bankrest.service.card.journal;
+
+import dev.folomkin.bankrest.domain.model.Transfer;
+import dev.folomkin.bankrest.service.card.cache.CardResponseCache;
+import dev.folomkin.bankrest.service.card.ledger.LedgerService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Перенос записей журнала в таблицу cards.
+ * <p>
+ * Записи пачки сворачиваются в итоговое изменение по каждой карте, карты
+ * обновляются одним JDBC-батчем в порядке возрастания id. В той же транзакции
+ * пишутся переводы, проводки и номер последней перенесенной записи, поэтому после
+ * падения повторный перенос начинается ровно с первой неперенесенной записи.
+ */
+@Component
+public class JournalApplier {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LedgerService ledgerService;
+    private final CardResponseCache cardResponseCache;
+    private final TransactionTemplate transactionTemplate;
+
+    public JournalApplier(JdbcTemplate jdbcTemplate,
+                          LedgerService ledgerService,
+                          CardResponseCache cardResponseCache,
+                          PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ledgerService = ledgerService;
+        this.cardResponseCache = cardResponseCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public long appliedSequence() {
+        Long applied = jdbcTemplate.queryForObject(
+                "SELECT applied_sequence FROM transfer_journal_state WHERE id = 1", Long.class);
+        return applied == null ? 0 : applied;
+    }
+
+    /**
+     * Перенос не больше max записей после appliedSequence.
+     * Возвращает номер последней перенесенной записи
+     */
+    public long apply(TransferJournal journal, long appliedSequence, int max) {
+        Map<Long, Long> deltas = new TreeMap<>();
+        List<long[]> transfers = new ArrayList<>();
+        long[] last = {appliedSequence};
+
+        journal.read(appliedSequence + 1, max, (sequence, userId, cardOutId, cardInId, amountMinor) -> {
+            deltas.merge(cardOutId, -amountMinor, Long::sum);
+            deltas.merge(cardInId, amountMinor, Long::sum);
+            transfers.add(new long[]{userId, cardOutId, cardInId, amountMinor});
+            last[0] = sequence;
+        });
+        if (transfers.isEmpty()) {
+            return appliedSequence;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> cardIds = new ArrayList<>(deltas.keySet());
+            int[] updated = jdbcTemplate.batchUpdate(
+                    "UPDATE cards SET balance_minor = balance_minor + ?, version = version + 1 WHERE id = ?",
+                    cardIds, cardIds.size(), (ps, cardId) -> {
+                        ps.setLong(1, deltas.get(cardId));
+                        ps.setLong(2, cardId);
+                    })[0];
+            cardResponseCache.evictAfterCommit(cardIds);
+
+            ///-> Удаление карты с неперенесенными записями запрещено (JournalTransferEngine.cardDeleted).
+            ///-> Если карта все же не найдена, перенос останавливается: изменение одной стороны перевода
+            ///-> без другой создало бы или уничтожило деньги
+            List<Long> missing = new ArrayList<>();
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    missing.add(cardIds.get(i));
+                }
+            }
+            if (!missing.isEmpty()) {
+                throw new IllegalStateException("Карты " + missing + " не найдены при переносе журнала после записи "
+                        + appliedSequence + ", перенос остановлен");
+            }
+
+            Map<Long, String> last4s = last4s(cardIds);
+            List<Transfer> applied = new ArrayList<>(transfers.size());
+            for (long[] record : transfers) {
+                applied.add(new Transfer(record[0], record[1], last4s.get(record[1]),
+                        record[2], last4s.get(record[2]), record[3]));
+            }
+            ledgerService.recordTransfers(applied);
+
+            int rows = jdbcTemplate.update(
+                    "UPDATE transfer_journal_state SET applied_sequence = ? WHERE id = 1 AND applied_sequence = ?",
+                    last[0], appliedSequence);
+            if (rows != 1) {
+                throw new IllegalStateException("Журнал переносится другим экземпляром приложения");
+            }
+        });
+        return last[0];
+    }
+
+    private Map<Long, String> last4s(List<Long> cardIds) {
+        Map<Long, String> last4s = new HashMap<>();
+        jdbcTemplate.query("SELECT id, last4 FROM cards WHERE id IN (" +
+                        String.join(",", Collections.nCopies(cardIds.size(), "?")) + ")",
+                (RowCallbackHandler) rs -> last4s.put(rs.getLong(1), rs.getString(2)), cardIds.toArray());
+        return last4s;
+    }
+}
@@ -0,0 +1,87 @@
+package dev.folomkin.bankrest.service.card.journal;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Формат записи журнала переводов: 64 байта фиксированной длины.
+ * <pre>
+ *  0  long  sequence      номер записи, возрастает без пропусков
+ *  8  long  timestamp     время принятия перевода, мс
+ * 16  long  userId        владелец карт
+ * 24  long  cardOutId     карта-отправитель
+ * 32  long  cardInId      карта-получатель
+ * 40  long  amountMinor   сумма в копейках
+ * 48  int   magic         признак записанного слота
+ * 52  int   crc           CRC32 байт 0..51
+ * 56  long  reserved
+ * </pre>
+ * Методы работают по абсолютным смещениям в буфере и ничего не создают.
+ */
+final class JournalRecord {
+
+    static final int SIZE = 64;
+
+    static final int MAGIC = 0x4A524E4C;
+
+    private static final int SEQUENCE = 0;
+    private static final int TIMESTAMP = 8;
+    private static final int USER_ID = 16;
+    private static final int CARD_OUT_ID = 24;
+    private static final int CARD_IN_ID = 32;
+    private static final int AMOUNT = 40;
+    private static final int MAGIC_OFFSET = 48;
+    private static final int CRC_OFFSET = 52;
+
+    private JournalRecord() {
+    }
+
+    static void write(ByteBuffer buffer, int offset, CRC32 crc, long sequence, long timestamp,
+                      long userId, long cardOutId, long cardInId, long amountMinor) {
+        buffer.putLong(offset + SEQUENCE, sequence);
+        buffer.putLong(offset + TIMESTAMP, timestamp);
+        buffer.putLong(offset + USER_ID, userId);
+        buffer.putLong(offset + CARD_OUT_ID, cardOutId);
+        buffer.putLong(offset + CARD_IN_ID, cardInId);
+        buffer.putLong(offset + AMOUNT, amountMinor);
+        buffer.putInt(offset + MAGIC_OFFSET, MAGIC);
+        buffer.putInt(offset + CRC_OFFSET, checksum(buffer, offset, crc));
+    }
+
+    /// Слот записан полностью: недописанная при падении запись не пройдет проверку CRC
+    static boolean isValid(ByteBuffer buffer, int offset, CRC32 crc) {
+        return buffer.getInt(offset + MAGIC_OFFSET) == MAGIC
+                && buffer.getInt(offset + CRC_OFFSET) == checksum(buffer, offset, crc);
+    }
+
+    static long sequence(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + SEQUENCE);
+    }
+
+    static long userId(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + USER_ID);
+    }
+
+    static long cardOutId(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + CARD_OUT_ID);
+    }
+
+    static long cardInId(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + CARD_IN_ID);
+    }
+
+    static long amountMinor(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + AMOUNT);
+    }
+
+    /// CRC по окну буфера: position/limit восстанавливаются, копий не создается
+    private static int checksum(ByteBuffer buffer, int offset, CRC32 crc) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        crc.reset();
+        buffer.limit(offset + MAGIC_OFFSET + 4).position(offset);
+        crc.update(buffer);
+        buffer.limit(limit).position(position);
+        return (int) crc.getValue();
+    }
+}
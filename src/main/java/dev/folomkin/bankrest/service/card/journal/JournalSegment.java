@@ -0,0 +1,95 @@
+package dev.folomkin.bankrest.service.card.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Файл журнала заранее заданного размера, отображенный в память.
+ * Имя файла - номер первой записи, поэтому сегменты сортируются по имени.
+ */
+final class JournalSegment {
+
+    private static final String SUFFIX = ".journal";
+
+    private final Path path;
+    private final long firstSequence;
+    private final int capacity;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private JournalSegment(Path path, long firstSequence, int capacity) throws IOException {
+        this.path = path;
+        this.firstSequence = firstSequence;
+        this.capacity = capacity;
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * JournalRecord.SIZE);
+    }
+
+    static JournalSegment create(Path directory, long firstSequence, int capacity) throws IOException {
+        return new JournalSegment(directory.resolve(fileName(firstSequence)), firstSequence, capacity);
+    }
+
+    /// Размер уже существующего сегмента берется из файла: его могли создать с другой настройкой
+    static JournalSegment open(Path path) throws IOException {
+        int capacity = (int) (Files.size(path) / JournalRecord.SIZE);
+        return new JournalSegment(path, firstSequence(path), capacity);
+    }
+
+    static boolean isSegment(Path path) {
+        return path.getFileName().toString().endsWith(SUFFIX);
+    }
+
+    static long firstSequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static String fileName(long firstSequence) {
+        return String.format("%020d%s", firstSequence, SUFFIX);
+    }
+
+    long firstSequence() {
+        return firstSequence;
+    }
+
+    /// Номер, который получила бы первая запись следующего сегмента
+    long endSequence() {
+        return firstSequence + capacity;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int offset(long sequence) {
+        return (int) (sequence - firstSequence) * JournalRecord.SIZE;
+    }
+
+    /// Буфер писателя. Читатели работают с собственной копией из view()
+    MappedByteBuffer buffer() {
+        return buffer;
+    }
+
+    ByteBuffer view() {
+        return buffer.duplicate();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,361 @@
+package dev.folomkin.bankrest.service.card.journal;
+
+import dev.folomkin.bankrest.domain.dto.card.BatchTransferMode;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.mapper.CardMapper;
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.CardStatus;
+import dev.folomkin.bankrest.domain.model.Money;
+import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import dev.folomkin.bankrest.repository.CardRepository;
+import dev.folomkin.bankrest.service.card.index.CardNumberIndex;
+import dev.folomkin.bankrest.service.card.transfer.TransferCommand;
+import dev.folomkin.bankrest.service.card.transfer.TransferOutcome;
+import dev.folomkin.bankrest.service.card.transfer.TransferValidator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Переводы через журнал.
+ * <p>
+ * Балансы карт, участвующих в переводах, держатся в памяти. Перевод
+ * проверяется по ним, записывается в {@link TransferJournal} и сразу
+ * подтверждается, без обращения к базе. Фоновый поток сбрасывает журнал на
+ * диск и переносит записи в cards через {@link JournalApplier}. При старте
+ * неперенесенный хвост журнала переносится до приема переводов.
+ * <p>
+ * Выключен по умолчанию (bank.transfer.journal.enabled). Журнал и балансы в
+ * памяти принадлежат одному процессу, поэтому включать его можно только
+ * при одном экземпляре приложения.
+ * <p>
+ * Карту нельзя удалить, пока в журнале есть ее неперенесенные записи: иначе
+ * перенос не нашел бы карту для одной стороны перевода.
+ */
+@Slf4j
+@Component
+public class JournalTransferEngine {
+
+    private final CardRepository cardRepository;
+    private final CardNumberIndex cardNumberIndex;
+    private final TransferValidator transferValidator;
+    private final CardMapper cardMapper;
+    private final JournalApplier journalApplier;
+    private final boolean enabled;
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final long flushIntervalMs;
+    private final int applyBatchSize;
+
+    /// Карты с балансом с учетом всех записей журнала. Меняются только под writeLock
+    private final Map<Long, Card> book = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    /// Номер последней записи журнала по карте. Меняется только под writeLock
+    private final Map<Long, Long> lastSequences = new HashMap<>();
+    /// Карты, удаление которых еще не завершено: переводы по ним не принимаются
+    private final Set<Long> deleting = new HashSet<>();
+
+    private TransferJournal journal;
+    private Thread flusher;
+    private volatile boolean running;
+    private volatile long appliedSequence;
+
+    public JournalTransferEngine(CardRepository cardRepository,
+                                 CardNumberIndex cardNumberIndex,
+                                 TransferValidator transferValidator,
+                                 CardMapper cardMapper,
+                                 JournalApplier journalApplier,
+                                 @Value("${bank.transfer.journal.enabled:false}") boolean enabled,
+                                 @Value("${bank.transfer.journal.directory:./data/journal}") String directory,
+                                 @Value("${bank.transfer.journal.records-per-segment:1048576}") int recordsPerSegment,
+                                 @Value("${bank.transfer.journal.flush-interval-ms:5}") long flushIntervalMs,
+                                 @Value("${bank.transfer.journal.apply-batch-size:5000}") int applyBatchSize) {
+        this.cardRepository = cardRepository;
+        this.cardNumberIndex = cardNumberIndex;
+        this.transferValidator = transferValidator;
+        this.cardMapper = cardMapper;
+        this.journalApplier = journalApplier;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.recordsPerSegment = recordsPerSegment;
+        this.flushIntervalMs = flushIntervalMs;
+        this.applyBatchSize = applyBatchSize;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        appliedSequence = journalApplier.appliedSequence();
+        journal = new TransferJournal(directory, recordsPerSegment, appliedSequence + 1);
+
+        ///-> Хвост, не перенесенный до остановки или падения
+        long tail = journal.lastSequence() - appliedSequence;
+        applyUpTo(journal.lastSequence());
+        if (tail > 0) {
+            log.info("Из журнала перенесено {} переводов, не примененных до перезапуска", tail);
+        }
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "transfer-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Журнал переводов: {}, последняя запись {}", directory.toAbsolutePath(), journal.lastSequence());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException, IOException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        flusher.join(10_000);
+        journal.force();
+        applyUpTo(journal.lastSequence());
+        journal.close();
+    }
+
+    public CardBalanceChangeResponse transfer(CardBalanceChangeRequest request, AuthenticatedUser user) {
+        long amountMinor = checkRequest(request);
+        Card cardOut = card(user.id(), request.cardNumberOut());
+        Card cardIn = card(user.id(), request.cardNumberIn());
+
+        synchronized (writeLock) {
+            cardOut = live(cardOut);
+            cardIn = live(cardIn);
+            transferValidator.validate(cardOut, cardIn, user);
+            transferValidator.checkFunds(cardOut, amountMinor);
+            append(user.id(), cardOut, cardIn, amountMinor);
+            move(cardOut, cardIn, amountMinor);
+            return cardMapper.toBalanceChangeResponse(cardOut, cardIn);
+        }
+    }
+
+    /**
+     * Пакет переводов с теми же правилами, что и у BatchTransferProcessor.
+     * Записи в журнал добавляются только после проверки всего пакета
+     */
+    public List<TransferOutcome> transferBatch(List<TransferCommand> commands, BatchTransferMode mode) {
+        List<Card[]> cards = new ArrayList<>(commands.size());
+        for (TransferCommand command : commands) {
+            Long userId = command.user().id();
+            cards.add(new Card[]{
+                    card(userId, command.request().cardNumberOut()),
+                    card(userId, command.request().cardNumberIn())});
+        }
+
+        synchronized (writeLock) {
+            List<TransferOutcome> outcomes = new ArrayList<>(commands.size());
+            List<Integer> applied = new ArrayList<>(commands.size());
+            for (int i = 0; i < commands.size(); i++) {
+                TransferCommand command = commands.get(i);
+                Card cardOut = live(cards.get(i)[0]);
+                Card cardIn = live(cards.get(i)[1]);
+                long amountMinor;
+                try {
+                    amountMinor = checkRequest(command.request());
+                    transferValidator.validate(cardOut, cardIn, command.user());
+                    transferValidator.checkFunds(cardOut, amountMinor);
+                } catch (InvalidCardFieldException e) {
+                    if (mode == BatchTransferMode.ALL_OR_NOTHING) {
+                        rollback(commands, cards, applied);
+                        throw new InvalidCardFieldException("Перевод #" + i + ": " + e.getMessage());
+                    }
+                    outcomes.add(TransferOutcome.failure(e));
+                    continue;
+                }
+                move(cardOut, cardIn, amountMinor);
+                applied.add(i);
+                outcomes.add(TransferOutcome.success(cardMapper.toBalanceChangeResponse(cardOut, cardIn)));
+            }
+
+            for (int k = 0; k < applied.size(); k++) {
+                int i = applied.get(k);
+                try {
+                    append(commands.get(i).user().id(), cards.get(i)[0], cards.get(i)[1],
+                            Money.toMinor(commands.get(i).request().amount()));
+                } catch (RuntimeException e) {
+                    rollback(commands, cards, applied.subList(k, applied.size()));
+                    throw e;
+                }
+            }
+            return outcomes;
+        }
+    }
+
+    /// Смена статуса видна проверкам сразу после коммита, без перечитывания карты
+    public void cardStatusChanged(Long cardId, CardStatus status) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> {
+            synchronized (writeLock) {
+                Card card = book.get(cardId);
+                if (card != null) {
+                    card.setCardStatus(status);
+                }
+            }
+        });
+    }
+
+    /**
+     * Вызывается до удаления карты в его транзакции. Если записи журнала по
+     * карте еще не перенесены в cards - {@link InvalidCardFieldException}.
+     * До завершения транзакции переводы по карте не принимаются
+     */
+    public void cardDeleted(Long cardId) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (writeLock) {
+            Long last = lastSequences.get(cardId);
+            if (last != null && last > appliedSequence) {
+                throw new InvalidCardFieldException("По карте есть переводы, еще не записанные в базу, повторите удаление позже");
+            }
+            deleting.add(cardId);
+        }
+        afterCompletion(committed -> {
+            synchronized (writeLock) {
+                deleting.remove(cardId);
+                if (committed) {
+                    book.remove(cardId);
+                    lastSequences.remove(cardId);
+                }
+            }
+        });
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMs);
+                journal.force();
+                applyUpTo(journal.lastSequence());
+                journal.deleteSegmentsUpTo(appliedSequence);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                ///-> Записи остаются в журнале и будут перенесены в следующем цикле
+                log.error("Ошибка переноса журнала переводов после записи {}", appliedSequence, e);
+            }
+        }
+    }
+
+    private void applyUpTo(long target) {
+        while (appliedSequence < target) {
+            appliedSequence = journalApplier.apply(journal, appliedSequence, applyBatchSize);
+        }
+    }
+
+    private Card card(Long userId, String last4) {
+        return cardNumberIndex.findCard(userId, last4, this::bookCard).orElse(null);
+    }
+
+    private Optional<Card> bookCard(Long cardId) {
+        Card card = book.get(cardId);
+        if (card != null) {
+            return Optional.of(card);
+        }
+        Card loaded = cardRepository.findById(cardId).map(JournalTransferEngine::detachedCopy).orElse(null);
+        if (loaded == null) {
+            return Optional.empty();
+        }
+        Card existing = book.putIfAbsent(cardId, loaded);
+        return Optional.of(existing != null ? existing : loaded);
+    }
+
+    /// Карта, удаление которой не завершено, для перевода не найдена
+    private Card live(Card card) {
+        return card == null || deleting.contains(card.getId()) ? null : card;
+    }
+
+    private void append(long userId, Card cardOut, Card cardIn, long amountMinor) {
+        long sequence = journal.append(userId, cardOut.getId(), cardIn.getId(), amountMinor);
+        lastSequences.put(cardOut.getId(), sequence);
+        lastSequences.put(cardIn.getId(), sequence);
+    }
+
+    /// Копия без ссылок на сущности контекста: баланс в памяти не должен попасть в базу через JPA
+    private static Card detachedCopy(Card card) {
+        User owner = new User();
+        owner.setId(card.getUser().getId());
+        Card copy = new Card(card.getId(), card.getOpenNumber(), card.getEncryptedNumber(),
+                card.getExpirationDate(), card.getCardStatus(), card.getBalance(), owner);
+        copy.setLast4(card.getLast4());
+        return copy;
+    }
+
+    /// Откаченная смена статуса или удаление не должны попасть в балансы в памяти
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static void afterCompletion(Consumer<Boolean> action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    private static void move(Card cardOut, Card cardIn, long amountMinor) {
+        cardOut.setBalanceMinor(Money.subtract(cardOut.getBalanceMinor(), amountMinor));
+        cardIn.setBalanceMinor(Money.add(cardIn.getBalanceMinor(), amountMinor));
+    }
+
+    private static void rollback(List<TransferCommand> commands, List<Card[]> cards, List<Integer> applied) {
+        for (int k = applied.size() - 1; k >= 0; k--) {
+            int i = applied.get(k);
+            move(cards.get(i)[1], cards.get(i)[0], Money.toMinor(commands.get(i).request().amount()));
+        }
+    }
+
+    private static long checkRequest(CardBalanceChangeRequest request) {
+        if (request.cardNumberOut().equals(request.cardNumberIn())) {
+            throw new InvalidCardFieldException("Номера карт должны быть разные");
+        }
+        if (request.amount() == null || request.amount().signum() <= 0) {
+            throw new InvalidCardFieldException("Сумма перевода должна быть больше нуля");
+        }
+        return Money.toMinor(request.amount());
+    }
+}
@@ -0,0 +1,175 @@
+package dev.folomkin.bankrest.service.card.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал переводов в файлах, отображенных в память.
+ * <p>
+ * Запись добавляется в текущий сегмент одним писателем; когда сегмент
+ * заполнен, создается следующий. Запись в отображенную память переживает
+ * падение процесса; от падения ОС защищает {@link #force()}, который
+ * вызывает фоновый поток. Читатели видят только записи до {@link #lastSequence()}.
+ */
+public class TransferJournal implements AutoCloseable {
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final ConcurrentSkipListMap<Long, JournalSegment> segments = new ConcurrentSkipListMap<>();
+    private final CRC32 writerCrc = new CRC32();
+
+    private volatile JournalSegment active;
+    private long nextSequence;
+
+    /// Последняя полностью записанная запись
+    private volatile long published;
+
+    /**
+     * firstSequence - номер первой записи, если каталог пуст. Так новый журнал
+     * продолжает нумерацию записей, уже перенесенных в базу
+     */
+    public TransferJournal(Path directory, int recordsPerSegment, long firstSequence) throws IOException {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        Files.createDirectories(directory);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(JournalSegment::isSegment).toList()) {
+                JournalSegment segment = JournalSegment.open(file);
+                segments.put(segment.firstSequence(), segment);
+            }
+        }
+
+        if (segments.isEmpty()) {
+            active = JournalSegment.create(directory, firstSequence, recordsPerSegment);
+            segments.put(active.firstSequence(), active);
+            nextSequence = firstSequence;
+        } else {
+            active = segments.lastEntry().getValue();
+            nextSequence = recoverWritePosition(active);
+        }
+        published = nextSequence - 1;
+    }
+
+    /// Первый пустой или недописанный слот последнего сегмента
+    private long recoverWritePosition(JournalSegment segment) {
+        ByteBuffer buffer = segment.buffer();
+        long sequence = segment.firstSequence();
+        while (sequence < segment.endSequence()) {
+            int offset = segment.offset(sequence);
+            if (!JournalRecord.isValid(buffer, offset, writerCrc) || JournalRecord.sequence(buffer, offset) != sequence) {
+                break;
+            }
+            sequence++;
+        }
+        return sequence;
+    }
+
+    /**
+     * Добавление записи. Возвращает ее номер
+     */
+    public synchronized long append(long userId, long cardOutId, long cardInId, long amountMinor) {
+        if (nextSequence == active.endSequence()) {
+            roll();
+        }
+        long sequence = nextSequence++;
+        JournalRecord.write(active.buffer(), active.offset(sequence), writerCrc,
+                sequence, System.currentTimeMillis(), userId, cardOutId, cardInId, amountMinor);
+        published = sequence;
+        return sequence;
+    }
+
+    private void roll() {
+        try {
+            active.force();
+            active = JournalSegment.create(directory, nextSequence, recordsPerSegment);
+            segments.put(active.firstSequence(), active);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать сегмент журнала", e);
+        }
+    }
+
+    public long lastSequence() {
+        return published;
+    }
+
+    /// Сброс текущего сегмента на диск. Заполненные сегменты сбрасываются при переключении
+    public void force() {
+        JournalSegment segment;
+        synchronized (this) {
+            segment = active;
+        }
+        segment.force();
+    }
+
+    /**
+     * Чтение записей начиная с fromSequence, не больше max.
+     * Возвращает количество прочитанных записей
+     */
+    public int read(long fromSequence, int max, RecordVisitor visitor) {
+        long last = published;
+        CRC32 crc = new CRC32();
+        int count = 0;
+        long sequence = fromSequence;
+        while (sequence <= last && count < max) {
+            Map.Entry<Long, JournalSegment> entry = segments.floorEntry(sequence);
+            if (entry == null) {
+                throw new IllegalStateException("Запись журнала " + sequence + " уже удалена");
+            }
+            JournalSegment segment = entry.getValue();
+            ByteBuffer view = segment.view();
+            long end = Math.min(last + 1, segment.endSequence());
+            for (; sequence < end && count < max; sequence++, count++) {
+                int offset = segment.offset(sequence);
+                if (!JournalRecord.isValid(view, offset, crc)) {
+                    throw new IllegalStateException("Запись журнала " + sequence + " повреждена");
+                }
+                visitor.accept(sequence,
+                        JournalRecord.userId(view, offset),
+                        JournalRecord.cardOutId(view, offset),
+                        JournalRecord.cardInId(view, offset),
+                        JournalRecord.amountMinor(view, offset));
+            }
+        }
+        return count;
+    }
+
+    /// Удаление сегментов, все записи которых уже перенесены в базу
+    public void deleteSegmentsUpTo(long appliedSequence) throws IOException {
+        List<JournalSegment> obsolete = new ArrayList<>();
+        for (JournalSegment segment : segments.values()) {
+            if (segment != active && segment.endSequence() <= appliedSequence + 1) {
+                obsolete.add(segment);
+            }
+        }
+        for (JournalSegment segment : obsolete) {
+            segments.remove(segment.firstSequence());
+            segment.delete();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        active.force();
+        for (JournalSegment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    /**
+     * Получатель записей при чтении. Поля передаются по отдельности, без объекта записи
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void accept(long sequence, long userId, long cardOutId, long cardInId, long amountMinor);
+    }
+}
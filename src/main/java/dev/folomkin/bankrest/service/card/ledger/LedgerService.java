@@ -0,0 +1,159 @@
+package dev.folomkin.bankrest.service.card.ledger;
+
+import dev.folomkin.bankrest.domain.model.CardBalanceCheckpoint;
+import dev.folomkin.bankrest.domain.model.LedgerDirection;
+import dev.folomkin.bankrest.domain.model.LedgerEntry;
+import dev.folomkin.bankrest.domain.model.Transfer;
+import dev.folomkin.bankrest.repository.CardBalanceCheckpointRepository;
+import dev.folomkin.bankrest.repository.CardBalanceCheckpointRepository.BalanceMismatch;
+import dev.folomkin.bankrest.repository.LedgerEntryRepository;
+import dev.folomkin.bankrest.repository.TransferRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Журнал проводок по картам (двойная запись).
+ * <p>
+ * Проводки пишутся в транзакции перевода и только добавляются. Периодически
+ * для карт с новыми проводками сохраняется снимок баланса, поэтому баланс по
+ * журналу считается от последнего снимка, а не по всей истории карты.
+ * Снимок покрывает проводки старше safety-lag: к этому моменту транзакции,
+ * создавшие их, уже завершены.
+ * <p>
+ * Проверки и списания по-прежнему идут по cards.balance_minor: журнал - это
+ * история операций, по которой баланс можно пересчитать. Чтобы он не
+ * разошелся с балансами незаметно, {@link #reconcile()} периодически сверяет
+ * снимок + проводки с балансом каждой карты.
+ */
+@Slf4j
+@Service
+public class LedgerService {
+
+    /// Начальные снимки покрывают время до любых проводок и не сдвигают границу периодических снимков
+    public static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+    static final LocalDateTime END = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    /// Сколько расхождений сверка выводит за один раз
+    static final int RECONCILE_LIMIT = 100;
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final TransferRepository transferRepository;
+    private final CardBalanceCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration safetyLag;
+
+    public LedgerService(LedgerEntryRepository ledgerEntryRepository,
+                         TransferRepository transferRepository,
+                         CardBalanceCheckpointRepository checkpointRepository,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${bank.ledger.checkpoint.safety-lag:PT1M}") Duration safetyLag) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.transferRepository = transferRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.safetyLag = safetyLag;
+    }
+
+    /// Пара проводок одного перевода
+    public static List<LedgerEntry> transferEntries(Transfer transfer) {
+        return List.of(
+                new LedgerEntry(transfer.getCardOutId(), transfer.getTransferId(),
+                        LedgerDirection.DEBIT, transfer.getAmountMinor()),
+                new LedgerEntry(transfer.getCardInId(), transfer.getTransferId(),
+                        LedgerDirection.CREDIT, transfer.getAmountMinor()));
+    }
+
+    /// Вызывается внутри транзакции перевода
+    public void recordTransfer(Transfer transfer) {
+        recordTransfers(List.of(transfer));
+    }
+
+    /// Переводы для истории пользователя и их проводки
+    public void recordTransfers(List<Transfer> transfers) {
+        List<LedgerEntry> entries = new ArrayList<>(transfers.size() * 2);
+        for (Transfer transfer : transfers) {
+            entries.addAll(transferEntries(transfer));
+        }
+        transferRepository.saveAll(transfers);
+        append(entries);
+    }
+
+    /// Вставки уходят JDBC-батчем при flush транзакции
+    public void append(List<LedgerEntry> entries) {
+        ledgerEntryRepository.saveAll(entries);
+    }
+
+    /// Начальный баланс новой карты
+    public void openCard(Long cardId, long balanceMinor) {
+        checkpointRepository.save(new CardBalanceCheckpoint(cardId, balanceMinor, BEGINNING));
+    }
+
+    public Page<LedgerEntry> history(Long cardId, Pageable pageable) {
+        return ledgerEntryRepository.findByCardIdOrderByCreatedAtDescIdDesc(cardId, pageable);
+    }
+
+    public boolean hasEntries(Long cardId) {
+        return ledgerEntryRepository.existsByCardId(cardId);
+    }
+
+    @Scheduled(fixedDelayString = "${bank.ledger.checkpoint.interval:PT5M}")
+    public void takeCheckpoints() {
+        LocalDateTime until = now().minus(safetyLag);
+        LocalDateTime after = checkpointRepository.findLatestCoveredUntil()
+                .map(latest -> latest.isBefore(until) ? latest : until)
+                .orElse(BEGINNING);
+
+        List<Long> cardIds = ledgerEntryRepository.findCardIdsWithEntriesBetween(after, until);
+        for (Long cardId : cardIds) {
+            transactionTemplate.executeWithoutResult(status ->
+                    checkpointRepository.save(new CardBalanceCheckpoint(cardId, balanceAt(cardId, until), until)));
+        }
+        if (!cardIds.isEmpty()) {
+            log.info("Сохранены снимки баланса для {} карт", cardIds.size());
+        }
+    }
+
+    /**
+     * Сверка журнала с балансами карт. Расхождения пишутся в лог с уровнем ERROR:
+     * сами они не исправляются, баланс карты остается как есть
+     */
+    @Scheduled(fixedDelayString = "${bank.ledger.reconcile.interval:PT1H}")
+    public List<BalanceMismatch> reconcile() {
+        List<BalanceMismatch> mismatches = checkpointRepository.findBalanceMismatches(RECONCILE_LIMIT);
+        for (BalanceMismatch mismatch : mismatches) {
+            log.error("Баланс карты {} ({} коп.) не совпадает с журналом проводок ({} коп.)",
+                    mismatch.getCardId(), mismatch.getCardBalanceMinor(), mismatch.getLedgerBalanceMinor());
+        }
+        if (mismatches.size() == RECONCILE_LIMIT) {
+            log.error("Показаны первые {} расхождений журнала проводок с балансами карт", RECONCILE_LIMIT);
+        }
+        return mismatches;
+    }
+
+    /// Баланс по журналу в копейках на момент until: последний снимок + проводки после него
+    private long balanceAt(Long cardId, LocalDateTime until) {
+        CardBalanceCheckpoint checkpoint = checkpointRepository.findFirstByCardIdOrderByCoveredUntilDesc(cardId)
+                .orElse(null);
+        long base = checkpoint == null ? 0 : checkpoint.getBalanceMinor();
+        LocalDateTime after = checkpoint == null ? BEGINNING : checkpoint.getCoveredUntil();
+        Long delta = ledgerEntryRepository.sumBetween(cardId, after, until);
+        return delta == null ? base : base + delta;
+    }
+
+    /// Postgres хранит время с точностью до микросекунд
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+}
@@ -0,0 +1,84 @@
+package dev.folomkin.bankrest.service.card.ledger;
+
+import dev.folomkin.bankrest.domain.dto.card.TransferPageResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.mapper.CardMapper;
+import dev.folomkin.bankrest.domain.model.Transfer;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import dev.folomkin.bankrest.repository.TransferRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * История переводов пользователя с пагинацией по курсору.
+ * <p>
+ * Курсор - (created_at, id) последнего перевода страницы в base64. Границы
+ * периода и пустой курсор заменяются крайними значениями, поэтому запрос
+ * всегда один и тот же и идет по индексу.
+ */
+@Service
+@AllArgsConstructor
+public class TransferHistoryService {
+
+    private TransferRepository transferRepository;
+    private CardMapper cardMapper;
+
+    /// cardNumber, from, to и cursor необязательные. from включается в период, to - нет
+    public TransferPageResponse page(AuthenticatedUser user, String cardNumber, LocalDateTime from, LocalDateTime to,
+                                     String cursor, int limit) {
+        if (cardNumber != null && !cardNumber.matches("\\d{4}")) {
+            throw new InvalidCardFieldException("Укажите только 4 последние цифры номера карты");
+        }
+        Cursor after = cursor == null || cursor.isBlank() ? Cursor.START : Cursor.decode(cursor);
+        LocalDateTime periodFrom = from == null ? LedgerService.BEGINNING : from;
+        LocalDateTime periodTo = to == null ? LedgerService.END : to;
+
+        ///-> На одну строку больше: так видно, есть ли следующая страница
+        List<Transfer> rows = cardNumber == null
+                ? transferRepository.findPage(user.id(), periodFrom, periodTo,
+                after.createdAt(), after.id(), limit + 1)
+                : transferRepository.findCardPage(user.id(), cardNumber, periodFrom, periodTo,
+                after.createdAt(), after.id(), limit + 1);
+
+        boolean hasNext = rows.size() > limit;
+        List<Transfer> page = hasNext ? rows.subList(0, limit) : rows;
+        String nextCursor = hasNext ? Cursor.of(page.get(limit - 1)).encode() : null;
+        return new TransferPageResponse(page.stream().map(cardMapper::toTransferResponse).toList(), nextCursor);
+    }
+
+    private record Cursor(LocalDateTime createdAt, long id) {
+
+        static final Cursor START = new Cursor(LedgerService.END, Long.MAX_VALUE);
+
+        static Cursor of(Transfer transfer) {
+            return new Cursor(transfer.getCreatedAt(), transfer.getId());
+        }
+
+        /// Время в микросекундах: с такой точностью его хранит Postgres
+        String encode() {
+            long micros = ChronoUnit.MICROS.between(LocalDateTime.of(1970, 1, 1, 0, 0), createdAt);
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((micros + ":" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String value) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8).split(":");
+                long micros = Long.parseLong(parts[0]);
+                LocalDateTime createdAt = LocalDateTime.ofEpochSecond(
+                        Math.floorDiv(micros, 1_000_000L), (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+                return new Cursor(createdAt, Long.parseLong(parts[1]));
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | DateTimeException e) {
+                throw new InvalidCardFieldException("Некорректный курсор страницы");
+            }
+        }
+    }
+}
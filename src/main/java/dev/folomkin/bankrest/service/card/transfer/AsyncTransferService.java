@@ -0,0 +1,220 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import dev.folomkin.bankrest.config.datasource.ReadYourWrites;
+import dev.folomkin.bankrest.domain.dto.card.AsyncTransferResponse;
+import dev.folomkin.bankrest.domain.dto.card.AsyncTransferStatus;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.exceptions.NoSuchElementException;
+import dev.folomkin.bankrest.exceptions.TooManyTransfersException;
+import dev.folomkin.bankrest.service.card.CardService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Асинхронный прием переводов.
+ * <p>
+ * Перевод ставится в ограниченную очередь и сразу получает id, поток
+ * Tomcat освобождается. Выполняет перевод пул из workers потоков через
+ * {@link CardService#balanceChange}, поэтому действуют те же правила,
+ * Idempotency-Key и режимы (очередь с групповым коммитом, журнал).
+ * Статус хранится в памяти result-ttl после завершения; клиент опрашивает
+ * его или ждет завершения долгим опросом.
+ * <p>
+ * Очередь ограничена общей емкостью queue-capacity и числом незавершенных
+ * переводов одного пользователя max-pending-per-user. При превышении
+ * перевод не принимается (429).
+ * <p>
+ * Метрики: bank.transfer.async.queue.wait, bank.transfer.async.execution,
+ * bank.transfer.async.queue.depth, bank.transfer.async.rejected.
+ */
+@Slf4j
+@Service
+public class AsyncTransferService {
+
+    private final CardService cardService;
+    private final ObjectProvider<ReadYourWrites> readYourWrites;
+    private final int maxPendingPerUser;
+    private final ThreadPoolExecutor executor;
+
+    /// id -> перевод. Незавершенные не вытесняются: их число ограничено очередью
+    private final Cache<UUID, AsyncTransfer> transfers;
+
+    /// userId -> число незавершенных переводов
+    private final ConcurrentMap<Long, Integer> pendingByUser = new ConcurrentHashMap<>();
+
+    private final Timer queueWait;
+    private final Timer executionSuccess;
+    private final Timer executionFailure;
+    private final Counter rejected;
+
+    public AsyncTransferService(CardService cardService,
+                                ObjectProvider<ReadYourWrites> readYourWrites,
+                                MeterRegistry meterRegistry,
+                                @Value("${bank.transfer.async.workers:10}") int workers,
+                                @Value("${bank.transfer.async.queue-capacity:1000}") int queueCapacity,
+                                @Value("${bank.transfer.async.max-pending-per-user:50}") int maxPendingPerUser,
+                                @Value("${bank.transfer.async.result-ttl:PT10M}") Duration resultTtl) {
+        this.cardService = cardService;
+        this.readYourWrites = readYourWrites;
+        this.maxPendingPerUser = maxPendingPerUser;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "transfer-async-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.transfers = Caffeine.newBuilder()
+                .expireAfter(new ResultExpiry(resultTtl))
+                .build();
+        this.queueWait = Timer.builder("bank.transfer.async.queue.wait")
+                .description("Время перевода в очереди до начала выполнения")
+                .register(meterRegistry);
+        this.executionSuccess = executionTimer(meterRegistry, "success");
+        this.executionFailure = executionTimer(meterRegistry, "failure");
+        this.rejected = Counter.builder("bank.transfer.async.rejected")
+                .description("Переводы, не принятые из-за переполнения очереди")
+                .register(meterRegistry);
+        meterRegistry.gauge("bank.transfer.async.queue.depth", executor.getQueue(), Collection::size);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Асинхронные переводы не завершены за 10 с: в очереди {}", executor.getQueue().size());
+        }
+    }
+
+    public AsyncTransferResponse submit(CardBalanceChangeRequest request, AuthenticatedUser user, String idempotencyKey) {
+        if (pendingByUser.merge(user.id(), 1, Integer::sum) > maxPendingPerUser) {
+            release(user.id());
+            rejected.increment();
+            throw new TooManyTransfersException("Слишком много незавершенных переводов, повторите запрос позже");
+        }
+
+        AsyncTransfer transfer = new AsyncTransfer(UUID.randomUUID(), user.id());
+        transfers.put(transfer.id, transfer);
+        try {
+            long queuedAt = System.nanoTime();
+            executor.execute(() -> run(transfer, request, user, idempotencyKey, queuedAt));
+        } catch (RejectedExecutionException e) {
+            transfers.invalidate(transfer.id);
+            release(user.id());
+            rejected.increment();
+            throw new TooManyTransfersException("Очередь переводов переполнена, повторите запрос позже");
+        }
+        return transfer.response();
+    }
+
+    /// Текущий статус или, если wait не нулевой, статус после завершения, но не позже wait
+    public CompletableFuture<AsyncTransferResponse> status(UUID id, AuthenticatedUser user, Duration wait) {
+        AsyncTransfer transfer = transfers.getIfPresent(id);
+        if (transfer == null || !transfer.userId.equals(user.id())) {
+            throw new NoSuchElementException("Перевод " + id + " не найден");
+        }
+        if (wait.isZero() || transfer.done.isDone()) {
+            return CompletableFuture.completedFuture(transfer.response());
+        }
+        ///-> Таймаут на копии: общий done должен завершиться только вместе с переводом
+        return transfer.done.copy()
+                .completeOnTimeout(null, wait.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(ignored -> transfer.response());
+    }
+
+    private void run(AsyncTransfer transfer, CardBalanceChangeRequest request, AuthenticatedUser user, String idempotencyKey,
+                     long queuedAt) {
+        long started = System.nanoTime();
+        queueWait.record(started - queuedAt, TimeUnit.NANOSECONDS);
+        transfer.status = AsyncTransferStatus.RUNNING;
+        Timer execution = executionSuccess;
+        try {
+            transfer.result = cardService.balanceChange(request, user, idempotencyKey);
+            ///-> Перевод закоммичен в потоке без контекста безопасности: запись пользователя отмечается здесь
+            readYourWrites.ifAvailable(writes -> writes.recordWrite(user.username()));
+            transfer.status = AsyncTransferStatus.COMPLETED;
+        } catch (RuntimeException e) {
+            execution = executionFailure;
+            transfer.error = e.getMessage();
+            transfer.status = AsyncTransferStatus.FAILED;
+        } finally {
+            execution.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            release(user.id());
+            transfer.done.complete(null);
+            ///-> Пересчитываем срок хранения: с этого момента перевод может быть вытеснен
+            transfers.put(transfer.id, transfer);
+        }
+    }
+
+    private static Timer executionTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("bank.transfer.async.execution")
+                .description("Время выполнения перевода")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private void release(Long userId) {
+        pendingByUser.computeIfPresent(userId, (id, count) -> count == 1 ? null : count - 1);
+    }
+
+    private static final class AsyncTransfer {
+        private final UUID id;
+        private final Long userId;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile AsyncTransferStatus status = AsyncTransferStatus.QUEUED;
+        private volatile CardBalanceChangeResponse result;
+        private volatile String error;
+
+        AsyncTransfer(UUID id, Long userId) {
+            this.id = id;
+            this.userId = userId;
+        }
+
+        AsyncTransferResponse response() {
+            return new AsyncTransferResponse(id, status, result, error);
+        }
+    }
+
+    /// Незавершенный перевод хранится бессрочно, завершенный - resultTtl
+    private record ResultExpiry(Duration resultTtl) implements Expiry<UUID, AsyncTransfer> {
+
+        @Override
+        public long expireAfterCreate(UUID key, AsyncTransfer value, long currentTime) {
+            return value.done.isDone() ? resultTtl.toNanos() : Long.MAX_VALUE;
+        }
+
+        @Override
+        public long expireAfterUpdate(UUID key, AsyncTransfer value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(UUID key, AsyncTransfer value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
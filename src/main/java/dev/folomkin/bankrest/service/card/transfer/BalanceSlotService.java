@@ -0,0 +1,119 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.CardBalanceSlot;
+import dev.folomkin.bankrest.domain.model.Money;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import dev.folomkin.bankrest.repository.CardBalanceSlotRepository;
+import dev.folomkin.bankrest.repository.CardRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Слоты подбаланса для карт с большим потоком зачислений.
+ * <p>
+ * Включаются администратором для отдельной карты. Список карт со слотами
+ * держится в памяти, чтобы выбор пути перевода не стоил запроса; изменения,
+ * сделанные на другом экземпляре приложения, подхватываются через
+ * refresh-interval. Устаревший список не ломает балансы: зачисление в
+ * несуществующий слот возвращает false и уходит в основной баланс.
+ */
+@Slf4j
+@Service
+public class BalanceSlotService {
+
+    public static final int MAX_SLOTS = 64;
+
+    private final CardRepository cardRepository;
+    private final CardBalanceSlotRepository slotRepository;
+
+    /// id карт со слотами. Читается на каждом переводе, поэтому заменяется целиком
+    private volatile Set<Long> slottedCardIds = Set.of();
+
+    public BalanceSlotService(CardRepository cardRepository, CardBalanceSlotRepository slotRepository) {
+        this.cardRepository = cardRepository;
+        this.slotRepository = slotRepository;
+    }
+
+    public boolean isSlotted(Long cardId) {
+        return slottedCardIds.contains(cardId);
+    }
+
+    @Scheduled(fixedDelayString = "${bank.transfer.balance-slots.refresh-interval:PT10S}")
+    public void refresh() {
+        slottedCardIds = Set.copyOf(cardRepository.findSlottedCardIds());
+    }
+
+    /// Зачисление в случайный слот. false - слотов у карты уже нет, зачислять нужно в основной баланс
+    public boolean credit(Card cardIn, long amountMinor) {
+        if (cardIn.getBalanceSlots() == 0) {
+            return false;
+        }
+        int slot = ThreadLocalRandom.current().nextInt(cardIn.getBalanceSlots());
+        if (slotRepository.credit(cardIn.getId(), slot, amountMinor) == 0) {
+            return false;
+        }
+        cardIn.setSlotsBalanceMinor(Money.add(cardIn.getSlotsBalanceMinor(), amountMinor));
+        return true;
+    }
+
+    /**
+     * Перед списанием: если основного баланса не хватает, слоты сворачиваются
+     * в него. Вызывается под блокировкой строки карты
+     */
+    public void consolidateIfShort(Card cardOut, long amountMinor) {
+        if (cardOut == null || cardOut.getBalanceSlots() == 0 || cardOut.getBalanceMinor() >= amountMinor) {
+            return;
+        }
+        long folded = 0;
+        for (CardBalanceSlot slot : slotRepository.findAllForUpdate(cardOut.getId())) {
+            folded = Money.add(folded, slot.getBalanceMinor());
+            slot.setBalanceMinor(0);
+        }
+        cardOut.setBalanceMinor(Money.add(cardOut.getBalanceMinor(), folded));
+        cardOut.setSlotsBalanceMinor(0);
+    }
+
+    /**
+     * Новое число слотов карты, 0 - выключить. Деньги из слотов переносятся
+     * в основной баланс. Вызывается в транзакции, card заблокирована
+     */
+    public void configure(Card card, int slots) {
+        if (slots < 0 || slots > MAX_SLOTS) {
+            throw new InvalidCardFieldException("Число слотов должно быть от 0 до " + MAX_SLOTS);
+        }
+        List<CardBalanceSlot> existing = slotRepository.findAllForUpdate(card.getId());
+        long folded = 0;
+        ///-> Строки с нужными номерами переиспользуются: удаление и вставка одного ключа в одном flush конфликтуют
+        for (CardBalanceSlot slot : existing) {
+            folded = Money.add(folded, slot.getBalanceMinor());
+            if (slot.getSlot() < slots) {
+                slot.setBalanceMinor(0);
+            } else {
+                slotRepository.delete(slot);
+            }
+        }
+        for (int slot = existing.size(); slot < slots; slot++) {
+            slotRepository.save(new CardBalanceSlot(card.getId(), slot));
+        }
+
+        card.setBalanceMinor(Money.add(card.getBalanceMinor(), folded));
+        card.setSlotsBalanceMinor(0);
+        card.setBalanceSlots(slots);
+
+        Set<Long> updated = new HashSet<>(slottedCardIds);
+        if (slots > 0) {
+            updated.add(card.getId());
+        } else {
+            updated.remove(card.getId());
+        }
+        slottedCardIds = Set.copyOf(updated);
+        log.info("Карта {}: слотов подбаланса {}", card.getId(), slots);
+    }
+}
@@ -0,0 +1,125 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.domain.dto.card.BatchTransferMode;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.mapper.CardMapper;
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.Money;
+import dev.folomkin.bankrest.domain.model.Transfer;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import dev.folomkin.bankrest.repository.CardRepository;
+import dev.folomkin.bankrest.service.card.cache.CardResponseCache;
+import dev.folomkin.bankrest.service.card.ledger.LedgerService;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Выполнение пакета переводов в текущей транзакции.
+ * <p>
+ * Все затронутые карты читаются одним запросом FOR UPDATE в порядке
+ * возрастания id, переводы применяются в памяти в порядке следования,
+ * измененные карты и проводки сохраняются JDBC-батчами при flush.
+ * После этого для успешных переводов вызывается
+ * {@link TransferCommand#inTransaction()}: ошибка в нем откатывает весь пакет.
+ */
+@Component
+@AllArgsConstructor
+public class BatchTransferProcessor {
+
+    private CardRepository cardRepository;
+    private TransferValidator transferValidator;
+    private CardMapper cardMapper;
+    private LedgerService ledgerService;
+    private BalanceSlotService balanceSlotService;
+    private CardResponseCache cardResponseCache;
+
+    public List<TransferOutcome> process(List<TransferCommand> commands, BatchTransferMode mode) {
+        Map<CardKey, Card> cards = lockCards(commands);
+        Set<Card> touched = new LinkedHashSet<>();
+        List<Transfer> transfers = new ArrayList<>(commands.size());
+        List<TransferOutcome> outcomes = new ArrayList<>(commands.size());
+
+        for (int i = 0; i < commands.size(); i++) {
+            TransferCommand command = commands.get(i);
+            try {
+                outcomes.add(TransferOutcome.success(apply(command, cards, touched, transfers)));
+            } catch (InvalidCardFieldException e) {
+                if (mode == BatchTransferMode.ALL_OR_NOTHING) {
+                    throw new InvalidCardFieldException("Перевод #" + i + ": " + e.getMessage());
+                }
+                outcomes.add(TransferOutcome.failure(e));
+            }
+        }
+
+        cardRepository.saveAll(touched);
+        cardResponseCache.evictAfterCommit(touched.stream().map(Card::getId).toList());
+        ledgerService.recordTransfers(transfers);
+        cardRepository.flush();
+
+        for (int i = 0; i < commands.size(); i++) {
+            Consumer<CardBalanceChangeResponse> inTransaction = commands.get(i).inTransaction();
+            if (inTransaction != null && outcomes.get(i).isSuccess()) {
+                inTransaction.accept(outcomes.get(i).response());
+            }
+        }
+        return outcomes;
+    }
+
+    private Map<CardKey, Card> lockCards(List<TransferCommand> commands) {
+        Set<Long> userIds = new HashSet<>();
+        Set<String> last4s = new HashSet<>();
+        for (TransferCommand command : commands) {
+            userIds.add(command.user().id());
+            last4s.add(command.request().cardNumberOut());
+            last4s.add(command.request().cardNumberIn());
+        }
+
+        Map<CardKey, Card> cards = new HashMap<>();
+        for (Card card : cardRepository.findAllForUpdate(userIds, last4s)) {
+            cards.put(new CardKey(card.getUser().getId(), card.getLast4()), card);
+        }
+        return cards;
+    }
+
+    /// Проверки те же, что и у одиночного перевода. До изменения балансов, поэтому отказ ничего не портит
+    private CardBalanceChangeResponse apply(
+            TransferCommand command, Map<CardKey, Card> cards, Set<Card> touched, List<Transfer> transfers) {
+        CardBalanceChangeRequest request = command.request();
+        Long userId = command.user().id();
+
+        if (request.cardNumberOut().equals(request.cardNumberIn())) {
+            throw new InvalidCardFieldException("Номера карт должны быть разные");
+        }
+        if (request.amount() == null || request.amount().signum() <= 0) {
+            throw new InvalidCardFieldException("Сумма перевода должна быть больше нуля");
+        }
+
+        Card cardOut = cards.get(new CardKey(userId, request.cardNumberOut()));
+        Card cardIn = cards.get(new CardKey(userId, request.cardNumberIn()));
+        transferValidator.validate(cardOut, cardIn, command.user());
+        long amountMinor = Money.toMinor(request.amount());
+        balanceSlotService.consolidateIfShort(cardOut, amountMinor);
+        transferValidator.checkFunds(cardOut, amountMinor);
+
+        cardOut.setBalanceMinor(Money.subtract(cardOut.getBalanceMinor(), amountMinor));
+        cardIn.setBalanceMinor(Money.add(cardIn.getBalanceMinor(), amountMinor));
+        touched.add(cardOut);
+        touched.add(cardIn);
+        transfers.add(new Transfer(userId, cardOut.getId(), cardOut.getLast4(), cardIn.getId(), cardIn.getLast4(),
+                amountMinor));
+        return cardMapper.toBalanceChangeResponse(cardOut, cardIn);
+    }
+
+    private record CardKey(Long userId, String last4) {
+    }
+}
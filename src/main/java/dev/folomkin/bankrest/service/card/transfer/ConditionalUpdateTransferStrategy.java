@@ -0,0 +1,71 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.mapper.CardMapper;
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.exceptions.TransferConflictException;
+import dev.folomkin.bankrest.repository.CardRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Перевод двумя условными UPDATE без предварительного чтения.
+ * <p>
+ * Списание проходит только при balance >= amount, зачисление - только
+ * на незаблокированную карту владельца. Строки обновляются в порядке
+ * возрастания id, как и в {@link PessimisticTransferStrategy}.
+ */
+@Component
+@AllArgsConstructor
+public class ConditionalUpdateTransferStrategy implements TransferConcurrencyStrategy {
+
+    private CardRepository cardRepository;
+    private TransferValidator transferValidator;
+    private CardMapper cardMapper;
+
+    @Override
+    public TransferConcurrencyMode mode() {
+        return TransferConcurrencyMode.CONDITIONAL_UPDATE;
+    }
+
+    @Override
+    public CardBalanceChangeResponse transfer(Long cardOutId, Long cardInId, long amountMinor, AuthenticatedUser user) {
+        if (cardOutId < cardInId) {
+            debit(cardOutId, cardInId, amountMinor, user);
+            credit(cardOutId, cardInId, amountMinor, user);
+        } else {
+            credit(cardOutId, cardInId, amountMinor, user);
+            debit(cardOutId, cardInId, amountMinor, user);
+        }
+
+        Card cardOut = cardRepository.findById(cardOutId).orElseThrow();
+        Card cardIn = cardRepository.findById(cardInId).orElseThrow();
+        return cardMapper.toBalanceChangeResponse(cardOut, cardIn);
+    }
+
+    private void debit(Long cardOutId, Long cardInId, long amountMinor, AuthenticatedUser user) {
+        int updated = cardRepository.debitIfSufficient(
+                cardOutId, user.id(), amountMinor, TransferValidator.BLOCKED_STATUSES);
+        if (updated == 0) {
+            rejectWithReason(cardOutId, cardInId, amountMinor, user);
+        }
+    }
+
+    private void credit(Long cardOutId, Long cardInId, long amountMinor, AuthenticatedUser user) {
+        int updated = cardRepository.credit(
+                cardInId, user.id(), amountMinor, TransferValidator.BLOCKED_STATUSES);
+        if (updated == 0) {
+            rejectWithReason(cardOutId, cardInId, amountMinor, user);
+        }
+    }
+
+    /// UPDATE не вернул строк - перечитываем карты, чтобы вернуть ту же ошибку, что и остальные стратегии
+    private void rejectWithReason(Long cardOutId, Long cardInId, long amountMinor, AuthenticatedUser user) {
+        Card cardOut = cardRepository.findById(cardOutId).orElse(null);
+        Card cardIn = cardRepository.findById(cardInId).orElse(null);
+        transferValidator.validate(cardOut, cardIn, user);
+        transferValidator.checkFunds(cardOut, amountMinor);
+        throw new TransferConflictException("Баланс карты изменился во время перевода, повторите запрос");
+    }
+}
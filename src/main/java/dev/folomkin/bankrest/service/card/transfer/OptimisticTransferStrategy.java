@@ -0,0 +1,61 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.mapper.CardMapper;
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.Money;
+import dev.folomkin.bankrest.repository.CardRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Перевод без блокировок чтения.
+ * <p>
+ * Конфликт обнаруживается при коммите по полю Card.version, после чего
+ * CardBalanceServiceUtil повторяет перевод не более maxAttempts() раз.
+ */
+@Component
+public class OptimisticTransferStrategy implements TransferConcurrencyStrategy {
+
+    private final CardRepository cardRepository;
+    private final TransferValidator transferValidator;
+    private final CardMapper cardMapper;
+    private final int maxAttempts;
+
+    public OptimisticTransferStrategy(CardRepository cardRepository,
+                                      TransferValidator transferValidator,
+                                      CardMapper cardMapper,
+                                      @Value("${bank.transfer.optimistic.max-attempts:5}") int maxAttempts) {
+        this.cardRepository = cardRepository;
+        this.transferValidator = transferValidator;
+        this.cardMapper = cardMapper;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public TransferConcurrencyMode mode() {
+        return TransferConcurrencyMode.OPTIMISTIC;
+    }
+
+    @Override
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    @Override
+    public CardBalanceChangeResponse transfer(Long cardOutId, Long cardInId, long amountMinor, AuthenticatedUser user) {
+        Card cardOut = cardRepository.findById(cardOutId).orElse(null);
+        Card cardIn = cardRepository.findById(cardInId).orElse(null);
+
+        transferValidator.validate(cardOut, cardIn, user);
+        transferValidator.checkFunds(cardOut, amountMinor);
+
+        cardOut.setBalanceMinor(Money.subtract(cardOut.getBalanceMinor(), amountMinor));
+        cardIn.setBalanceMinor(Money.add(cardIn.getBalanceMinor(), amountMinor));
+        cardRepository.save(cardOut);
+        cardRepository.save(cardIn);
+
+        return cardMapper.toBalanceChangeResponse(cardOut, cardIn);
+    }
+}
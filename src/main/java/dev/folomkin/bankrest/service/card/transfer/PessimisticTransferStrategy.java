@@ -0,0 +1,50 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.mapper.CardMapper;
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.Money;
+import dev.folomkin.bankrest.repository.CardRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Перевод под блокировками строк SELECT ... FOR UPDATE.
+ * <p>
+ * Карта с меньшим id всегда блокируется первой, поэтому встречные
+ * переводы между одной парой карт не могут взаимно заблокироваться.
+ */
+@Component
+@AllArgsConstructor
+public class PessimisticTransferStrategy implements TransferConcurrencyStrategy {
+
+    private CardRepository cardRepository;
+    private TransferValidator transferValidator;
+    private CardMapper cardMapper;
+
+    @Override
+    public TransferConcurrencyMode mode() {
+        return TransferConcurrencyMode.PESSIMISTIC;
+    }
+
+    @Override
+    public CardBalanceChangeResponse transfer(Long cardOutId, Long cardInId, long amountMinor, AuthenticatedUser user) {
+        /// -> Блокируем строки в порядке возрастания id
+        Card first = cardRepository.findByIdForUpdate(Math.min(cardOutId, cardInId)).orElse(null);
+        Card second = cardRepository.findByIdForUpdate(Math.max(cardOutId, cardInId)).orElse(null);
+
+        Card cardOut = cardOutId < cardInId ? first : second;
+        Card cardIn = cardOutId < cardInId ? second : first;
+
+        transferValidator.validate(cardOut, cardIn, user);
+        transferValidator.checkFunds(cardOut, amountMinor);
+
+        cardOut.setBalanceMinor(Money.subtract(cardOut.getBalanceMinor(), amountMinor));
+        cardIn.setBalanceMinor(Money.add(cardIn.getBalanceMinor(), amountMinor));
+        cardRepository.save(cardOut);
+        cardRepository.save(cardIn);
+
+        return cardMapper.toBalanceChangeResponse(cardOut, cardIn);
+    }
+}
@@ -0,0 +1,72 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.mapper.CardMapper;
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.Money;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import dev.folomkin.bankrest.repository.CardRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Перевод, в котором участвует карта со слотами подбаланса.
+ * <p>
+ * Если слоты есть у получателя, его строка cards не блокируется: сумма
+ * зачисляется в случайный слот, и параллельные зачисления на одну карту
+ * расходятся по разным строкам. Отправитель блокируется как в
+ * {@link PessimisticTransferStrategy}; если у него слоты и основного баланса
+ * не хватает, они сворачиваются в основной баланс.
+ * <p>
+ * Статус получателя со слотами проверяется без блокировки его строки.
+ */
+@Component
+@AllArgsConstructor
+public class SlottedTransfer {
+
+    private CardRepository cardRepository;
+    private TransferValidator transferValidator;
+    private BalanceSlotService balanceSlotService;
+    private CardMapper cardMapper;
+
+    public boolean involves(Long cardOutId, Long cardInId) {
+        return balanceSlotService.isSlotted(cardOutId) || balanceSlotService.isSlotted(cardInId);
+    }
+
+    public CardBalanceChangeResponse transfer(Long cardOutId, Long cardInId, long amountMinor, AuthenticatedUser user) {
+        boolean creditToSlot = balanceSlotService.isSlotted(cardInId);
+        Card cardOut;
+        Card cardIn;
+        if (creditToSlot) {
+            cardOut = cardRepository.findByIdForUpdate(cardOutId).orElse(null);
+            cardIn = cardRepository.findById(cardInId).orElse(null);
+        } else {
+            /// -> Слоты только у отправителя: обе строки блокируются по возрастанию id
+            Card first = cardRepository.findByIdForUpdate(Math.min(cardOutId, cardInId)).orElse(null);
+            Card second = cardRepository.findByIdForUpdate(Math.max(cardOutId, cardInId)).orElse(null);
+            cardOut = cardOutId < cardInId ? first : second;
+            cardIn = cardOutId < cardInId ? second : first;
+        }
+
+        transferValidator.validate(cardOut, cardIn, user);
+        balanceSlotService.consolidateIfShort(cardOut, amountMinor);
+        transferValidator.checkFunds(cardOut, amountMinor);
+
+        cardOut.setBalanceMinor(Money.subtract(cardOut.getBalanceMinor(), amountMinor));
+        cardRepository.save(cardOut);
+
+        if (!creditToSlot) {
+            cardIn.setBalanceMinor(Money.add(cardIn.getBalanceMinor(), amountMinor));
+            cardRepository.save(cardIn);
+        } else if (!balanceSlotService.credit(cardIn, amountMinor)) {
+            ///-> Слоты выключили после чтения списка: зачисляем в основной баланс условным UPDATE
+            if (cardRepository.credit(cardInId, user.id(), amountMinor, TransferValidator.BLOCKED_STATUSES) == 0) {
+                throw new InvalidCardFieldException("Карта-получатель заблокирована, вы не можете зачислять на нее средства");
+            }
+            cardIn.setBalanceMinor(Money.add(cardIn.getBalanceMinor(), amountMinor));
+        }
+
+        return cardMapper.toBalanceChangeResponse(cardOut, cardIn);
+    }
+}
@@ -0,0 +1,21 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+
+import java.util.function.Consumer;
+
+/**
+ * Перевод, ожидающий выполнения в пакете
+ *
+ * @param inTransaction вызывается после успешного перевода в той же транзакции
+ *                      (сохранение ключа идемпотентности); null - ничего не нужно
+ */
+public record TransferCommand(CardBalanceChangeRequest request, AuthenticatedUser user,
+                              Consumer<CardBalanceChangeResponse> inTransaction) {
+
+    public TransferCommand(CardBalanceChangeRequest request, AuthenticatedUser user) {
+        this(request, user, null);
+    }
+}
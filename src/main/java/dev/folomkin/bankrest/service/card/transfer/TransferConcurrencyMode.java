@@ -0,0 +1,14 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+/**
+ * Режим защиты перевода от параллельных изменений баланса.
+ * Задается свойством bank.transfer.concurrency
+ */
+public enum TransferConcurrencyMode {
+    /// SELECT ... FOR UPDATE, карты блокируются в порядке возрастания id
+    PESSIMISTIC,
+    /// Проверка @Version при коммите и ограниченное число повторов
+    OPTIMISTIC,
+    /// Условный UPDATE ... WHERE balance >= :amount для каждой стороны перевода
+    CONDITIONAL_UPDATE
+}
@@ -0,0 +1,22 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+
+/**
+ * Стратегия выполнения перевода между картами.
+ * <p>
+ * Метод transfer() вызывается внутри транзакции, которую открывает
+ * CardBalanceServiceUtil. Если maxAttempts() больше 1, то при конфликте
+ * версий транзакция откатывается и перевод выполняется заново.
+ */
+public interface TransferConcurrencyStrategy {
+
+    TransferConcurrencyMode mode();
+
+    CardBalanceChangeResponse transfer(Long cardOutId, Long cardInId, long amountMinor, AuthenticatedUser user);
+
+    default int maxAttempts() {
+        return 1;
+    }
+}
@@ -0,0 +1,275 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.model.TransferIdempotencyRecord;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import dev.folomkin.bankrest.exceptions.TransferConflictException;
+import dev.folomkin.bankrest.repository.TransferIdempotencyRepository;
+import dev.folomkin.bankrest.service.card.journal.JournalTransferEngine;
+import dev.folomkin.bankrest.utils.CardBalanceServiceUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Переводы с заголовком Idempotency-Key.
+ * <p>
+ * Первый ответ сохраняется в таблицу transfer_idempotency_keys в той же
+ * транзакции, что и перевод, и кешируется в памяти с ограничением по
+ * размеру и времени жизни. Повтор с тем же ключом получает сохраненный
+ * ответ, не затрагивая карты. Параллельные дубли ждут результат первого
+ * запроса, а не выполняются одновременно с ним.
+ * <p>
+ * Перевод выполняется тем же путем, что и без ключа: через очередь
+ * {@link TransferSequencer}, если она включена. Ключ сохраняется в
+ * транзакции пакета очереди. Просроченный ключ, который еще не удалила
+ * очистка, удаляется перед переводом и не мешает повторному использованию.
+ */
+@Slf4j
+@Service
+public class TransferIdempotencyService {
+
+    private final CardBalanceServiceUtil cardBalanceServiceUtil;
+    private final TransferSequencer transferSequencer;
+    private final TransferIdempotencyRepository idempotencyRepository;
+    private final JournalTransferEngine journalTransferEngine;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+
+    /// Выполненные переводы: userId:key -> ответ
+    private final Cache<String, StoredResponse> completed;
+
+    /// Переводы, которые выполняются прямо сейчас
+    private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public TransferIdempotencyService(CardBalanceServiceUtil cardBalanceServiceUtil,
+                                      TransferSequencer transferSequencer,
+                                      TransferIdempotencyRepository idempotencyRepository,
+                                      JournalTransferEngine journalTransferEngine,
+                                      @Value("${bank.transfer.idempotency.ttl:PT24H}") Duration ttl,
+                                      @Value("${bank.transfer.idempotency.cache-size:100000}") long cacheSize,
+                                      @Value("${bank.transfer.idempotency.wait-timeout:PT30S}") Duration waitTimeout) {
+        this.cardBalanceServiceUtil = cardBalanceServiceUtil;
+        this.transferSequencer = transferSequencer;
+        this.idempotencyRepository = idempotencyRepository;
+        this.journalTransferEngine = journalTransferEngine;
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public CardBalanceChangeResponse balanceChange(String idempotencyKey, CardBalanceChangeRequest request, AuthenticatedUser user) {
+        if (idempotencyKey.length() > 100) {
+            throw new InvalidCardFieldException("Idempotency-Key не должен быть длиннее 100 символов");
+        }
+        String cacheKey = user.id() + ":" + idempotencyKey;
+        String fingerprint = fingerprint(request);
+
+        ///-> Повтор уже выполненного перевода
+        StoredResponse stored = completed.getIfPresent(cacheKey);
+        if (stored != null) {
+            return stored.replay(fingerprint);
+        }
+
+        ///-> Дубль выполняющегося перевода ждет его результата
+        InFlight mine = new InFlight(fingerprint, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(cacheKey, mine);
+        if (running != null) {
+            return await(running, fingerprint);
+        }
+
+        try {
+            CardBalanceChangeResponse response = executeOnce(cacheKey, idempotencyKey, fingerprint, request, user);
+            mine.future().complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.future().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, mine);
+        }
+    }
+
+    private CardBalanceChangeResponse executeOnce(String cacheKey, String idempotencyKey, String fingerprint,
+                                                  CardBalanceChangeRequest request, AuthenticatedUser user) {
+        ///-> Ответ мог быть сохранен другим экземпляром приложения или до перезапуска
+        Optional<TransferIdempotencyRecord> persisted = idempotencyRepository.findByUserIdAndIdempotencyKey(
+                user.id(), idempotencyKey);
+        if (persisted.isPresent()) {
+            if (!isExpired(persisted.get())) {
+                return replay(cacheKey, persisted.get(), fingerprint);
+            }
+            ///-> Иначе вставка ключа упадет на уникальном индексе до часовой очистки
+            idempotencyRepository.deleteExpired(user.id(), idempotencyKey, LocalDateTime.now().minus(ttl));
+        }
+
+        if (journalTransferEngine.isEnabled()) {
+            return executeJournaled(cacheKey, idempotencyKey, fingerprint, request, user);
+        }
+
+        Consumer<CardBalanceChangeResponse> saveKey =
+                result -> idempotencyRepository.saveAndFlush(toRecord(user.id(), idempotencyKey, fingerprint, result));
+        CardBalanceChangeResponse response;
+        try {
+            response = transferSequencer.isEnabled()
+                    ? transferSequencer.execute(request, user, saveKey)
+                    : cardBalanceServiceUtil.balanceChange(request, user, saveKey);
+        } catch (DataIntegrityViolationException e) {
+            ///-> Ключ успели сохранить параллельно, наш перевод откатился вместе с вставкой.
+            ///-> Срок здесь не проверяется: строка-победитель только что вставлена
+            TransferIdempotencyRecord winner = idempotencyRepository.findByUserIdAndIdempotencyKey(
+                    user.id(), idempotencyKey).orElseThrow(() -> e);
+            return replay(cacheKey, winner, fingerprint);
+        }
+
+        completed.put(cacheKey, new StoredResponse(fingerprint, response));
+        return response;
+    }
+
+    /**
+     * В режиме журнала общей транзакции с переводом нет. Ключ резервируется
+     * до записи в журнал, поэтому два экземпляра с одним ключом не запишут
+     * перевод дважды. Если перевод отклонен проверками, в журнал он не
+     * попал, и резерв снимается. При другой ошибке резерв остается: запись
+     * могла попасть в журнал, и повтор отклоняется до истечения ключа.
+     */
+    private CardBalanceChangeResponse executeJournaled(String cacheKey, String idempotencyKey, String fingerprint,
+                                                       CardBalanceChangeRequest request, AuthenticatedUser user) {
+        TransferIdempotencyRecord reservation = toRecord(user.id(), idempotencyKey, fingerprint, null);
+        try {
+            reservation = idempotencyRepository.saveAndFlush(reservation);
+        } catch (DataIntegrityViolationException e) {
+            TransferIdempotencyRecord winner = idempotencyRepository.findByUserIdAndIdempotencyKey(
+                    user.id(), idempotencyKey).orElseThrow(() -> e);
+            return replay(cacheKey, winner, fingerprint);
+        }
+
+        CardBalanceChangeResponse response;
+        try {
+            response = journalTransferEngine.transfer(request, user);
+        } catch (InvalidCardFieldException e) {
+            idempotencyRepository.delete(reservation);
+            throw e;
+        }
+        fill(reservation, response);
+        idempotencyRepository.saveAndFlush(reservation);
+        completed.put(cacheKey, new StoredResponse(fingerprint, response));
+        return response;
+    }
+
+    private CardBalanceChangeResponse await(InFlight running, String fingerprint) {
+        if (!running.fingerprint().equals(fingerprint)) {
+            throw reusedKey();
+        }
+        try {
+            return running.future().get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new TransferConflictException("Перевод с этим Idempotency-Key еще выполняется, повторите запрос позже");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferConflictException("Ожидание перевода прервано");
+        }
+    }
+
+    private boolean isExpired(TransferIdempotencyRecord record) {
+        return record.getCreatedAt() != null && !record.getCreatedAt().isAfter(LocalDateTime.now().minus(ttl));
+    }
+
+    private CardBalanceChangeResponse replay(String cacheKey, TransferIdempotencyRecord record, String fingerprint) {
+        if (!record.getRequestFingerprint().equals(fingerprint)) {
+            throw reusedKey();
+        }
+        if (record.isPending()) {
+            throw new TransferConflictException("Перевод с этим Idempotency-Key еще выполняется, повторите запрос позже");
+        }
+        StoredResponse stored = new StoredResponse(record.getRequestFingerprint(), new CardBalanceChangeResponse(
+                record.getCardNumberOut(), record.getBalanceOut(), record.getCardNumberIn(), record.getBalanceIn()));
+        completed.put(cacheKey, stored);
+        return stored.replay(fingerprint);
+    }
+
+    /// Удаление просроченных ключей
+    @Scheduled(fixedDelayString = "${bank.transfer.idempotency.purge-interval:PT1H}")
+    public void purgeExpired() {
+        int deleted = idempotencyRepository.deleteCreatedBefore(LocalDateTime.now().minus(ttl));
+        if (deleted > 0) {
+            log.info("Удалено просроченных ключей идемпотентности: {}", deleted);
+        }
+    }
+
+    private static TransferIdempotencyRecord toRecord(Long userId, String idempotencyKey, String fingerprint,
+                                                      CardBalanceChangeResponse response) {
+        TransferIdempotencyRecord record = new TransferIdempotencyRecord();
+        record.setUserId(userId);
+        record.setIdempotencyKey(idempotencyKey);
+        record.setRequestFingerprint(fingerprint);
+        if (response != null) {
+            fill(record, response);
+        }
+        return record;
+    }
+
+    private static void fill(TransferIdempotencyRecord record, CardBalanceChangeResponse response) {
+        record.setCardNumberOut(response.cardNumberOut());
+        record.setBalanceOut(response.balanceOut());
+        record.setCardNumberIn(response.cardNumberIn());
+        record.setBalanceIn(response.balanceIn());
+    }
+
+    /// SHA-256 от параметров перевода. Сумма нормализуется: 10.0 и 10.00 - один и тот же перевод
+    private static String fingerprint(CardBalanceChangeRequest request) {
+        String amount = request.amount() == null ? "" : request.amount().stripTrailingZeros().toPlainString();
+        String source = request.cardNumberOut() + ">" + request.cardNumberIn() + ":" + amount;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static InvalidCardFieldException reusedKey() {
+        return new InvalidCardFieldException("Idempotency-Key уже использован для перевода с другими параметрами");
+    }
+
+    private record StoredResponse(String fingerprint, CardBalanceChangeResponse response) {
+        CardBalanceChangeResponse replay(String requestFingerprint) {
+            if (!fingerprint.equals(requestFingerprint)) {
+                throw reusedKey();
+            }
+            return response;
+        }
+    }
+
+    private record InFlight(String fingerprint, CompletableFuture<CardBalanceChangeResponse> future) {
+    }
+}
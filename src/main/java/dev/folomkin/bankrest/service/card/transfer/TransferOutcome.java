@@ -0,0 +1,21 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+
+/**
+ * Результат перевода из пакета: либо ответ, либо причина отказа
+ */
+public record TransferOutcome(CardBalanceChangeResponse response, RuntimeException error) {
+
+    public static TransferOutcome success(CardBalanceChangeResponse response) {
+        return new TransferOutcome(response, null);
+    }
+
+    public static TransferOutcome failure(RuntimeException error) {
+        return new TransferOutcome(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,220 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.config.datasource.ReadYourWrites;
+import dev.folomkin.bankrest.domain.dto.card.BatchTransferMode;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.exceptions.TransferConflictException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Очередь переводов с групповым коммитом.
+ * <p>
+ * Каждый перевод попадает в одну из полос по id владельца карт: обе карты
+ * перевода принадлежат одному пользователю, поэтому все изменения карты
+ * выполняет один поток и строки не конкурируют за блокировку. Поток полосы
+ * забирает из очереди до batch-size переводов, ожидая добор не дольше
+ * max-linger-ms, и выполняет их в одной транзакции через
+ * {@link BatchTransferProcessor}: один коммит вместо коммита на каждый перевод.
+ * <p>
+ * Выключена по умолчанию (bank.transfer.sequencer.enabled).
+ */
+@Slf4j
+@Component
+public class TransferSequencer {
+
+    private final BatchTransferProcessor batchTransferProcessor;
+    private final ObjectProvider<ReadYourWrites> readYourWrites;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long maxLingerNanos;
+    private final List<Lane> lanes = new ArrayList<>();
+
+    private volatile boolean running;
+
+    public TransferSequencer(BatchTransferProcessor batchTransferProcessor,
+                             ObjectProvider<ReadYourWrites> readYourWrites,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${bank.transfer.sequencer.enabled:false}") boolean enabled,
+                             @Value("${bank.transfer.sequencer.lanes:4}") int laneCount,
+                             @Value("${bank.transfer.sequencer.queue-capacity:10000}") int queueCapacity,
+                             @Value("${bank.transfer.sequencer.batch-size:100}") int batchSize,
+                             @Value("${bank.transfer.sequencer.max-linger-ms:2}") long maxLingerMs) {
+        this.batchTransferProcessor = batchTransferProcessor;
+        this.readYourWrites = readYourWrites;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxLingerMs));
+        for (int i = 0; i < Math.max(1, laneCount); i++) {
+            lanes.add(new Lane(i, new LinkedBlockingQueue<>(queueCapacity)));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (Lane lane : lanes) {
+            lane.thread().start();
+        }
+        log.info("Очередь переводов запущена: полос {}, пакет до {}, ожидание до {} мкс",
+                lanes.size(), batchSize, TimeUnit.NANOSECONDS.toMicros(maxLingerNanos));
+    }
+
+    /// Переводы, уже принятые в очередь, выполняются до остановки потоков
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        for (Lane lane : lanes) {
+            lane.thread().join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    public CompletableFuture<CardBalanceChangeResponse> submit(CardBalanceChangeRequest request, AuthenticatedUser user) {
+        return submit(request, user, null);
+    }
+
+    /// inTransaction выполняется в транзакции пакета сразу после успешного перевода
+    public CompletableFuture<CardBalanceChangeResponse> submit(CardBalanceChangeRequest request, AuthenticatedUser user,
+                                                               Consumer<CardBalanceChangeResponse> inTransaction) {
+        if (!running) {
+            throw new IllegalStateException("Очередь переводов не запущена");
+        }
+        Pending pending = new Pending(new TransferCommand(request, user, inTransaction), new CompletableFuture<>());
+        Lane lane = lanes.get(Math.floorMod(user.id().hashCode(), lanes.size()));
+        if (!lane.queue().offer(pending)) {
+            throw new TransferConflictException("Очередь переводов переполнена, повторите запрос позже");
+        }
+        return pending.future();
+    }
+
+    /// Перевод через очередь с ожиданием результата. Ошибка перевода выбрасывается как есть
+    public CardBalanceChangeResponse execute(CardBalanceChangeRequest request, AuthenticatedUser user,
+                                             Consumer<CardBalanceChangeResponse> inTransaction) {
+        try {
+            return submit(request, user, inTransaction).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void drain(BlockingQueue<Pending> queue) {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(queue, batch);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    ///-> Добираем пакет: сначала то, что уже в очереди, затем ждем не дольше max-linger-ms
+    private void collect(BlockingQueue<Pending> queue, List<Pending> batch) throws InterruptedException {
+        queue.drainTo(batch, batchSize - batch.size());
+        long deadline = System.nanoTime() + maxLingerNanos;
+        while (batch.size() < batchSize) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return;
+            }
+            Pending next = queue.poll(left, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        List<TransferCommand> commands = batch.stream().map(Pending::command).toList();
+        List<TransferOutcome> outcomes;
+        try {
+            outcomes = transactionTemplate.execute(
+                    status -> batchTransferProcessor.process(commands, BatchTransferMode.BEST_EFFORT));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future().completeExceptionally(e);
+                return;
+            }
+            ///-> Ошибка базы не должна отменять чужие переводы: повторяем пакет поштучно
+            log.warn("Пакет из {} переводов не выполнен, повтор по одному: {}", batch.size(), e.getMessage());
+            for (Pending pending : batch) {
+                commit(List.of(pending));
+            }
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            TransferOutcome outcome = outcomes.get(i);
+            if (outcome.isSuccess()) {
+                ///-> У потока полосы нет пользователя в контексте безопасности: запись отмечается здесь
+                String username = batch.get(i).command().user().username();
+                readYourWrites.ifAvailable(writes -> writes.recordWrite(username));
+                batch.get(i).future().complete(outcome.response());
+            } else {
+                batch.get(i).future().completeExceptionally(outcome.error());
+            }
+        }
+    }
+
+    private record Pending(TransferCommand command, CompletableFuture<CardBalanceChangeResponse> future) {
+    }
+
+    private final class Lane {
+        private final BlockingQueue<Pending> queue;
+        private final Thread thread;
+
+        Lane(int index, BlockingQueue<Pending> queue) {
+            this.queue = queue;
+            this.thread = new Thread(() -> drain(queue), "transfer-lane-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        BlockingQueue<Pending> queue() {
+            return queue;
+        }
+
+        Thread thread() {
+            return thread;
+        }
+    }
+}
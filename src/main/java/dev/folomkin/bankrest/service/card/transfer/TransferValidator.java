@@ -0,0 +1,50 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.CardStatus;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Проверки карт перед переводом. Общие для всех стратегий
+ */
+@Component
+public class TransferValidator {
+
+    /// Статусы, при которых карта не участвует в переводах
+    public static final Set<CardStatus> BLOCKED_STATUSES = EnumSet.of(CardStatus.BLOCKED, CardStatus.BLOCKREQUEST);
+
+    public void validate(Card cardOut, Card cardIn, AuthenticatedUser user) {
+        if (cardOut == null) {
+            throw new InvalidCardFieldException("Не найдена карта-отправитель");
+        }
+        if (cardIn == null) {
+            throw new InvalidCardFieldException("Не найдена карта-получатель");
+        }
+
+        if (BLOCKED_STATUSES.contains(cardOut.getCardStatus())) {
+            throw new InvalidCardFieldException("Карта-отправитель заблокирована, вы не можете переводить с нее средства");
+        }
+
+        if (BLOCKED_STATUSES.contains(cardIn.getCardStatus())) {
+            throw new InvalidCardFieldException("Карта-получатель заблокирована, вы не можете зачислять на нее средства");
+        }
+
+        if (!cardOut.getUser().getId().equals(user.id())
+                || !cardIn.getUser().getId().equals(user.id())) {
+            throw new InvalidCardFieldException(
+                    "Вы можете переводить средства только между своими картами"
+            );
+        }
+    }
+
+    public void checkFunds(Card cardOut, long amountMinor) {
+        if (cardOut.getBalanceMinor() < amountMinor) {
+            throw new InvalidCardFieldException("Недостаточно средств для перевода");
+        }
+    }
+}
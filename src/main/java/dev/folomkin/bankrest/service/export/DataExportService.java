@@ -0,0 +1,249 @@
+package dev.folomkin.bankrest.service.export;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.folomkin.bankrest.domain.model.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Потоковая выгрузка всех карт и пользователей в NDJSON или CSV.
+ * <p>
+ * Строки читаются курсором Postgres порциями по fetch size (для этого
+ * запрос идет в транзакции) и сразу пишутся в поток ответа, сущности и
+ * списки не создаются. Память не зависит от размера таблицы: в ней одна
+ * порция строк и буфер вывода. Соединение с базой занято, пока клиент
+ * читает ответ.
+ */
+@Slf4j
+@Service
+public class DataExportService {
+
+    private static final String CARDS_SQL = """
+            SELECT c.id, c.encrypted_number, c.expiration_date, c.status,
+                   c.balance_minor + CASE WHEN c.balance_slots = 0 THEN 0 ELSE
+                       (SELECT COALESCE(SUM(s.balance_minor), 0) FROM card_balance_slots s WHERE s.card_id = c.id) END,
+                   u.id, u.username, u.email
+            FROM cards c
+            LEFT JOIN users u ON u.id = c.user_id
+            """;
+
+    private static final List<Column> CARD_COLUMNS = List.of(
+            new Column("id", ColumnType.NUMBER),
+            new Column("encryptedNumber", ColumnType.TEXT),
+            new Column("expirationDate", ColumnType.TEXT),
+            new Column("cardStatus", ColumnType.TEXT),
+            new Column("balance", ColumnType.MONEY),
+            new Column("ownerId", ColumnType.NUMBER),
+            new Column("ownerUsername", ColumnType.TEXT),
+            new Column("ownerEmail", ColumnType.TEXT));
+
+    private static final String USERS_SQL = "SELECT id, username, email, created_at FROM users";
+
+    private static final List<Column> USER_COLUMNS = List.of(
+            new Column("id", ColumnType.NUMBER),
+            new Column("username", ColumnType.TEXT),
+            new Column("email", ColumnType.TEXT),
+            new Column("createdAt", ColumnType.DATE_TIME));
+
+    private static final int OUTPUT_BUFFER = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+
+    public DataExportService(DataSource dataSource,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             @Value("${bank.export.fetch-size:10000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /// Все карты с владельцем; возвращает число строк
+    public long exportCards(ExportFormat format, OutputStream out) {
+        return export("карт", CARDS_SQL, CARD_COLUMNS, format, out);
+    }
+
+    /// Все пользователи; возвращает число строк
+    public long exportUsers(ExportFormat format, OutputStream out) {
+        return export("пользователей", USERS_SQL, USER_COLUMNS, format, out);
+    }
+
+    private long export(String what, String sql, List<Column> columns, ExportFormat format, OutputStream out) {
+        long started = System.nanoTime();
+        long[] rows = new long[1];
+        try (RowWriter writer = format == ExportFormat.CSV ? new CsvWriter(out, columns) : new NdjsonWriter(out, columns)) {
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(sql, rs -> {
+                try {
+                    writer.write(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            }));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long millis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        log.info("Выгрузка {} в {}: {} строк за {} мс, {} строк/с", what, format, rows[0], millis, rows[0] * 1000 / millis);
+        return rows[0];
+    }
+
+    private enum ColumnType {
+        NUMBER, TEXT, MONEY, DATE_TIME
+    }
+
+    private record Column(String name, ColumnType type) {
+    }
+
+    private interface RowWriter extends AutoCloseable {
+
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /// Значение колонки строкой для CSV или null
+    private static String text(ResultSet rs, int index, ColumnType type) throws SQLException {
+        return switch (type) {
+            case TEXT -> rs.getString(index);
+            case NUMBER -> {
+                long value = rs.getLong(index);
+                yield rs.wasNull() ? null : Long.toString(value);
+            }
+            case MONEY -> {
+                long value = rs.getLong(index);
+                yield rs.wasNull() ? null : Money.toDecimal(value).toPlainString();
+            }
+            case DATE_TIME -> {
+                LocalDateTime value = rs.getObject(index, LocalDateTime.class);
+                yield value == null ? null : value.toString();
+            }
+        };
+    }
+
+    private final class NdjsonWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+        private final List<Column> columns;
+
+        NdjsonWriter(OutputStream out, List<Column> columns) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            ///-> Объекты разделяются только переводом строки, поток ответа закрывает контейнер
+            this.generator.setRootValueSeparator(null);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.columns = columns;
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < columns.size(); i++) {
+                Column column = columns.get(i);
+                generator.writeFieldName(column.name());
+                switch (column.type()) {
+                    case NUMBER -> {
+                        long value = rs.getLong(i + 1);
+                        if (rs.wasNull()) {
+                            generator.writeNull();
+                        } else {
+                            generator.writeNumber(value);
+                        }
+                    }
+                    case MONEY -> {
+                        long value = rs.getLong(i + 1);
+                        if (rs.wasNull()) {
+                            generator.writeNull();
+                        } else {
+                            generator.writeNumber(Money.toDecimal(value));
+                        }
+                    }
+                    default -> generator.writeString(text(rs, i + 1, column.type()));
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static final class CsvWriter implements RowWriter {
+
+        private final Writer writer;
+        private final List<Column> columns;
+
+        CsvWriter(OutputStream out, List<Column> columns) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), OUTPUT_BUFFER);
+            this.columns = columns;
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(columns.get(i).name());
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                String value = text(rs, i + 1, columns.get(i).type());
+                if (value != null) {
+                    writeEscaped(value);
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        ///-> RFC 4180: значение с запятой, кавычкой или переводом строки - в кавычках, кавычки удваиваются
+        private void writeEscaped(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+    }
+}
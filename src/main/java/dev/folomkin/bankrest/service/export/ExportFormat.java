@@ -0,0 +1,25 @@
+package dev.folomkin.bankrest.service.export;
+
+import org.springframework.http.MediaType;
+
+/// Формат выгрузки: JSON-объект на строку или CSV с заголовком
+public enum ExportFormat {
+    NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson"),
+    CSV(MediaType.parseMediaType("text/csv;charset=UTF-8"), "csv");
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    ExportFormat(MediaType mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    public String fileName(String name) {
+        return name + "." + extension;
+    }
+}
@@ -1,10 +1,14 @@
 package dev.folomkin.bankrest.service.security;
 
 import dev.folomkin.bankrest.config.JwtTokenProvider;
+import dev.folomkin.bankrest.config.datasource.ReadYourWrites;
+import dev.folomkin.bankrest.config.security.TokenRevocations;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
 import dev.folomkin.bankrest.domain.dto.security.JwtResponse;
 import dev.folomkin.bankrest.domain.dto.security.LoginRequest;
 import dev.folomkin.bankrest.domain.dto.user.UserRequest;
 import dev.folomkin.bankrest.domain.dto.user.UserResponse;
+import dev.folomkin.bankrest.domain.model.Role;
 import dev.folomkin.bankrest.domain.model.User;
 import dev.folomkin.bankrest.service.RoleService;
 import dev.folomkin.bankrest.service.user.UserService;
@@ -13,6 +17,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -26,6 +31,7 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
     private final RoleService roleService;
+    private final TokenRevocations tokenRevocations;
 
     /**
      * Регистрация пользователя
@@ -38,14 +44,15 @@ public class AuthService {
         user.setUsername(request.getUsername());
         user.setPassword(passwordEncoder.encode(request.getPassword()));
         user.setEmail(request.getEmail());
-        user.setRoles(List.of(roleService.getUserRole()));
+        Role userRole = roleService.getUserRole();
+        user.setRoles(List.of(userRole));
         User saved = userService.create(user);
 
         UserResponse userResponse = new UserResponse();
         userResponse.setId(saved.getId());
         userResponse.setUsername(saved.getUsername());
         userResponse.setEmail(saved.getEmail());
-        userResponse.setRoles(List.of(roleService.getUserRole()));
+        userResponse.setRoles(List.of(userRole));
         userResponse.setCreatedA(saved.getCreatedAt());
         return userResponse;
     }
@@ -57,6 +64,12 @@ public class AuthService {
      * @return токен
      */
     public JwtResponse login(LoginRequest request) {
+        // Пользователь читается с основной базы: сразу после регистрации реплика может его еще не знать,
+        // а запись регистрации анонимна и не отмечается ReadYourWrites
+        return ReadYourWrites.onPrimary(() -> issueToken(request));
+    }
+
+    private JwtResponse issueToken(LoginRequest request) {
         Authentication authentication = authenticationManager
                 .authenticate(
                         new UsernamePasswordAuthenticationToken(
@@ -64,7 +77,22 @@ public class AuthService {
                                 request.getPassword()
                         ));
 
-        var jwt = jwtTokenProvider.generateToken(authentication);
+        // Роли - из проверенной аутентификации, id - по имени: пользователь только что прочитан
+        // при проверке пароля и лежит в кеше второго уровня
+        User user = userService.getByUsername(authentication.getName());
+        List<String> roles = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList();
+        var jwt = jwtTokenProvider.generateToken(new AuthenticatedUser(user.getId(), user.getUsername(), roles));
         return new JwtResponse(jwt);
     }
+
+    /**
+     * Выход: все выданные пользователю токены перестают приниматься
+     *
+     * @param user текущий пользователь
+     */
+    public void logout(AuthenticatedUser user) {
+        tokenRevocations.revokeAll(user.id());
+    }
 }
@@ -1,5 +1,6 @@
 package dev.folomkin.bankrest.service.user;
 
+import dev.folomkin.bankrest.domain.dto.CursorPageResponse;
 import dev.folomkin.bankrest.domain.dto.user.UserResponse;
 import dev.folomkin.bankrest.domain.model.User;
 import org.springframework.data.domain.Page;
@@ -18,9 +19,13 @@ public interface UserService {
 
     User create(User user);
 
+    User getByUsername(String username);
+
     void getAdmin();
 
     void getUser();
 
     Page<UserResponse> getUsersPages(PageRequest request);
+
+    CursorPageResponse<UserResponse> scrollUsers(String sortField, String cursor, int limit);
 }
@@ -1,36 +1,49 @@
 package dev.folomkin.bankrest.service.user;
 
+import dev.folomkin.bankrest.config.security.TokenRevocations;
+import dev.folomkin.bankrest.domain.dto.CursorPageResponse;
 import dev.folomkin.bankrest.domain.dto.user.UserResponse;
 import dev.folomkin.bankrest.domain.mapper.UserMapper;
 import dev.folomkin.bankrest.domain.model.Role;
 import dev.folomkin.bankrest.domain.model.User;
 import dev.folomkin.bankrest.exceptions.AuthExistUserException;
 import dev.folomkin.bankrest.exceptions.NoSuchElementException;
+import dev.folomkin.bankrest.repository.KeysetSort;
 import dev.folomkin.bankrest.repository.UserRepository;
 import dev.folomkin.bankrest.service.RoleService;
 import lombok.AllArgsConstructor;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor
-public class UserServiceImpl implements UserService, UserDetailsService {
+public class UserServiceImpl implements UserService, UserDetailsService, UserDetailsPasswordService {
+
+    /// Поля сортировки для пагинации по курсору: у каждого есть уникальный индекс
+    private static final Map<String, KeysetSort<User>> SCROLL_SORTS = Map.of(
+            KeysetSort.ID, new KeysetSort<>(KeysetSort.ID, User::getId, Long::valueOf, User::getId),
+            "username", new KeysetSort<>("username", User::getUsername, Function.identity(), User::getId),
+            "email", new KeysetSort<>("email", User::getEmail, Function.identity(), User::getId));
 
     private final UserRepository userRepository;
     private final UserMapper userMapper;
     private final RoleService roleService;
+    private final TokenRevocations tokenRevocations;
 
 
 
@@ -41,8 +54,9 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      * UserResponse: Пользователь с ограниченным количеством данных
      */
     @Override
+    @Transactional(readOnly = true)
     public List<UserResponse> getUsers() {
-        return userMapper.toUserResponseList(userRepository.findAll());
+        return userRepository.findAllResponses();
     }
 
 
@@ -52,9 +66,27 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      * @return Список пользователей
      */
     @Override
+    @Transactional(readOnly = true)
     public Page<UserResponse> getUsersPages(PageRequest pageRequest) {
-        List<User> users = userRepository.findAll(pageRequest).getContent();
-        return new PageImpl<>(userMapper.toUserResponseList(users), pageRequest, users.size());
+        return userRepository.findAll(pageRequest).map(userMapper::toUserResponse);
+    }
+
+
+    /**
+     * Получение списка пользователей постранично по курсору
+     *
+     * @return Страница пользователей и курсор следующей
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponse<UserResponse> scrollUsers(String sortField, String cursor, int limit) {
+        KeysetSort<User> sort = KeysetSort.select(SCROLL_SORTS, sortField);
+        List<User> rows = userRepository.findBy(sort.after(cursor),
+                query -> query.sortBy(sort.sort()).limit(limit + 1).all());
+        boolean hasNext = rows.size() > limit;
+        List<User> page = hasNext ? rows.subList(0, limit) : rows;
+        return new CursorPageResponse<>(userMapper.toUserResponseList(page),
+                hasNext ? sort.cursorAfter(page.get(limit - 1)) : null);
     }
 
 
@@ -64,6 +96,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      * @return Пользователь
      */
     @Override
+    @Transactional(readOnly = true)
     public UserResponse getUserById(Long userId) {
         User user = userRepository.findById(userId).orElseThrow(
                 () -> new NoSuchElementException("Пользователь с id: " + userId + " не найден")
@@ -101,13 +134,15 @@ public class UserServiceImpl implements UserService, UserDetailsService {
      *
      * @return пользователь
      */
+    @Override
     public User getByUsername(String username) {
-        return userRepository.findByUsername(username)
+        return userRepository.findCachedByUsername(username)
                 .orElseThrow(() -> new NoSuchElementException("Пользователь не найден"));
     }
 
 
     @Override
+    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         User user = getByUsername(username);
         return new org.springframework.security.core.userdetails.User(
@@ -118,6 +153,23 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         );
     }
 
+    /**
+     * Пересчитанный хеш пароля после успешного входа: вызывается
+     * DaoAuthenticationProvider, когда стоимость BCrypt в настройках изменилась
+     *
+     * @return пользователь с новым хешем
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = getByUsername(userDetails.getUsername());
+        user.setPassword(newPassword);
+        userRepository.save(user);
+        return org.springframework.security.core.userdetails.User.withUserDetails(userDetails)
+                .password(newPassword)
+                .build();
+    }
+
     /**
      * Получение текущего пользователя
      *
@@ -138,6 +190,8 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         var user = getCurrentUser();
         user.setRoles(List.of(roleService.getUserRole()));
         save(user);
+        ///-> Роли в выданных токенах устарели
+        tokenRevocations.revokeAll(user.getId());
     }
 
 
@@ -150,6 +204,8 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         var user = getCurrentUser();
         user.setRoles(List.of(roleService.getUserRole()));
         save(user);
+        ///-> Роли в выданных токенах устарели
+        tokenRevocations.revokeAll(user.getId());
     }
 
 
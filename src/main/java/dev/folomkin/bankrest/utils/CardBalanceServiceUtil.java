@@ -2,87 +2,164 @@ package dev.folomkin.bankrest.utils;
 
 import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
 import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
 import dev.folomkin.bankrest.domain.model.Card;
-import dev.folomkin.bankrest.domain.model.CardStatus;
-import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.domain.model.Money;
+import dev.folomkin.bankrest.domain.model.Transfer;
 import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
-import dev.folomkin.bankrest.repository.CardRepository;
-import lombok.AllArgsConstructor;
+import dev.folomkin.bankrest.exceptions.TransferConflictException;
+import dev.folomkin.bankrest.service.card.cache.CardResponseCache;
+import dev.folomkin.bankrest.service.card.index.CardNumberIndex;
+import dev.folomkin.bankrest.service.card.ledger.LedgerService;
+import dev.folomkin.bankrest.service.card.transfer.SlottedTransfer;
+import dev.folomkin.bankrest.service.card.transfer.TransferConcurrencyMode;
+import dev.folomkin.bankrest.service.card.transfer.TransferConcurrencyStrategy;
+import dev.folomkin.bankrest.service.card.transfer.TransferValidator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
-@AllArgsConstructor
 public class CardBalanceServiceUtil {
 
-    private CardRepository cardRepository;
+    private final CardNumberIndex cardNumberIndex;
+    private final CardResponseCache cardResponseCache;
+    private final TransferValidator transferValidator;
+    private final LedgerService ledgerService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransferConcurrencyStrategy strategy;
+    private final SlottedTransfer slottedTransfer;
+    private final long retryBackoffMs;
+
+    public CardBalanceServiceUtil(CardNumberIndex cardNumberIndex,
+                                  CardResponseCache cardResponseCache,
+                                  TransferValidator transferValidator,
+                                  LedgerService ledgerService,
+                                  PlatformTransactionManager transactionManager,
+                                  List<TransferConcurrencyStrategy> strategies,
+                                  SlottedTransfer slottedTransfer,
+                                  @Value("${bank.transfer.concurrency:PESSIMISTIC}") TransferConcurrencyMode mode,
+                                  @Value("${bank.transfer.optimistic.backoff-ms:5}") long retryBackoffMs) {
+        this.cardNumberIndex = cardNumberIndex;
+        this.cardResponseCache = cardResponseCache;
+        this.transferValidator = transferValidator;
+        this.ledgerService = ledgerService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.strategy = strategies.stream()
+                .filter(s -> s.mode() == mode)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Не найдена стратегия перевода " + mode));
+        this.slottedTransfer = slottedTransfer;
+        this.retryBackoffMs = retryBackoffMs;
+        log.info("Режим конкурентного доступа при переводах: {}", mode);
+    }
+
+    /**
+     * Перевод между картами пользователя.
+     * <p>
+     * Транзакцию открывает сам метод, а не вызывающий сервис: при
+     * оптимистической блокировке каждая попытка должна коммититься отдельно.
+     */
+    public CardBalanceChangeResponse balanceChange(CardBalanceChangeRequest request, AuthenticatedUser user) {
+        return balanceChange(request, user, response -> {
+        });
+    }
 
-    public CardBalanceChangeResponse balanceChange(CardBalanceChangeRequest request, User user) {
+    /**
+     * Перевод с дополнительным действием в той же транзакции.
+     * <p>
+     * inTransaction вызывается после изменения балансов и до коммита:
+     * если оно бросит исключение, перевод будет отменен.
+     */
+    public CardBalanceChangeResponse balanceChange(CardBalanceChangeRequest request, AuthenticatedUser user,
+                                                   Consumer<CardBalanceChangeResponse> inTransaction) {
 
         if (request.cardNumberOut().equals(request.cardNumberIn())) {
             throw new InvalidCardFieldException("Номера карт должны быть разные");
         }
-
-        Card cardOut = cardRepository.findCardByLast4(request.cardNumberOut());
-        Card cardIn = cardRepository.findCardByLast4(request.cardNumberIn());
-
-        validateRequest(cardIn, cardOut, user);
-
-        BigDecimal cardOutBalance = cardOut.getBalance();
-        BigDecimal cardInBalance = cardIn.getBalance();
-
-        /// Если средств хватает - выполняем перевод
-        int compBal = cardOutBalance.compareTo(request.amount());
-        if (compBal < 0) {
-            throw new InvalidCardFieldException("Недостаточно средств для перевода");
+        if (request.amount() == null || request.amount().signum() <= 0) {
+            throw new InvalidCardFieldException("Сумма перевода должна быть больше нуля");
         }
-        /// -> С карты отправителя снимаем средства
-        cardOut.setBalance(cardOutBalance.subtract(request.amount()));
-        /// -> зачисляя их на карту получатель
-        cardIn.setBalance(cardInBalance.add(request.amount()));
-        cardRepository.save(cardOut);
-        cardRepository.save(cardIn);
-
-        cardOutBalance = cardOut.getBalance();
-        cardInBalance = cardIn.getBalance();
-
-        return new CardBalanceChangeResponse(
-                cardOut.getEncryptedNumber(),
-                cardOutBalance,
-                cardIn.getEncryptedNumber(),
-                cardInBalance
-        );
+        /// -> Дальше сумма только в копейках
+        long amountMinor = Money.toMinor(request.amount());
+
+        /// -> Берем только id, из индекса в памяти: сами карты читаются стратегией уже под ее защитой
+        Long cardOutId = cardId(user, request.cardNumberOut(), "Не найдена карта-отправитель");
+        Long cardInId = cardId(user, request.cardNumberIn(), "Не найдена карта-получатель");
+        try {
+            return executeWithRetry(request, cardOutId, cardInId, amountMinor, user, inTransaction);
+        } catch (InvalidCardFieldException e) {
+            /// -> Карты с id из индекса может уже не быть (удалил другой экземпляр), а номер - занят новой картой.
+            /// -> Устаревшие записи убираются, и перевод повторяется один раз с id из базы
+            boolean outStale = cardNumberIndex.evictIfMissing(user.id(), request.cardNumberOut(), cardOutId);
+            boolean inStale = cardNumberIndex.evictIfMissing(user.id(), request.cardNumberIn(), cardInId);
+            if (!outStale && !inStale) {
+                throw e;
+            }
+        }
+        return executeWithRetry(request,
+                cardId(user, request.cardNumberOut(), "Не найдена карта-отправитель"),
+                cardId(user, request.cardNumberIn(), "Не найдена карта-получатель"),
+                amountMinor, user, inTransaction);
     }
 
-
-    public void validateRequest(Card cardOut, Card cardIn, User user) {
-        if (cardOut == null) {
-            throw new InvalidCardFieldException("Не найдена карта-отправитель");
-        }
-        if (cardIn == null) {
-            throw new InvalidCardFieldException("Не найдена карта-получатель");
+    private Long cardId(AuthenticatedUser user, String last4, String notFound) {
+        Long cardId = cardNumberIndex.findCardId(user.id(), last4);
+        if (cardId == null) {
+            throw new InvalidCardFieldException(notFound);
         }
+        return cardId;
+    }
 
-        if (cardOut.getCardStatus().equals(CardStatus.BLOCKREQUEST)
-                || cardOut.getCardStatus().equals(CardStatus.BLOCKED)
-        ) {
-            throw new InvalidCardFieldException("Карта-отправитель заблокирована, вы не можете переводить с нее средства");
-        }
+    public void validateRequest(Card cardOut, Card cardIn, AuthenticatedUser user) {
+        transferValidator.validate(cardOut, cardIn, user);
+    }
 
-        if (cardIn.getCardStatus().equals(CardStatus.BLOCKREQUEST)
-                || cardIn.getCardStatus().equals(CardStatus.BLOCKED)
-        ) {
-            throw new InvalidCardFieldException("Карта-получатель заблокирована, вы не можете зачислять на нее средства");
+    private CardBalanceChangeResponse executeWithRetry(CardBalanceChangeRequest request,
+                                                       Long cardOutId, Long cardInId, long amountMinor, AuthenticatedUser user,
+                                                       Consumer<CardBalanceChangeResponse> inTransaction) {
+        int maxAttempts = strategy.maxAttempts();
+        boolean slotted = slottedTransfer.involves(cardOutId, cardInId);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    CardBalanceChangeResponse response = slotted
+                            ? slottedTransfer.transfer(cardOutId, cardInId, amountMinor, user)
+                            : strategy.transfer(cardOutId, cardInId, amountMinor, user);
+                    ledgerService.recordTransfer(new Transfer(user.id(), cardOutId, request.cardNumberOut(),
+                            cardInId, request.cardNumberIn(), amountMinor));
+                    cardResponseCache.evictAfterCommit(cardOutId, cardInId);
+                    inTransaction.accept(response);
+                    return response;
+                });
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    log.warn("Перевод {} -> {} не выполнен за {} попыток", cardOutId, cardInId, attempt);
+                    throw new TransferConflictException("Карта изменяется другим переводом, повторите запрос позже");
+                }
+                backoff(attempt);
+            }
         }
+    }
 
-        if (!cardOut.getUser().getId().equals(user.getId())
-                || !cardIn.getUser().getId().equals(user.getId())) {
-            throw new InvalidCardFieldException(
-                    "Вы можете переводить средства только между своими картами"
-            );
+    /// Случайная пауза, чтобы конкурирующие переводы не повторялись синхронно
+    private void backoff(int attempt) {
+        if (retryBackoffMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(retryBackoffMs * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferConflictException("Перевод прерван");
         }
     }
 }
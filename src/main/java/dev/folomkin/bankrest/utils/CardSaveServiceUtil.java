@@ -2,6 +2,7 @@ package dev.folomkin.bankrest.utils;
 
 import dev.folomkin.bankrest.domain.dto.card.CardRequest;
 import dev.folomkin.bankrest.domain.dto.card.CardResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
 import dev.folomkin.bankrest.domain.mapper.CardMapper;
 import dev.folomkin.bankrest.domain.model.Card;
 import dev.folomkin.bankrest.domain.model.CardStatus;
@@ -10,6 +11,7 @@ import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
 import dev.folomkin.bankrest.exceptions.NoSuchElementException;
 import dev.folomkin.bankrest.repository.CardRepository;
 import dev.folomkin.bankrest.repository.UserRepository;
+import dev.folomkin.bankrest.service.card.ledger.LedgerService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -22,16 +24,15 @@ public class CardSaveServiceUtil {
     private CardRepository cardRepository;
     private UserRepository userRepository;
     private CardMapper cardMapper;
+    private LedgerService ledgerService;
 
-    public CardResponse saveCard(CardRequest cardRequest, User currentUser) {
+    public CardResponse saveCard(CardRequest cardRequest, AuthenticatedUser currentUser) {
 
         //-> Поиск по последним 4-м цифрам номера карты
         String openNumber = cardRequest.openNumber();
         String searchedNumber = openNumber.substring(openNumber.length() - 4);
 
-        Card card = cardRepository.findCardByLast4(searchedNumber);
-
-        if (card != null) {
+        if (cardRepository.existsByLast4(searchedNumber)) {
             throw new InvalidCardFieldException(
                     "Карта с номером *** *** *** " + searchedNumber + " уже существует"
             );
@@ -41,9 +42,10 @@ public class CardSaveServiceUtil {
             throw new InvalidCardFieldException("Баланс не должен быть отрицательным");
         }
 
-        card = new Card();
+        Card card = new Card();
         card.setOpenNumber(cardRequest.openNumber());
         card.setEncryptedNumber(encryptedNumber(cardRequest.openNumber()));
+        card.setLast4(searchedNumber);
         card.setExpirationDate(cardRequest.expirationDate());
         card.setCardStatus(CardStatus.ACTIVE);
         card.setBalance(cardRequest.balance());
@@ -55,10 +57,12 @@ public class CardSaveServiceUtil {
                             "Пользователь с id " + cardRequest.userId() + " не найден"
                     ));
         } else {
-            userToAssign = currentUser;
+            ///-> Ссылка без запроса: для связи карты нужен только id
+            userToAssign = userRepository.getReferenceById(currentUser.id());
         }
         card.setUser(userToAssign);
         Card saved = cardRepository.save(card);
+        ledgerService.openCard(saved.getId(), saved.getBalanceMinor());
         return cardMapper.toCardResponse(saved);
     }
 
@@ -0,0 +1,166 @@
+package dev.folomkin.bankrest.benchmark;
+
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceSlotsRequest;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.CardStatus;
+import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.repository.CardRepository;
+import dev.folomkin.bankrest.repository.UserRepository;
+import dev.folomkin.bankrest.service.card.CardService;
+import dev.folomkin.bankrest.utils.CardBalanceServiceUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Зачисления на одну "горячую" карту из многих потоков: строка карты
+ * против слотов подбаланса.
+ * <p>
+ * Каждый поток переводит со своей карты на общую, поэтому списания не
+ * конкурируют и вся конкуренция приходится на зачисление.
+ * <p>
+ * Запуск: mvn test -Dtest=BalanceSlotsBenchmarkIT
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@Testcontainers
+class BalanceSlotsBenchmarkIT {
+
+    private static final int THREADS = 32;
+    private static final int TRANSFERS_PER_THREAD = 100;
+    private static final int SLOTS = 16;
+    private static final String HOT_CARD = "9000";
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("100000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> THREADS);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+        registry.add("spring.liquibase.enabled", () -> "false");
+    }
+
+    @Autowired
+    private CardBalanceServiceUtil cardBalanceServiceUtil;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    private AuthenticatedUser principal;
+    private Long hotCardId;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("bench_slots");
+        user.setEmail("slots@bench.dev");
+        user.setPassword("password");
+        userRepository.save(user);
+        principal = AuthenticatedUser.of(user);
+
+        hotCardId = saveCard(HOT_CARD).getId();
+        for (int i = 0; i < THREADS; i++) {
+            saveCard(String.format("%04d", 4000 + i));
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void slotsShouldSpeedUpCreditsToOneCard() throws Exception {
+        long rowNanos = run();
+        cardService.updateBalanceSlotsById(hotCardId, new CardBalanceSlotsRequest(SLOTS));
+        long slotNanos = run();
+
+        int total = THREADS * TRANSFERS_PER_THREAD;
+        log.info("{} зачислений на одну карту в {} потоков: строка карты {} tx/s, {} слотов {} tx/s",
+                total, THREADS,
+                String.format("%.0f", total * 1e9 / rowNanos),
+                SLOTS,
+                String.format("%.0f", total * 1e9 / slotNanos));
+
+        ///-> Баланс карты со слотами - одно число, деньги не потеряны
+        Card hot = cardRepository.findById(hotCardId).orElseThrow();
+        BigDecimal credited = AMOUNT.multiply(BigDecimal.valueOf(2L * total));
+        assertThat(hot.getBalance()).isEqualByComparingTo(INITIAL_BALANCE.add(credited));
+        assertThat(cardService.getCardById(hotCardId).balance()).isEqualByComparingTo(hot.getBalance());
+
+        BigDecimal sum = cardRepository.findAllCardsByUserId(user.getId()).stream()
+                .map(Card::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat(sum).isEqualByComparingTo(INITIAL_BALANCE.multiply(BigDecimal.valueOf(THREADS + 1)));
+    }
+
+    private long run() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                String from = String.format("%04d", 4000 + t);
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        cardBalanceServiceUtil.balanceChange(new CardBalanceChangeRequest(from, HOT_CARD, AMOUNT), principal);
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            return System.nanoTime() - begin;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Card saveCard(String last4) {
+        return cardRepository.save(new Card(null, "0000 0000 0000 " + last4, "**** **** **** " + last4,
+                LocalDate.now().plusYears(3), CardStatus.ACTIVE, INITIAL_BALANCE, user));
+    }
+}
@@ -0,0 +1,137 @@
+package dev.folomkin.bankrest.benchmark;
+
+import dev.folomkin.bankrest.domain.dto.card.BatchTransferMode;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
+import dev.folomkin.bankrest.domain.dto.card.CardBatchTransferRequest;
+import dev.folomkin.bankrest.domain.dto.card.CardBatchTransferResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.CardStatus;
+import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.repository.CardRepository;
+import dev.folomkin.bankrest.repository.UserRepository;
+import dev.folomkin.bankrest.service.card.CardService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнение TRANSFERS одиночных вызовов balanceChange с одним пакетом
+ * из того же набора переводов.
+ * <p>
+ * Запуск: mvn test -Dtest=BatchTransferBenchmarkIT
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@Testcontainers
+class BatchTransferBenchmarkIT {
+
+    private static final int TRANSFERS = 500;
+    private static final int CARDS = 10;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("100000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+        registry.add("spring.liquibase.enabled", () -> "false");
+    }
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    private AuthenticatedUser principal;
+    private List<CardBalanceChangeRequest> transfers;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("bench_batch");
+        user.setEmail("batch@bench.dev");
+        user.setPassword("password");
+        userRepository.save(user);
+        principal = AuthenticatedUser.of(user);
+
+        for (int i = 0; i < CARDS; i++) {
+            String last4 = String.format("%04d", 2000 + i);
+            cardRepository.save(new Card(null, "0000 0000 0000 " + last4, "**** **** **** " + last4,
+                    LocalDate.now().plusYears(3), CardStatus.ACTIVE, INITIAL_BALANCE, user));
+        }
+
+        transfers = new ArrayList<>(TRANSFERS);
+        for (int i = 0; i < TRANSFERS; i++) {
+            transfers.add(new CardBalanceChangeRequest(
+                    String.format("%04d", 2000 + i % CARDS),
+                    String.format("%04d", 2000 + (i + 1) % CARDS),
+                    AMOUNT));
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void batchShouldOutperformSingleCalls() {
+        ///-> Прогрев: первые запросы платят за подготовку выражений и JIT
+        cardService.balanceChange(transfers.get(0), principal);
+        cardService.balanceChange(transfers.get(1), principal);
+
+        long begin = System.nanoTime();
+        for (CardBalanceChangeRequest transfer : transfers) {
+            cardService.balanceChange(transfer, principal);
+        }
+        long singleNanos = System.nanoTime() - begin;
+
+        begin = System.nanoTime();
+        CardBatchTransferResponse response = cardService.batchBalanceChange(
+                new CardBatchTransferRequest(transfers, BatchTransferMode.ALL_OR_NOTHING), principal);
+        long batchNanos = System.nanoTime() - begin;
+
+        log.info("{} переводов: по одному {} мс ({} tx/s), пакетом {} мс ({} tx/s), ускорение x{}",
+                TRANSFERS,
+                singleNanos / 1_000_000, String.format("%.0f", TRANSFERS * 1e9 / singleNanos),
+                batchNanos / 1_000_000, String.format("%.0f", TRANSFERS * 1e9 / batchNanos),
+                String.format("%.1f", (double) singleNanos / batchNanos));
+
+        assertThat(response.succeeded()).isEqualTo(TRANSFERS);
+        BigDecimal sum = cardRepository.findAllCardsByUserId(user.getId()).stream()
+                .map(Card::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat(sum).isEqualByComparingTo(INITIAL_BALANCE.multiply(BigDecimal.valueOf(CARDS)));
+    }
+}
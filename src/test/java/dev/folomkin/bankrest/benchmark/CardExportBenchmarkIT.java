@@ -0,0 +1,169 @@
+package dev.folomkin.bankrest.benchmark;
+
+import dev.folomkin.bankrest.service.export.DataExportService;
+import dev.folomkin.bankrest.service.export.ExportFormat;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Потоковая выгрузка карт: пропускная способность и занятая куча.
+ * <p>
+ * Выгрузка пишется в поток, который только считает байты и строки. Во
+ * время выгрузки отдельный поток замеряет использованную кучу; ее рост
+ * не должен зависеть от числа карт.
+ * <p>
+ * Запуск: mvn test -Dtest=CardExportBenchmarkIT [-Dexport.cards=10000000]
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CardExportBenchmarkIT {
+
+    private static final int CARDS = Integer.getInteger("export.cards", 1_000_000);
+    private static final int USERS = Math.max(1, CARDS / 4);
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        registry.add("spring.liquibase.enabled", () -> "true");
+        registry.add("bank.card-index.enabled", () -> "false");
+    }
+
+    @Autowired
+    private DataExportService dataExportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("""
+                INSERT INTO users (username, email, password, role)
+                SELECT 'user' || g, 'user' || g || '@bank.test', 'password' || g, 'ROLE_USER'
+                FROM generate_series(1, ?) g
+                """, USERS);
+        jdbcTemplate.update("""
+                INSERT INTO cards (open_number, encrypted_number, last4, expiration_date, status,
+                                   balance_minor, balance_slots, user_id, version)
+                SELECT lpad(g::text, 16, '0'), '**** **** **** ' || lpad((g % 10000)::text, 4, '0'),
+                       lpad((g % 10000)::text, 4, '0'), DATE '2026-01-01' + g % 1826, 'ACTIVE',
+                       (g::bigint * 7919) % 100000000, 0, (SELECT min(id) FROM users) + g % ?, 0
+                FROM generate_series(1, ?) g
+                """, USERS, CARDS);
+        jdbcTemplate.execute("ANALYZE cards");
+    }
+
+    @Test
+    void exportShouldStreamAllCardsInConstantMemory() throws Exception {
+        for (ExportFormat format : ExportFormat.values()) {
+            CountingOutputStream out = new CountingOutputStream();
+            HeapSampler heap = new HeapSampler();
+            heap.start();
+            long begin = System.nanoTime();
+            long rows = dataExportService.exportCards(format, out);
+            long nanos = System.nanoTime() - begin;
+            heap.stop();
+
+            log.info("Выгрузка {} карт в {}: {} строк/с, {} МиБ/с, {} МиБ, рост кучи не более {} МиБ",
+                    CARDS, format,
+                    String.format("%.0f", rows * 1e9 / nanos),
+                    String.format("%.1f", out.bytes * 1e9 / nanos / (1 << 20)),
+                    out.bytes >> 20,
+                    heap.maxGrowth() >> 20);
+
+            ///-> В CSV на строку больше - заголовок
+            assertThat(rows).isEqualTo(CARDS);
+            assertThat(out.lines).isEqualTo(format == ExportFormat.CSV ? CARDS + 1L : CARDS);
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        long bytes;
+        long lines;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+            if (b == '\n') {
+                lines++;
+            }
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            bytes += length;
+            for (int i = offset; i < offset + length; i++) {
+                if (buffer[i] == '\n') {
+                    lines++;
+                }
+            }
+        }
+    }
+
+    /// Наибольший рост использованной кучи относительно начала замера, раз в 50 мс.
+    /// Включает еще не собранный мусор, поэтому это оценка сверху
+    private static final class HeapSampler {
+
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final AtomicLong max = new AtomicLong();
+        private long baseline;
+        private Thread thread;
+
+        void start() {
+            System.gc();
+            baseline = memory.getHeapMemoryUsage().getUsed();
+            running.set(true);
+            thread = new Thread(() -> {
+                while (running.get()) {
+                    max.accumulateAndGet(memory.getHeapMemoryUsage().getUsed() - baseline, Math::max);
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "heap-sampler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            running.set(false);
+            thread.join();
+        }
+
+        long maxGrowth() {
+            return max.get();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package dev.folomkin.bankrest.benchmark;
+
+import dev.folomkin.bankrest.domain.dto.card.CardResponse;
+import dev.folomkin.bankrest.domain.mapper.CardMapper;
+import dev.folomkin.bankrest.repository.CardRepository;
+import dev.folomkin.bankrest.service.card.CardService;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Списки карт: сущности Card с EAGER владельцем против проекции CardView.
+ * <p>
+ * Для каждого способа - число SQL-запросов (статистика Hibernate) и байты,
+ * выделенные потоком на один вызов. Ответы обоих способов совпадают.
+ * <p>
+ * Запуск: mvn test -Dtest=CardListProjectionBenchmarkIT [-Dlist.cards=100000]
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CardListProjectionBenchmarkIT {
+
+    private static final int CARDS = Integer.getInteger("list.cards", 20_000);
+    private static final int USERS = Math.max(1, CARDS / 10);
+    private static final int ROUNDS = 5;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        registry.add("spring.liquibase.enabled", () -> "true");
+        registry.add("spring.jpa.properties.hibernate.generate_statistics", () -> "true");
+        registry.add("bank.card-index.enabled", () -> "false");
+    }
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private CardMapper cardMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("""
+                INSERT INTO users (username, email, password, role)
+                SELECT 'user' || g, 'user' || g || '@bank.test', 'password' || g, 'ROLE_USER'
+                FROM generate_series(1, ?) g
+                """, USERS);
+        jdbcTemplate.update("""
+                INSERT INTO cards (open_number, encrypted_number, last4, expiration_date, status,
+                                   balance_minor, balance_slots, user_id, version)
+                SELECT lpad(g::text, 16, '0'), '**** **** **** ' || lpad((g % 10000)::text, 4, '0'),
+                       lpad((g % 10000)::text, 4, '0'), DATE '2026-01-01' + g % 1826,
+                       CASE WHEN g % 50 = 0 THEN 'BLOCKREQUEST' ELSE 'ACTIVE' END,
+                       (g::bigint * 7919) % 100000000, 0, (SELECT min(id) FROM users) + g % ?, 0
+                FROM generate_series(1, ?) g
+                """, USERS, CARDS);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void projectionShouldIssueOneQueryAndAllocateLessThanEntities() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Measurement entities = measure(statistics,
+                () -> cardRepository.findAll().stream().map(cardMapper::toCardResponse).toList());
+        Measurement views = measure(statistics, cardService::getCards);
+
+        log.info("Список {} карт, сущности: {} запросов, {} КиБ на вызов", CARDS, entities.queries, entities.bytes >> 10);
+        log.info("Список {} карт, CardView: {} запросов, {} КиБ на вызов", CARDS, views.queries, views.bytes >> 10);
+
+        assertThat(views.result).containsExactlyInAnyOrderElementsOf(entities.result);
+        assertThat(views.queries).isEqualTo(1);
+        assertThat(views.queries).isLessThan(entities.queries);
+        assertThat(views.bytes).isLessThan(entities.bytes);
+    }
+
+    ///-> Первый вызов прогревает планы запросов и классы, в замер не входит
+    private static Measurement measure(Statistics statistics, Supplier<List<CardResponse>> call) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        List<CardResponse> result = call.get();
+        statistics.clear();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ROUNDS; i++) {
+            result = call.get();
+        }
+        long bytes = (threads.getCurrentThreadAllocatedBytes() - before) / ROUNDS;
+        return new Measurement(result, statistics.getPrepareStatementCount() / ROUNDS, bytes);
+    }
+
+    private record Measurement(List<CardResponse> result, long queries, long bytes) {
+    }
+}
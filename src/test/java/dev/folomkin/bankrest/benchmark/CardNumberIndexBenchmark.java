@@ -0,0 +1,113 @@
+package dev.folomkin.bankrest.benchmark;
+
+import dev.folomkin.bankrest.service.card.index.CardNumberIndex;
+import dev.folomkin.bankrest.service.card.index.LongLongOpenHashMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Индекс номеров карт: {@link LongLongOpenHashMap} с упакованным ключом
+ * против HashMap со строковым ключом "userId:last4".
+ * <p>
+ * Кроме времени поиска печатает занятую кучу каждой таблицы после
+ * заполнения (разница used heap после System.gc()).
+ * <p>
+ * Запуск: mvn test-compile, затем main этого класса из IDE
+ * или java -cp target/test-classes:target/classes:&lt;classpath&gt; ...CardNumberIndexBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class CardNumberIndexBenchmark {
+
+    /// Карт на владельца: 10 млн карт = 2,5 млн владельцев
+    private static final int CARDS_PER_USER = 4;
+
+    /// Запросы выбираются из заранее построенной выборки, чтобы не мерить форматирование номеров
+    private static final int PROBES = 1 << 20;
+
+    @Param({"10000000"})
+    private int cards;
+
+    private LongLongOpenHashMap primitive;
+    private Map<String, Long> boxed;
+
+    private long[] probeUserIds;
+    private String[] probeLast4s;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        long before = usedHeap();
+        primitive = new LongLongOpenHashMap(cards);
+        for (int i = 0; i < cards; i++) {
+            primitive.put(CardNumberIndex.key(userId(i), last4(i)), i + 1L);
+        }
+        long afterPrimitive = usedHeap();
+
+        boxed = new HashMap<>();
+        for (int i = 0; i < cards; i++) {
+            boxed.put(userId(i) + ":" + last4(i), i + 1L);
+        }
+        long afterBoxed = usedHeap();
+
+        System.out.printf("%n%d cards: LongLongOpenHashMap %d MiB (arrays %d MiB), HashMap<String, Long> %d MiB%n",
+                cards, (afterPrimitive - before) >> 20, primitive.memoryBytes() >> 20,
+                (afterBoxed - afterPrimitive) >> 20);
+
+        probeUserIds = new long[PROBES];
+        probeLast4s = new String[PROBES];
+        for (int p = 0; p < PROBES; p++) {
+            int i = ThreadLocalRandom.current().nextInt(cards);
+            probeUserIds[p] = userId(i);
+            probeLast4s[p] = last4(i);
+        }
+    }
+
+    ///-> Ключ строится из тех же данных, что приходят в запросе: id владельца и строка из 4 цифр
+    @Benchmark
+    public long primitiveLookup() {
+        int p = next++ & (PROBES - 1);
+        return primitive.get(CardNumberIndex.key(probeUserIds[p], probeLast4s[p]));
+    }
+
+    @Benchmark
+    public Long boxedLookup() {
+        int p = next++ & (PROBES - 1);
+        return boxed.get(probeUserIds[p] + ":" + probeLast4s[p]);
+    }
+
+    private static long userId(int card) {
+        return card / CARDS_PER_USER + 1L;
+    }
+
+    private static String last4(int card) {
+        return String.format("%04d", card % 10_000);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CardNumberIndexBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
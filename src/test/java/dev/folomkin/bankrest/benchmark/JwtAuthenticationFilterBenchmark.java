@@ -0,0 +1,98 @@
+package dev.folomkin.bankrest.benchmark;
+
+import dev.folomkin.bankrest.config.JwtTokenProvider;
+import dev.folomkin.bankrest.config.security.JwtAuthenticationCache;
+import dev.folomkin.bankrest.config.security.JwtAuthenticationFilter;
+import dev.folomkin.bankrest.config.security.TokenRevocations;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * {@link JwtAuthenticationFilter} на одном и том же токене: с холодным
+ * кешем (каждый запрос - HMAC, разбор claims, сборка ролей) и с теплым
+ * (SHA-256 токена и поиск в кеше).
+ * <p>
+ * В холодном варианте кеш очищается перед каждым запросом, это входит в
+ * замер. Аллокации видны с профайлером: -prof gc.
+ * <p>
+ * Запуск: mvn test-compile, затем main этого класса из IDE
+ * или java -cp target/test-classes:target/classes:&lt;classpath&gt; ...JwtAuthenticationFilterBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    private static final FilterChain NOOP_CHAIN = (request, response) -> {
+    };
+
+    private JwtAuthenticationCache cache;
+    private JwtAuthenticationFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        JwtTokenProvider jwtTokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(jwtTokenProvider, "secret",
+                "6B5970337336763979244226452948404D6251655468576D5A7134743777217A");
+        ReflectionTestUtils.setField(jwtTokenProvider, "validityInMilliseconds", 3_600_000L);
+        jwtTokenProvider.init();
+
+        ///-> Базы нет: отзывов нет, момент отзыва перечитывается раз в refresh и на замер не влияет
+        TokenRevocations tokenRevocations = new TokenRevocations(mock(JdbcTemplate.class), Duration.ofSeconds(5), 100_000);
+        cache = new JwtAuthenticationCache(jwtTokenProvider, tokenRevocations, new SimpleMeterRegistry(), 100_000);
+        filter = new JwtAuthenticationFilter(cache);
+
+        String token = jwtTokenProvider.generateToken(
+                new AuthenticatedUser(42L, "bench_user", List.of("ROLE_USER", "ROLE_ADMIN")));
+        request = new MockHttpServletRequest("GET", "/api/v1/users/my-cards");
+        request.addHeader("Authorization", "Bearer " + token);
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public Authentication coldCache() throws Exception {
+        cache.invalidateAll();
+        return filter();
+    }
+
+    @Benchmark
+    public Authentication warmCache() throws Exception {
+        return filter();
+    }
+
+    private Authentication filter() throws Exception {
+        SecurityContextHolder.clearContext();
+        filter.doFilter(request, response, NOOP_CHAIN);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JwtAuthenticationFilterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
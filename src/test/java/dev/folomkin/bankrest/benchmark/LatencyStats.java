@@ -0,0 +1,49 @@
+package dev.folomkin.bankrest.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Накопитель задержек для нагрузочных тестов.
+ * Один экземпляр на поток, после прогона объединяются через merge()
+ */
+final class LatencyStats {
+
+    private long[] samples;
+    private int size;
+
+    LatencyStats(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    void record(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+    }
+
+    int count() {
+        return size;
+    }
+
+    static LatencyStats merge(List<LatencyStats> parts) {
+        int total = parts.stream().mapToInt(LatencyStats::count).sum();
+        LatencyStats merged = new LatencyStats(Math.max(total, 1));
+        for (LatencyStats part : parts) {
+            System.arraycopy(part.samples, 0, merged.samples, merged.size, part.size);
+            merged.size += part.size;
+        }
+        Arrays.sort(merged.samples, 0, merged.size);
+        return merged;
+    }
+
+    /// Перцентиль в микросекундах. Вызывать только на результате merge()
+    long percentileMicros(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        return samples[Math.max(index, 0)] / 1_000;
+    }
+}
@@ -0,0 +1,153 @@
+package dev.folomkin.bankrest.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Списки карт и пользователей под нагрузкой: сколько держится соединение
+ * из пула на один запрос и сколько памяти выделяется на запрос.
+ * <p>
+ * Время удержания соединения - таймер Hikari hikaricp.connections.usage.
+ * При open-in-view соединение отдается в пул только после записи JSON,
+ * без него - по окончании транзакции сервиса. Для сравнения запуск с
+ * -Dlist.open-in-view=true и без него.
+ * <p>
+ * Запуск: mvn test -Dtest=ListReadPathBenchmarkIT [-Dlist.open-in-view=true] [-Dlist.cards=20000]
+ */
+@Slf4j
+@SpringBootTest
+@AutoConfigureMockMvc
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ListReadPathBenchmarkIT {
+
+    private static final boolean OPEN_IN_VIEW = Boolean.getBoolean("list.open-in-view");
+    private static final int CARDS = Integer.getInteger("list.cards", 20_000);
+    private static final int USERS = Math.max(1, CARDS / 10);
+    private static final int THREADS = 16;
+    private static final int REQUESTS_PER_THREAD = 20;
+    private static final int POOL_SIZE = 10;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> POOL_SIZE);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        registry.add("spring.jpa.open-in-view", () -> OPEN_IN_VIEW);
+        registry.add("spring.liquibase.enabled", () -> "true");
+        registry.add("bank.card-index.enabled", () -> "false");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("""
+                INSERT INTO users (username, email, password, role)
+                SELECT 'user' || g, 'user' || g || '@bank.test', 'password' || g, 'ROLE_USER'
+                FROM generate_series(1, ?) g
+                """, USERS);
+        jdbcTemplate.update("""
+                INSERT INTO cards (open_number, encrypted_number, last4, expiration_date, status,
+                                   balance_minor, balance_slots, user_id, version)
+                SELECT lpad(g::text, 16, '0'), '**** **** **** ' || lpad((g % 10000)::text, 4, '0'),
+                       lpad((g % 10000)::text, 4, '0'), DATE '2026-01-01' + g % 1826, 'ACTIVE',
+                       (g::bigint * 7919) % 100000000, 0, (SELECT min(id) FROM users) + g % ?, 0
+                FROM generate_series(1, ?) g
+                """, USERS, CARDS);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void listEndpointsUnderLoad() throws Exception {
+        for (String path : List.of("/api/v1/cards/all", "/api/v1/cards/filter-cards?limit=50&sort=expirationDate",
+                "/api/v1/users/all")) {
+            run(path);
+        }
+    }
+
+    private void run(String path) throws Exception {
+        ///-> Прогрев: планы запросов, классы, пул соединений
+        request(path);
+        Timer usage = meterRegistry.get("hikaricp.connections.usage").timer();
+        long usageCount = usage.count();
+        double usageMillis = usage.totalTime(TimeUnit.MILLISECONDS);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long begin = System.nanoTime();
+        List<Future<Long>> allocated = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            allocated.add(executor.submit(() -> {
+                long before = threads.getCurrentThreadAllocatedBytes();
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    request(path);
+                }
+                return threads.getCurrentThreadAllocatedBytes() - before;
+            }));
+        }
+        long bytes = 0;
+        for (Future<Long> future : allocated) {
+            bytes += future.get();
+        }
+        long nanos = System.nanoTime() - begin;
+        executor.shutdown();
+
+        long requests = (long) THREADS * REQUESTS_PER_THREAD;
+        long connections = usage.count() - usageCount;
+        log.info("{} (open-in-view={}): {} запросов/с, соединение на {} мс в среднем (max {} мс), {} КиБ на запрос",
+                path, OPEN_IN_VIEW,
+                String.format("%.0f", requests * 1e9 / nanos),
+                String.format("%.2f", (usage.totalTime(TimeUnit.MILLISECONDS) - usageMillis) / Math.max(1, connections)),
+                String.format("%.2f", usage.max(TimeUnit.MILLISECONDS)),
+                bytes / requests >> 10);
+        assertThat(connections).isGreaterThanOrEqualTo(requests);
+    }
+
+    private void request(String path) throws Exception {
+        mockMvc.perform(get(path).with(user("admin").roles("ADMIN")))
+                .andExpect(status().isOk());
+    }
+}
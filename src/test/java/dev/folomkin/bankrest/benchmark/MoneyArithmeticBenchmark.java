@@ -0,0 +1,85 @@
+package dev.folomkin.bankrest.benchmark;
+
+import dev.folomkin.bankrest.domain.model.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Арифметика перевода: BigDecimal против копеек в long.
+ * <p>
+ * Одна операция - проверка средств, списание и зачисление, как в
+ * стратегиях перевода. Аллокации видны с профайлером: -prof gc.
+ * <p>
+ * Запуск: mvn test-compile, затем main этого класса из IDE
+ * или java -cp target/test-classes:target/classes:&lt;classpath&gt; ...MoneyArithmeticBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyArithmeticBenchmark {
+
+    private BigDecimal decimalOut;
+    private BigDecimal decimalIn;
+    private BigDecimal decimalAmount;
+
+    private long minorOut;
+    private long minorIn;
+    private long minorAmount;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        decimalOut = new BigDecimal("1000000.00");
+        decimalIn = new BigDecimal("1000000.00");
+        decimalAmount = new BigDecimal("12.34");
+        minorOut = 100_000_000L;
+        minorIn = 100_000_000L;
+        minorAmount = 1_234L;
+    }
+
+    @Benchmark
+    public BigDecimal transferBigDecimal() {
+        ///-> Балансы меняются местами, чтобы средств хватало на всю итерацию
+        if (decimalOut.compareTo(decimalAmount) < 0) {
+            BigDecimal swap = decimalOut;
+            decimalOut = decimalIn;
+            decimalIn = swap;
+        }
+        decimalOut = decimalOut.subtract(decimalAmount);
+        decimalIn = decimalIn.add(decimalAmount);
+        return decimalIn;
+    }
+
+    @Benchmark
+    public long transferMinor() {
+        if (minorOut < minorAmount) {
+            long swap = minorOut;
+            minorOut = minorIn;
+            minorIn = swap;
+        }
+        minorOut = Money.subtract(minorOut, minorAmount);
+        minorIn = Money.add(minorIn, minorAmount);
+        return minorIn;
+    }
+
+    /// Цена границы JSON: перевод суммы запроса в копейки и баланса обратно
+    @Benchmark
+    public BigDecimal convertAtEdge() {
+        return Money.toDecimal(Money.toMinor(decimalAmount));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MoneyArithmeticBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
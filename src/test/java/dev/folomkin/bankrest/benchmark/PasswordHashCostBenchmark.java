@@ -0,0 +1,53 @@
+package dev.folomkin.bankrest.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка пароля BCrypt при разной стоимости (bank.auth.password.bcrypt-cost).
+ * <p>
+ * Время одной проверки - это процессорное время входа: workers потоков
+ * хеширования пропускают не больше workers / время входов в секунду.
+ * Каждая единица стоимости удваивает время.
+ * <p>
+ * Запуск: mvn test-compile, затем main этого класса из IDE
+ * или java -cp target/test-classes:target/classes:&lt;classpath&gt; ...PasswordHashCostBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHashCostBenchmark {
+
+    @Param({"8", "10", "12"})
+    private int cost;
+
+    private BCryptPasswordEncoder encoder;
+    private String hash;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        encoder = new BCryptPasswordEncoder(cost);
+        hash = encoder.encode("correct horse battery staple");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return encoder.matches("correct horse battery staple", hash);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PasswordHashCostBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
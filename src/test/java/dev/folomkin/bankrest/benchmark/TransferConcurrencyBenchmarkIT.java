@@ -0,0 +1,179 @@
+package dev.folomkin.bankrest.benchmark;
+
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.CardStatus;
+import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.exceptions.TransferConflictException;
+import dev.folomkin.bankrest.repository.CardRepository;
+import dev.folomkin.bankrest.repository.UserRepository;
+import dev.folomkin.bankrest.service.card.cache.CardResponseCache;
+import dev.folomkin.bankrest.service.card.index.CardNumberIndex;
+import dev.folomkin.bankrest.service.card.ledger.LedgerService;
+import dev.folomkin.bankrest.service.card.transfer.SlottedTransfer;
+import dev.folomkin.bankrest.service.card.transfer.TransferConcurrencyMode;
+import dev.folomkin.bankrest.service.card.transfer.TransferConcurrencyStrategy;
+import dev.folomkin.bankrest.service.card.transfer.TransferValidator;
+import dev.folomkin.bankrest.utils.CardBalanceServiceUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнение стратегий перевода под конкуренцией: THREADS потоков
+ * переводят деньги между HOT_CARDS картами одного пользователя.
+ * <p>
+ * Запуск: mvn test -Dtest=TransferConcurrencyBenchmarkIT
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@Testcontainers
+class TransferConcurrencyBenchmarkIT {
+
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 200;
+    private static final int HOT_CARDS = 4;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+        registry.add("spring.liquibase.enabled", () -> "false");
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> THREADS);
+    }
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransferValidator transferValidator;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private List<TransferConcurrencyStrategy> strategies;
+
+    @Autowired
+    private SlottedTransfer slottedTransfer;
+
+    @Autowired
+    private CardNumberIndex cardNumberIndex;
+
+    @Autowired
+    private CardResponseCache cardResponseCache;
+
+    @AfterEach
+    void cleanUp() {
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @ParameterizedTest
+    @EnumSource(TransferConcurrencyMode.class)
+    void compareStrategiesUnderContention(TransferConcurrencyMode mode) throws Exception {
+        ///-> Given: один пользователь и несколько "горячих" карт
+        User user = new User();
+        user.setUsername("bench_" + mode.name().toLowerCase());
+        user.setEmail(mode.name().toLowerCase() + "@bench.dev");
+        user.setPassword("password_" + mode.name());
+        userRepository.save(user);
+        AuthenticatedUser principal = AuthenticatedUser.of(user);
+
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < HOT_CARDS; i++) {
+            String last4 = String.format("%04d", 1000 + i);
+            cardRepository.save(new Card(null, "0000 0000 0000 " + last4, "**** **** **** " + last4,
+                    LocalDate.now().plusYears(3), CardStatus.ACTIVE, INITIAL_BALANCE, user));
+            numbers.add(last4);
+        }
+
+        CardBalanceServiceUtil util = new CardBalanceServiceUtil(
+                cardNumberIndex, cardResponseCache, transferValidator, ledgerService, transactionManager, strategies,
+                slottedTransfer, mode, 1);
+
+        ///-> When: все потоки стартуют одновременно
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Future<LatencyStats>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                LatencyStats stats = new LatencyStats(TRANSFERS_PER_THREAD);
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(HOT_CARDS);
+                    int to = (from + 1 + random.nextInt(HOT_CARDS - 1)) % HOT_CARDS;
+                    long begin = System.nanoTime();
+                    try {
+                        util.balanceChange(new CardBalanceChangeRequest(numbers.get(from), numbers.get(to), AMOUNT), principal);
+                    } catch (TransferConflictException e) {
+                        conflicts.incrementAndGet();
+                    }
+                    stats.record(System.nanoTime() - begin);
+                }
+                return stats;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        List<LatencyStats> parts = new ArrayList<>();
+        for (Future<LatencyStats> future : futures) {
+            parts.add(future.get());
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+        executor.shutdown();
+
+        ///-> Then: деньги не потерялись и не появились из ниоткуда
+        LatencyStats total = LatencyStats.merge(parts);
+        double throughput = total.count() * 1_000_000_000.0 / elapsedNanos;
+        log.info("{}: {} переводов, {} tx/s, p50 {} мкс, p99 {} мкс, конфликтов {}",
+                mode, total.count(), String.format("%.1f", throughput),
+                total.percentileMicros(50), total.percentileMicros(99), conflicts.get());
+
+        BigDecimal sum = cardRepository.findAllCardsByUserId(user.getId()).stream()
+                .map(Card::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat(sum).isEqualByComparingTo(INITIAL_BALANCE.multiply(BigDecimal.valueOf(HOT_CARDS)));
+    }
+}
@@ -0,0 +1,73 @@
+package dev.folomkin.bankrest.benchmark;
+
+import dev.folomkin.bankrest.service.card.journal.TransferJournal;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Пропускная способность добавления записей в журнал переводов.
+ * <p>
+ * Запуск: mvn test-compile, затем main этого класса из IDE
+ * или java -cp target/test-classes:target/classes:&lt;classpath&gt; ...TransferJournalAppendBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferJournalAppendBenchmark {
+
+    /// Сегменты разного размера: чаще переключение - больше создаваемых файлов
+    @Param({"65536", "1048576"})
+    int recordsPerSegment;
+
+    private Path directory;
+    private TransferJournal journal;
+    private long counter;
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("journal-bench");
+        journal = new TransferJournal(directory, recordsPerSegment, 1);
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public long append() {
+        counter++;
+        return journal.append(1L, counter & 1023, (counter + 1) & 1023, 100L);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long appendContended() {
+        return journal.append(1L, 1L, 2L, 100L);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TransferJournalAppendBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,157 @@
+package dev.folomkin.bankrest.benchmark;
+
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.CardStatus;
+import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.repository.CardRepository;
+import dev.folomkin.bankrest.repository.UserRepository;
+import dev.folomkin.bankrest.service.card.transfer.TransferSequencer;
+import dev.folomkin.bankrest.utils.CardBalanceServiceUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнение пропускной способности переводов по "горячим" картам:
+ * каждый перевод в своей транзакции против очереди с групповым коммитом.
+ * <p>
+ * Запуск: mvn test -Dtest=TransferSequencerBenchmarkIT
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@Testcontainers
+class TransferSequencerBenchmarkIT {
+
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 200;
+    private static final int CARDS = 4;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("100000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> "16");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+        registry.add("spring.liquibase.enabled", () -> "false");
+        registry.add("bank.transfer.sequencer.enabled", () -> "true");
+    }
+
+    @Autowired
+    private CardBalanceServiceUtil cardBalanceServiceUtil;
+
+    @Autowired
+    private TransferSequencer transferSequencer;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    private AuthenticatedUser principal;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("bench_sequencer");
+        user.setEmail("sequencer@bench.dev");
+        user.setPassword("password");
+        userRepository.save(user);
+        principal = AuthenticatedUser.of(user);
+
+        for (int i = 0; i < CARDS; i++) {
+            String last4 = String.format("%04d", 3000 + i);
+            cardRepository.save(new Card(null, "0000 0000 0000 " + last4, "**** **** **** " + last4,
+                    LocalDate.now().plusYears(3), CardStatus.ACTIVE, INITIAL_BALANCE, user));
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void sequencerShouldOutperformTransactionPerTransfer() throws Exception {
+        long directNanos = run(request -> CompletableFuture.completedFuture(
+                cardBalanceServiceUtil.balanceChange(request, principal)));
+        long sequencedNanos = run(request -> transferSequencer.submit(request, principal));
+
+        int total = THREADS * TRANSFERS_PER_THREAD;
+        log.info("{} переводов в {} потоков: транзакция на перевод {} tx/s, очередь с групповым коммитом {} tx/s",
+                total, THREADS,
+                String.format("%.0f", total * 1e9 / directNanos),
+                String.format("%.0f", total * 1e9 / sequencedNanos));
+
+        BigDecimal sum = cardRepository.findAllCardsByUserId(user.getId()).stream()
+                .map(Card::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat(sum).isEqualByComparingTo(INITIAL_BALANCE.multiply(BigDecimal.valueOf(CARDS)));
+    }
+
+    private long run(Transfer transfer) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long begin = System.nanoTime();
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int offset = t;
+                workers.add(executor.submit(() -> {
+                    List<CompletableFuture<CardBalanceChangeResponse>> pending = new ArrayList<>();
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        int from = (offset + i) % CARDS;
+                        pending.add(transfer.apply(new CardBalanceChangeRequest(
+                                String.format("%04d", 3000 + from),
+                                String.format("%04d", 3000 + (from + 1) % CARDS),
+                                AMOUNT)));
+                    }
+                    pending.forEach(CompletableFuture::join);
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            return System.nanoTime() - begin;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private interface Transfer {
+        CompletableFuture<CardBalanceChangeResponse> apply(CardBalanceChangeRequest request);
+    }
+}
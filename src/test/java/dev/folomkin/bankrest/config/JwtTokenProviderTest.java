@@ -0,0 +1,51 @@
+package dev.folomkin.bankrest.config;
+
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtTokenProviderTest {
+
+    private JwtTokenProvider jwtTokenProvider;
+
+    @BeforeEach
+    void setUp() {
+        jwtTokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(jwtTokenProvider, "secret", "test-signing-key-test-signing-key-test-signing-key");
+        ReflectionTestUtils.setField(jwtTokenProvider, "validityInMilliseconds", 60_000L);
+        jwtTokenProvider.init();
+    }
+
+    @Test
+    void toPrincipal_ShouldRestoreUserFromClaims() {
+        // Given
+        AuthenticatedUser user = new AuthenticatedUser(42L, "username", List.of("ROLE_USER", "ROLE_ADMIN"));
+        String token = jwtTokenProvider.generateToken(user);
+
+        // When
+        Optional<AuthenticatedUser> principal = jwtTokenProvider.toPrincipal(jwtTokenProvider.extractAllClaims(token));
+
+        // Then
+        assertThat(principal).contains(user);
+        assertThat(principal.get().getName()).isEqualTo("username");
+        Object roles = jwtTokenProvider.extractClaim(token, claims -> claims.get(JwtTokenProvider.ROLES_CLAIM));
+        assertThat(roles).isEqualTo(List.of("USER", "ADMIN"));
+    }
+
+    @Test
+    void toPrincipal_ShouldReturnEmpty_WhenTokenHasNoUserId() {
+        // Given
+        Claims claims = Jwts.claims().subject("username").add(JwtTokenProvider.ROLES_CLAIM, List.of("USER")).build();
+
+        // When / Then
+        assertThat(jwtTokenProvider.toPrincipal(claims)).isEmpty();
+    }
+}
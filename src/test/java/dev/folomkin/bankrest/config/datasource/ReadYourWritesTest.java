@@ -0,0 +1,76 @@
+package dev.folomkin.bankrest.config.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.TransactionExecution;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReadYourWritesTest {
+
+    private final ReadYourWrites readYourWrites = new ReadYourWrites(Duration.ofMinutes(1), 100);
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void afterCommit_ShouldRecordWrite_OnlyForReadWriteTransaction() {
+        // Given
+        authenticate("writer");
+        TransactionExecution readOnly = transaction(true);
+        TransactionExecution readWrite = transaction(false);
+
+        // When
+        readYourWrites.afterCommit(readOnly, null);
+        boolean afterRead = readYourWrites.wroteRecently("writer");
+        readYourWrites.afterCommit(readWrite, null);
+
+        // Then
+        assertThat(afterRead).isFalse();
+        assertThat(readYourWrites.wroteRecently("writer")).isTrue();
+        assertThat(readYourWrites.wroteRecently("reader")).isFalse();
+    }
+
+    @Test
+    void afterCommit_ShouldIgnoreFailedCommit() {
+        // Given
+        authenticate("writer");
+
+        // When
+        readYourWrites.afterCommit(transaction(false), new IllegalStateException("commit failed"));
+
+        // Then
+        assertThat(readYourWrites.wroteRecently("writer")).isFalse();
+    }
+
+    @Test
+    void onPrimary_ShouldRestorePreviousRouting() {
+        // When
+        boolean inside = ReadYourWrites.onPrimary(ReadYourWrites::primaryRequired);
+
+        // Then
+        assertThat(inside).isTrue();
+        assertThat(ReadYourWrites.primaryRequired()).isFalse();
+    }
+
+    private static TransactionExecution transaction(boolean readOnly) {
+        TransactionExecution transaction = mock(TransactionExecution.class);
+        when(transaction.isReadOnly()).thenReturn(readOnly);
+        return transaction;
+    }
+
+    private static void authenticate(String username) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                username, null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+    }
+}
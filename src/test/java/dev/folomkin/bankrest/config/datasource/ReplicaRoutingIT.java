@@ -0,0 +1,139 @@
+package dev.folomkin.bankrest.config.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Маршрутизация соединений между основной базой и репликой.
+ * <p>
+ * Реплику заменяет второй независимый Postgres: репликация здесь не
+ * проверяется, только выбор базы. Базы различаются именем.
+ * <p>
+ * Запуск: mvn test -Dtest=ReplicaRoutingIT
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@Testcontainers
+class ReplicaRoutingIT {
+
+    @Container
+    static PostgreSQLContainer<?> primary = new PostgreSQLContainer<>("postgres:17")
+            .withDatabaseName("primarydb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Container
+    static PostgreSQLContainer<?> replica = new PostgreSQLContainer<>("postgres:17")
+            .withDatabaseName("replicadb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", primary::getJdbcUrl);
+        registry.add("spring.datasource.username", primary::getUsername);
+        registry.add("spring.datasource.password", primary::getPassword);
+        registry.add("bank.datasource.replica.urls", replica::getJdbcUrl);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        registry.add("spring.liquibase.enabled", () -> "true");
+        registry.add("bank.card-index.enabled", () -> "false");
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransactionsShouldUseReplicaAndOthersPrimary() {
+        // When
+        String readOnly = database(true);
+        String readWrite = database(false);
+
+        // Then
+        assertThat(readOnly).isEqualTo("replicadb");
+        assertThat(readWrite).isEqualTo("primarydb");
+        assertThat(meterRegistry.get("bank.datasource.reads").tags("pool", "replica-1").counter().count())
+                .isPositive();
+    }
+
+    @Test
+    void userShouldReadPrimaryAfterOwnWrite() throws Exception {
+        // Given: запись отмечается коммитом транзакции, а не методом запроса
+        authenticate("writer");
+        database(false);
+
+        // When
+        String writerRead = duringRequest("writer");
+        String otherRead = duringRequest("reader");
+
+        // Then
+        assertThat(writerRead).isEqualTo("primarydb");
+        assertThat(otherRead).isEqualTo("replicadb");
+        assertThat(database(true)).isEqualTo("replicadb");
+    }
+
+    @Test
+    void onPrimaryShouldReadPrimaryWithoutOwnWrite() {
+        // When
+        String read = ReadYourWrites.onPrimary(() -> database(true));
+
+        // Then
+        assertThat(read).isEqualTo("primarydb");
+        assertThat(database(true)).isEqualTo("replicadb");
+    }
+
+    private String duringRequest(String username) throws Exception {
+        authenticate(username);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/users/my-cards");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        readYourWrites.preHandle(request, response, null);
+        try {
+            return database(true);
+        } finally {
+            readYourWrites.afterCompletion(request, response, null, null);
+        }
+    }
+
+    private String database(boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> jdbcTemplate.queryForObject("SELECT current_database()", String.class));
+    }
+
+    private static void authenticate(String username) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                username, null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+    }
+}
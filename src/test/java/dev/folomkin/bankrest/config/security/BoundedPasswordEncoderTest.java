@@ -0,0 +1,62 @@
+package dev.folomkin.bankrest.config.security;
+
+import dev.folomkin.bankrest.exceptions.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundedPasswordEncoderTest {
+
+    @Test
+    void matches_ShouldHashOnExecutor_AndRecordMetrics() throws Exception {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(4, 1, 10, Duration.ofSeconds(5), meterRegistry)) {
+            String hash = encoder.encode("password");
+
+            // When
+            boolean matches = encoder.matches("password", hash);
+
+            // Then
+            assertThat(matches).isTrue();
+            assertThat(hash).startsWith("$2a$04$");
+            assertThat(meterRegistry.get("bank.auth.password.hash").tag("operation", "matches").timer().count())
+                    .isEqualTo(1);
+            assertThat(meterRegistry.get("bank.auth.password.hash").tag("operation", "encode").timer().count())
+                    .isEqualTo(1);
+            ///-> Счетчик выполненных задач пул увеличивает уже после ответа future, поэтому проверяется только наличие метрик пула
+            assertThat(meterRegistry.find("executor.pool.size").tag("name", "password-hashing").gauge()).isNotNull();
+        }
+    }
+
+    @Test
+    void upgradeEncoding_ShouldRequestRehash_WhenCostDiffers() throws Exception {
+        // Given
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(6, 1, 10, Duration.ofSeconds(5),
+                new SimpleMeterRegistry())) {
+
+            // When / Then
+            assertThat(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password"))).isTrue();
+            assertThat(encoder.upgradeEncoding(new BCryptPasswordEncoder(8).encode("password"))).isTrue();
+            assertThat(encoder.upgradeEncoding(encoder.encode("password"))).isFalse();
+        }
+    }
+
+    @Test
+    void encode_ShouldFailFast_WhenHashingDoesNotFitTimeout() throws Exception {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(12, 1, 10, Duration.ofMillis(1), meterRegistry)) {
+
+            // When / Then
+            assertThatThrownBy(() -> encoder.encode("password")).isInstanceOf(ServiceOverloadedException.class);
+            assertThat(meterRegistry.get("bank.auth.password.rejected").tag("reason", "timeout").counter().count())
+                    .isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package dev.folomkin.bankrest.config.security;
+
+import dev.folomkin.bankrest.config.JwtTokenProvider;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JwtAuthenticationCacheTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private JwtTokenProvider jwtTokenProvider;
+    private TokenRevocations tokenRevocations;
+    private JwtAuthenticationCache cache;
+
+    private final AuthenticatedUser user = new AuthenticatedUser(1L, "username", List.of("ROLE_USER"));
+
+    @BeforeEach
+    void setUp() {
+        jwtTokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(jwtTokenProvider, "secret", "test-signing-key-test-signing-key-test-signing-key");
+        ReflectionTestUtils.setField(jwtTokenProvider, "validityInMilliseconds", 60_000L);
+        jwtTokenProvider.init();
+        jwtTokenProvider = spy(jwtTokenProvider);
+        tokenRevocations = new TokenRevocations(jdbcTemplate, Duration.ofSeconds(5), 100);
+        cache = new JwtAuthenticationCache(jwtTokenProvider, tokenRevocations, new SimpleMeterRegistry(), 100);
+    }
+
+    @Test
+    void get_ShouldVerifyTokenOnce_WhenTokenRepeats() {
+        // Given
+        String token = jwtTokenProvider.generateToken(user);
+
+        // When
+        JwtAuthenticationCache.VerifiedToken first = cache.get(token);
+        JwtAuthenticationCache.VerifiedToken second = cache.get(token);
+
+        // Then
+        assertThat(first.principal()).isEqualTo(user);
+        assertThat(second).isSameAs(first);
+        verify(jwtTokenProvider, times(1)).extractAllClaims(token);
+    }
+
+    @Test
+    void get_ShouldReturnNull_WhenCachedTokenRevoked() throws Exception {
+        // Given
+        String token = jwtTokenProvider.generateToken(user);
+        cache.get(token);
+
+        // When
+        tokenRevocations.revokeAll(user.id());
+
+        // Then
+        assertThat(cache.get(token)).isNull();
+        ///-> Токен, выданный после отзыва, принимается: время выдачи сравнивается с точностью до миллисекунды
+        Thread.sleep(2);
+        assertThat(cache.get(jwtTokenProvider.generateToken(user))).isNotNull();
+    }
+
+    @Test
+    void isRevoked_ShouldTreatSecondPrecisionIssueTimeInRevocationSecondAsRevoked() {
+        // Given: токен без iat_ms, выданный в секунду отзыва
+        tokenRevocations.revokeAll(user.id());
+        Instant issuedAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        // When / Then
+        assertThat(tokenRevocations.isRevoked(user.id(), issuedAt)).isTrue();
+        assertThat(tokenRevocations.isRevoked(user.id(), Instant.now().plusMillis(1))).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void isRevoked_ShouldSeeRevocationStoredByAnotherInstance() {
+        // Given: выход выполнен на другом экземпляре и записан в базу
+        Instant revoked = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(user.id())))
+                .thenReturn(List.of(Timestamp.from(revoked)));
+
+        // When / Then
+        assertThat(tokenRevocations.isRevoked(user.id(), revoked.minusMillis(1))).isTrue();
+        assertThat(tokenRevocations.isRevoked(user.id(), revoked.plusMillis(1))).isFalse();
+    }
+
+    @Test
+    void get_ShouldThrowAndNotCache_WhenSignatureInvalid() {
+        // Given
+        String token = jwtTokenProvider.generateToken(user);
+        String forged = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        // When / Then
+        assertThatThrownBy(() -> cache.get(forged)).isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> cache.get(forged)).isInstanceOf(JwtException.class);
+    }
+}
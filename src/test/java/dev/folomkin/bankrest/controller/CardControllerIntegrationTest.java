@@ -6,7 +6,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.folomkin.bankrest.domain.dto.card.CardRequest;
 import dev.folomkin.bankrest.domain.dto.card.CardResponse;
 import dev.folomkin.bankrest.domain.dto.user.UserResponse;
-import dev.folomkin.bankrest.domain.model.Card;
 import dev.folomkin.bankrest.domain.model.CardStatus;
 import dev.folomkin.bankrest.domain.model.Role;
 import dev.folomkin.bankrest.domain.model.User;
@@ -139,9 +138,8 @@ public class CardControllerIntegrationTest {
     void shouldCreateCard() throws JsonProcessingException {
         User user = userRepository.findByEmail("email@gmail.com");
 
-        Card getCard = cardRepository.findCardByLast4("9100");
         int cardNumberCounter = 100;
-        if (getCard != null) {
+        if (cardRepository.existsByLast4("9100")) {
             cardNumberCounter++;
         }
 
@@ -4,9 +4,9 @@ package dev.folomkin.bankrest.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.folomkin.bankrest.domain.dto.card.CardRequest;
 import dev.folomkin.bankrest.domain.dto.card.CardResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
 import dev.folomkin.bankrest.domain.dto.user.UserResponse;
 import dev.folomkin.bankrest.domain.model.CardStatus;
-import dev.folomkin.bankrest.domain.model.User;
 import dev.folomkin.bankrest.exceptions.NoSuchElementException;
 import dev.folomkin.bankrest.service.card.CardService;
 import org.junit.jupiter.api.BeforeEach;
@@ -97,7 +97,7 @@ public class CardControllerMockMvcTest {
                 BigDecimal.valueOf(123.4),
                 userResponse);
         String json = objectMapper.writeValueAsString(request);
-        when(cardService.createCard(any(CardRequest.class), any(User.class))).thenReturn(cardResponse);
+        when(cardService.createCard(any(CardRequest.class), any(AuthenticatedUser.class))).thenReturn(cardResponse);
         mockMvc.perform(post("/api/v1/cards/create-card")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(json)).andExpect(status().isCreated());
@@ -164,7 +164,7 @@ public class CardControllerMockMvcTest {
                 .andExpect(jsonPath("$.encryptedNumber").value(cardResponse.encryptedNumber()))
                 .andExpect(jsonPath("$.expirationDate").value(cardResponse.expirationDate().toString()))
                 .andExpect(jsonPath("$.balance").value(cardResponse.balance().toString()))
-                .andExpect(jsonPath("$.owner.id").value(cardResponse.owner().id()));
+                .andExpect(jsonPath("$.owner.id").value(cardResponse.owner().getId()));
     }
 
 
@@ -200,7 +200,7 @@ public class CardControllerMockMvcTest {
                 .andExpect(jsonPath("$.encryptedNumber").value(cardResponse.encryptedNumber()))
                 .andExpect(jsonPath("$.expirationDate").value(cardResponse.expirationDate().toString()))
                 .andExpect(jsonPath("$.balance").value(cardResponse.balance().toString()))
-                .andExpect(jsonPath("$.owner.id").value(cardResponse.owner().id()));
+                .andExpect(jsonPath("$.owner.id").value(cardResponse.owner().getId()));
     }
 
 
@@ -233,8 +233,8 @@ class CardControllerTest {
         user.setEmail("email@email.com");
         user.setCreatedAt(LocalDateTime.now());
         user.setRole(Role.ROLE_USER);
-        when(cardRepository.findCardByLast4("4444"))
-                .thenReturn(new Card(
+        when(cardRepository.findById(1L))
+                .thenReturn(Optional.of(new Card(
                         1L,
                         "1111 2222 3333 4444",
                         "**** **** **** 4444",
@@ -242,7 +242,7 @@ class CardControllerTest {
                         CardStatus.ACTIVE,
                         BigDecimal.valueOf(123.4),
                         user
-                ));
+                )));
         mockMvc.perform(get("/api/v1/cards/card-number/{cardNumber}", 1L))
                 .andExpect(status().isOk());
     }
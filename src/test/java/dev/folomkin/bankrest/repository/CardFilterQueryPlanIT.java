@@ -0,0 +1,242 @@
+package dev.folomkin.bankrest.repository;
+
+import dev.folomkin.bankrest.domain.model.CardStatus;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Планы запросов поиска карт: каждая комбинация фильтров
+ * {@link CardSpecifications#filter(CardFilter)} читает карты по индексу,
+ * а не полным просмотром таблицы.
+ * <p>
+ * Схема и индексы создаются Liquibase. Планы выполненных запросов с
+ * реальными параметрами пишет в лог сервера расширение auto_explain,
+ * тест вырезает их между двумя маркерами.
+ * <p>
+ * Запуск: mvn test -Dtest=CardFilterQueryPlanIT
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CardFilterQueryPlanIT {
+
+    private static final int USERS = 20_000;
+    private static final int CARDS = 200_000;
+
+    /// Сортировка по сроку действия, как при поиске карт, истекающих в следующем месяце
+    private static final PageRequest PAGE = PageRequest.of(0, 50, Sort.by("expirationDate", "id"));
+
+    /// Сортировки пагинации по курсору и индексы, по которым читается следующая страница
+    private static final Map<String, KeysetSort<CardView>> SCROLL_SORTS = Map.of(
+            "expirationDate", new KeysetSort<>("expirationDate", CardView::expirationDate, LocalDate::parse, CardView::id),
+            "balanceMinor", new KeysetSort<>("balanceMinor", CardView::balanceMinor, Long::valueOf, CardView::id));
+    private static final Map<String, String> SCROLL_INDEXES = Map.of(
+            "expirationDate", "idx_cards_expiration_date_id",
+            "balanceMinor", "idx_cards_balance_minor_id");
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test")
+            .withCommand("postgres",
+                    "-c", "shared_preload_libraries=auto_explain",
+                    "-c", "auto_explain.log_min_duration=0");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        registry.add("spring.liquibase.enabled", () -> "true");
+        registry.add("bank.card-index.enabled", () -> "false");
+    }
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int marker;
+
+    enum Filter {
+        STATUS, EXPIRY, BALANCE, OWNER
+    }
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("""
+                INSERT INTO users (username, email, password, role)
+                SELECT 'user' || g, 'user' || g || '@bank.test', 'password' || g, 'ROLE_USER'
+                FROM generate_series(1, ?) g
+                """, USERS);
+        ///-> Срок действия равномерно на 5 лет, BLOCKREQUEST у 0,05% карт, баланс до 1 млн рублей,
+        ///-> у 2,5% карт нулевой баланс
+        jdbcTemplate.update("""
+                INSERT INTO cards (open_number, encrypted_number, last4, expiration_date, status,
+                                   balance_minor, balance_slots, user_id, version)
+                SELECT lpad(g::text, 16, '0'), 'enc' || g, lpad((g % 10000)::text, 4, '0'),
+                       DATE '2026-01-01' + g % 1826,
+                       CASE WHEN g % 2000 = 0 THEN 'BLOCKREQUEST' WHEN g % 10 = 0 THEN 'BLOCKED' ELSE 'ACTIVE' END,
+                       CASE WHEN g % 40 = 0 THEN 0 ELSE (g::bigint * 7919) % 100000000 END, 0, (SELECT min(id) FROM users) + g % ?, 0
+                FROM generate_series(1, ?) g
+                """, USERS, CARDS);
+        jdbcTemplate.execute("ANALYZE users");
+        jdbcTemplate.execute("ANALYZE cards");
+    }
+
+    static Stream<Set<Filter>> filterCombinations() {
+        List<Set<Filter>> combinations = new ArrayList<>();
+        Filter[] filters = Filter.values();
+        for (int mask = 1; mask < 1 << filters.length; mask++) {
+            Set<Filter> combination = EnumSet.noneOf(Filter.class);
+            for (int i = 0; i < filters.length; i++) {
+                if ((mask & 1 << i) != 0) {
+                    combination.add(filters[i]);
+                }
+            }
+            combinations.add(combination);
+        }
+        return combinations.stream();
+    }
+
+    @ParameterizedTest
+    @MethodSource("filterCombinations")
+    void filterUsesIndex(Set<Filter> filters) {
+        // Given
+        CardFilter filter = new CardFilter(
+                null,
+                null,
+                filters.contains(Filter.STATUS) ? CardStatus.BLOCKREQUEST : null,
+                filters.contains(Filter.EXPIRY) ? LocalDate.of(2027, 3, 1) : null,
+                filters.contains(Filter.EXPIRY) ? LocalDate.of(2027, 3, 31) : null,
+                filters.contains(Filter.BALANCE) ? 10_000_000L : null,
+                filters.contains(Filter.BALANCE) ? 10_050_000L : null,
+                filters.contains(Filter.OWNER) ? "User1234" : null);
+
+        // When
+        String plan = explain(() -> cardRepository.findBy(CardSpecifications.filter(filter), q -> q.slice(PAGE)));
+
+        // Then
+        assertThat(plan).doesNotContain("Seq Scan on cards");
+        assertThat(plan).containsAnyOf(expectedIndexes(filters));
+        if (filters.contains(Filter.OWNER)) {
+            assertThat(plan).doesNotContain("Seq Scan on users");
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"expirationDate", "balanceMinor"})
+    void cursorPageSeeksCompositeIndex(String field) {
+        // Given: курсор внутри группы карт с одним значением поля (~110 карт на день, 5 000 с нулевым балансом)
+        KeysetSort<CardView> sort = SCROLL_SORTS.get(field);
+        List<CardView> skipped = cardRepository.findViews(sort.after(null), sort.sort(), 1_000);
+        String cursor = sort.cursorAfter(skipped.get(skipped.size() - 1));
+
+        // When
+        String plan = explain(() -> cardRepository.findViews(sort.after(cursor), sort.sort(), 51));
+
+        // Then: страница - начало диапазона индекса, без сортировки и без перебора группы
+        assertThat(plan).contains(SCROLL_INDEXES.get(field));
+        assertThat(plan).contains("Index Cond: (ROW(");
+        assertThat(plan).doesNotContain("Sort Key");
+        assertThat(plan).doesNotContain("Seq Scan on cards");
+    }
+
+    @Test
+    void balanceFilterIncludesSlotBalances() {
+        // Given: в строке карты 1 копейка, остальное - в слотах подбаланса
+        jdbcTemplate.update("""
+                INSERT INTO cards (open_number, encrypted_number, last4, expiration_date, status,
+                                   balance_minor, balance_slots, user_id, version)
+                VALUES ('9999000000000001', 'enc-slotted', 'SLOT', DATE '2027-03-15', 'ACTIVE',
+                        1, 2, (SELECT min(id) FROM users), 0)
+                """);
+        jdbcTemplate.update("""
+                INSERT INTO card_balance_slots (card_id, slot, balance_minor)
+                SELECT id, s, 5010000 FROM cards, generate_series(0, 1) s WHERE last4 = 'SLOT'
+                """);
+        CardFilter inRange = new CardFilter(null, "SLOT", null, null, null, 10_000_000L, 10_050_000L, null);
+        CardFilter rowOnly = new CardFilter(null, "SLOT", null, null, null, 0L, 100L, null);
+
+        // When / Then
+        assertThat(cardRepository.findAll(CardSpecifications.filter(inRange))).hasSize(1);
+        assertThat(cardRepository.findAll(CardSpecifications.filter(rowOnly))).isEmpty();
+    }
+
+    ///-> Индексы, которыми может обслуживаться хотя бы один фильтр комбинации
+    private static String[] expectedIndexes(Set<Filter> filters) {
+        List<String> indexes = new ArrayList<>();
+        if (filters.contains(Filter.STATUS)) {
+            indexes.add("idx_cards_status_expiration_date");
+        }
+        if (filters.contains(Filter.EXPIRY)) {
+            indexes.add("idx_cards_status_expiration_date");
+            indexes.add("idx_cards_expiration_date_id");
+        }
+        if (filters.contains(Filter.BALANCE)) {
+            indexes.add("idx_cards_balance_minor_id");
+        }
+        if (filters.contains(Filter.OWNER)) {
+            indexes.add("idx_users_email_lower_pattern");
+            indexes.add("idx_users_username_lower_pattern");
+        }
+        return indexes.toArray(String[]::new);
+    }
+
+    /// План запросов, выполненных action, из лога auto_explain
+    private String explain(Runnable action) {
+        String start = "plan-marker-start-" + marker + "-";
+        String end = "plan-marker-end-" + marker++ + "-";
+        jdbcTemplate.queryForObject("SELECT '" + start + "'", String.class);
+        action.run();
+        jdbcTemplate.queryForObject("SELECT '" + end + "'", String.class);
+
+        ///-> Лог контейнера доходит с задержкой: ждем маркер конца
+        long deadline = System.currentTimeMillis() + 10_000;
+        String logs = postgres.getLogs();
+        while (logs.lastIndexOf(end) < 0 && System.currentTimeMillis() < deadline) {
+            sleep();
+            logs = postgres.getLogs();
+        }
+        int from = logs.lastIndexOf(start);
+        int to = logs.lastIndexOf(end);
+        assertThat(from).as("маркеры auto_explain в логе").isNotNegative().isLessThan(to);
+        return logs.substring(from, to);
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
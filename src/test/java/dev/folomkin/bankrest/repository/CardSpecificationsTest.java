@@ -0,0 +1,17 @@
+package dev.folomkin.bankrest.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardSpecificationsTest {
+
+    @Test
+    void likePrefix_lowercasesAndEscapesWildcards() {
+        // When
+        String pattern = CardSpecifications.likePrefix("Ivan_100%\\");
+
+        // Then
+        assertThat(pattern).isEqualTo("ivan\\_100\\%\\\\%");
+    }
+}
@@ -0,0 +1,53 @@
+package dev.folomkin.bankrest.repository;
+
+import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetSortTest {
+
+    private final KeysetSort<User> byUsername =
+            new KeysetSort<>("username", User::getUsername, Function.identity(), User::getId);
+    private final KeysetSort<User> byId =
+            new KeysetSort<>(KeysetSort.ID, User::getId, Long::valueOf, User::getId);
+
+    @Test
+    void sort_addsIdAfterField() {
+        // Then
+        assertThat(byUsername.sort()).isEqualTo(Sort.by("username", "id"));
+        assertThat(byId.sort()).isEqualTo(Sort.by("id"));
+    }
+
+    @Test
+    void cursorAfter_isAcceptedBySameSortOnly() {
+        // Given
+        User last = new User();
+        last.setId(42L);
+        last.setUsername("ivan:petrov");
+
+        // When
+        String cursor = byUsername.cursorAfter(last);
+
+        // Then
+        assertThat(byUsername.after(cursor)).isNotNull();
+        assertThatThrownBy(() -> byId.after(cursor))
+                .isInstanceOf(InvalidCardFieldException.class);
+    }
+
+    @Test
+    void after_rejectsMalformedCursorAndUnknownSort() {
+        // Then
+        assertThatThrownBy(() -> byUsername.after("not a cursor"))
+                .isInstanceOf(InvalidCardFieldException.class);
+        assertThatThrownBy(() -> KeysetSort.select(Map.of(KeysetSort.ID, byId), "createdAt"))
+                .isInstanceOf(InvalidCardFieldException.class)
+                .hasMessageContaining("id");
+    }
+}
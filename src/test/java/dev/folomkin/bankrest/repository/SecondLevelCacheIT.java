@@ -0,0 +1,125 @@
+package dev.folomkin.bankrest.repository;
+
+import dev.folomkin.bankrest.domain.model.Role;
+import dev.folomkin.bankrest.domain.model.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Кеш второго уровня: повторные поиски роли и пользователя по natural id
+ * не обращаются к базе.
+ * <p>
+ * Запуск: mvn test -Dtest=SecondLevelCacheIT
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@Testcontainers
+class SecondLevelCacheIT {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        registry.add("spring.liquibase.enabled", () -> "true");
+        registry.add("bank.card-index.enabled", () -> "false");
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("""
+                INSERT INTO users (username, email, password, role)
+                VALUES ('cached', 'cached@bank.test', 'password', 'ROLE_USER')
+                ON CONFLICT DO NOTHING
+                """);
+        jdbcTemplate.update("""
+                INSERT INTO user_roles (user_id, role_id)
+                SELECT u.id, r.id FROM users u, roles r
+                WHERE u.username = 'cached' AND r.name = 'ROLE_USER'
+                ON CONFLICT DO NOTHING
+                """);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void userWithRolesShouldBeReadFromCacheAfterFirstLookup() {
+        // Given
+        loadUserWithRoles();
+        statistics.clear();
+
+        // When
+        User user = loadUserWithRoles();
+
+        // Then
+        assertThat(user.getRoles()).extracting(Role::getName).containsExactly("ROLE_USER");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getNaturalIdStatistics(User.class.getName()).getCacheHitCount()).isEqualTo(1);
+        assertThat(statistics.getCacheRegionStatistics("users").getHitCount()).isEqualTo(1);
+        assertThat(statistics.getCacheRegionStatistics("user-roles").getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void roleShouldBeReadFromCacheAfterFirstLookup() {
+        // Given
+        roleRepository.findCachedByName("ROLE_USER").orElseThrow();
+        statistics.clear();
+
+        // When
+        Role role = roleRepository.findCachedByName("ROLE_USER").orElseThrow();
+
+        // Then
+        assertThat(role.getName()).isEqualTo("ROLE_USER");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getCacheRegionStatistics("roles").getHitCount()).isEqualTo(1);
+    }
+
+    ///-> Каждый раз новая транзакция и новый контекст персистентности: попадание возможно только в кеш второго уровня
+    private User loadUserWithRoles() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return transaction.execute(status -> {
+            User user = userRepository.findCachedByUsername("cached").orElseThrow();
+            user.getRoles().size();
+            return user;
+        });
+    }
+}
@@ -2,28 +2,45 @@ package dev.folomkin.bankrest.service.card;
 
 import dev.folomkin.bankrest.domain.dto.card.CardRequest;
 import dev.folomkin.bankrest.domain.dto.card.CardResponse;
+import dev.folomkin.bankrest.domain.dto.card.CardSearchRequest;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
 import dev.folomkin.bankrest.domain.dto.user.UserResponse;
+import dev.folomkin.bankrest.domain.mapper.CardMapper;
 import dev.folomkin.bankrest.domain.model.Card;
 import dev.folomkin.bankrest.domain.model.CardStatus;
 import dev.folomkin.bankrest.domain.model.Role;
 import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
 import dev.folomkin.bankrest.exceptions.NoSuchElementException;
 import dev.folomkin.bankrest.repository.CardRepository;
+import dev.folomkin.bankrest.service.card.cache.CardResponseCache;
+import dev.folomkin.bankrest.service.card.index.CardNumberIndex;
+import dev.folomkin.bankrest.service.card.journal.JournalTransferEngine;
+import dev.folomkin.bankrest.service.card.ledger.LedgerService;
+import dev.folomkin.bankrest.service.card.ledger.TransferHistoryService;
+import dev.folomkin.bankrest.service.card.transfer.BalanceSlotService;
 import dev.folomkin.bankrest.utils.CardSaveServiceUtil;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.SliceImpl;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.when;
@@ -34,9 +51,30 @@ class CardServiceImplTest {
     @Mock
     private CardRepository cardRepository;
 
+    @Mock
+    private CardMapper cardMapper;
+
     @Mock
     private CardSaveServiceUtil cardSaveServiceUtil;
 
+    @Mock
+    private JournalTransferEngine journalTransferEngine;
+
+    @Mock
+    private BalanceSlotService balanceSlotService;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private TransferHistoryService transferHistoryService;
+
+    @Mock
+    private CardNumberIndex cardNumberIndex;
+
+    @Mock
+    private CardResponseCache cardResponseCache;
+
     @InjectMocks
     private CardServiceImpl cardService;
 
@@ -67,7 +105,10 @@ class CardServiceImplTest {
         user.setPassword("password");
         user.setEmail("email@email.com");
         user.setCreatedAt(LocalDateTime.now());
-        user.setRole(Role.ROLE_USER);
+        Role role = new Role();
+        role.setId(1);
+        role.setName("ROLE_USER");
+        user.setRoles(List.of(role));
 
         card = new Card(
                 1L,
@@ -91,17 +132,18 @@ class CardServiceImplTest {
                 userResponse
         );
 
-        when(cardSaveServiceUtil.saveCard(request, user)).thenReturn(expectedResponse);
+        AuthenticatedUser principal = AuthenticatedUser.of(user);
+        when(cardSaveServiceUtil.saveCard(request, principal)).thenReturn(expectedResponse);
 
         ///-> When: Вызов сервиса (делегирует в мок)
-        CardResponse response = cardService.createCard(request, user);
+        CardResponse response = cardService.createCard(request, principal);
 
         ///-> Then: Проверки
         assertThat(response).isNotNull();
         assertThat(response.id()).isEqualTo(1L);
         assertThat(response.encryptedNumber()).isEqualTo("**** **** **** 0009");
         assertThat(response.balance()).isEqualTo(BigDecimal.valueOf(123.4));
-        assertThat(response.owner().id()).isEqualTo(1L);
+        assertThat(response.owner().getId()).isEqualTo(1L);
     }
 
     @Test
@@ -129,6 +171,31 @@ class CardServiceImplTest {
                 .hasMessage("Карта с id 1 не найдена");
     }
 
+    @Test
+    void getCardsPages_ShouldSortByBalanceMinor_WhenSortIsBalance() {
+        // Given
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        when(cardRepository.findViewSlice(any(), pageable.capture())).thenReturn(new SliceImpl<>(List.of()));
+
+        // When
+        cardService.getCardsPages(PageRequest.of(0, 10, Sort.by("balance")), emptySearch(), false);
+
+        // Then
+        assertThat(pageable.getValue().getSort()).isEqualTo(Sort.by("balanceMinor", "id"));
+    }
+
+    @Test
+    void getCardsPages_ShouldThrowException_WhenSortFieldIsUnknown() {
+        // When & Then: до запроса в базу дело не доходит
+        assertThatThrownBy(() -> cardService.getCardsPages(PageRequest.of(0, 10, Sort.by("owner")), emptySearch(), false))
+                .isInstanceOf(InvalidCardFieldException.class);
+        verifyNoInteractions(cardRepository);
+    }
+
+    private static CardSearchRequest emptySearch() {
+        return new CardSearchRequest(null, null, null, null, null, null);
+    }
+
 // Если id - null
 //    @Test
 //    void deleteCardById_ShouldNotInteractWithRepository_WhenInvalidId() {
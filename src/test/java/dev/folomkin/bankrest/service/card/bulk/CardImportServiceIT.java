@@ -0,0 +1,123 @@
+package dev.folomkin.bankrest.service.card.bulk;
+
+import dev.folomkin.bankrest.service.card.index.CardNumberIndex;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Пакетная загрузка карт через COPY: проверка строк, конфликты при
+ * переносе в cards, файл отклоненных строк и новые карты в индексе номеров.
+ * <p>
+ * Запуск: mvn test -Dtest=CardImportServiceIT
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CardImportServiceIT {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        registry.add("spring.liquibase.enabled", () -> "true");
+    }
+
+    @Autowired
+    private CardImportService cardImportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CardNumberIndex cardNumberIndex;
+
+    private long userId;
+    private long otherUserId;
+
+    @BeforeAll
+    void seed() {
+        userId = jdbcTemplate.queryForObject("""
+                INSERT INTO users (username, email, password, role)
+                VALUES ('owner', 'owner@bank.test', 'password', 'ROLE_USER')
+                RETURNING id
+                """, Long.class);
+        otherUserId = jdbcTemplate.queryForObject("""
+                INSERT INTO users (username, email, password, role)
+                VALUES ('other', 'other@bank.test', 'password', 'ROLE_USER')
+                RETURNING id
+                """, Long.class);
+        jdbcTemplate.update("""
+                INSERT INTO cards (open_number, encrypted_number, last4, expiration_date, status,
+                                   balance_minor, balance_slots, user_id, version)
+                VALUES ('9999 9999 9999 0001', '**** **** **** 0001', '0001', DATE '2030-01-01', 'ACTIVE', 0, 0, ?, 0)
+                """, userId);
+    }
+
+    @Test
+    void importShouldCreateValidCardsAndReportRejectedLines() {
+        // Given
+        String csv = CardImportService.HEADER + "\n"
+                + "1111 2222 3333 4444,2030-01-01,100.50," + userId + "\n"           // 2: создана
+                + "1111 2222 3333 4444,2030-01-01,1," + userId + "\n"                // 3: номер повторяется в файле
+                + "9999 9999 9999 0001,2030-01-01,1," + userId + "\n"                // 4: номер уже в базе
+                + "5555 6666 7777 4444,2030-01-01,1," + userId + "\n"                // 5: последние цифры повторяются в файле
+                + "1111 2222 3333 5555,2030-01-01,-1," + userId + "\n"               // 6: отрицательный баланс
+                + "1111 2222 3333 6666,2030-01-01,1,424242\n"                        // 7: нет владельца
+                + "1111222233337777,2030-01-01,1," + userId + "\n"                   // 8: формат номера
+                + "\n"
+                + "1111 2222 3333 8888,2031-06-30,0," + userId + "\n"                // 10: создана
+                + "5555 6666 7777 0001,2030-01-01,1," + otherUserId + "\n";          // 11: последние цифры в базе
+
+        int indexed = cardNumberIndex.size();
+
+        // When
+        CardImportResult result = cardImportService.importCards(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), null);
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        cardImportService.writeRejected(result.importId(), report);
+
+        // Then
+        assertThat(result.total()).isEqualTo(9);
+        assertThat(result.imported()).isEqualTo(2);
+        assertThat(result.rejected()).isEqualTo(7);
+        assertThat(report.toString(StandardCharsets.UTF_8).split("\r\n"))
+                .extracting(line -> line.substring(0, line.indexOf(',')))
+                .containsExactly("line", "3", "4", "5", "6", "7", "8", "11");
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT balance_minor FROM cards WHERE open_number = '1111 2222 3333 4444'", Long.class))
+                .isEqualTo(10050L);
+        assertThat(jdbcTemplate.queryForObject("""
+                SELECT count(*) FROM card_balance_checkpoints k JOIN cards c ON c.id = k.card_id
+                WHERE c.open_number IN ('1111 2222 3333 4444', '1111 2222 3333 8888')
+                """, Long.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM card_import_staging", Long.class))
+                .isZero();
+        ///-> В индекс номеров попадают только созданные карты
+        assertThat(cardNumberIndex.size()).isEqualTo(indexed + 2);
+        assertThat(cardNumberIndex.findCardId(userId, "8888")).isEqualTo(jdbcTemplate.queryForObject(
+                "SELECT id FROM cards WHERE open_number = '1111 2222 3333 8888'", Long.class));
+    }
+}
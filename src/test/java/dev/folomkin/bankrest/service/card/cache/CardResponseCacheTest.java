@@ -0,0 +1,87 @@
+package dev.folomkin.bankrest.service.card.cache;
+
+import dev.folomkin.bankrest.domain.dto.card.CardResponse;
+import dev.folomkin.bankrest.domain.model.CardStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardResponseCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CardResponseCache cardResponseCache;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        cardResponseCache = new CardResponseCache(meterRegistry, 100, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void get_ShouldLoadOnce_WhenCardIsReadRepeatedly() {
+        // When
+        cardResponseCache.get(1L, this::load);
+        cardResponseCache.get(1L, this::load);
+        cardResponseCache.get(1L, this::load);
+
+        // Then
+        assertThat(loads).hasValue(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "card-responses").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void evictAfterCommit_ShouldKeepEntryUntilTransactionCompletes() {
+        // Given
+        cardResponseCache.get(1L, this::load);
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When: запись в транзакции
+        cardResponseCache.evictAfterCommit(1L);
+
+        // Then: до коммита читается прежний ответ, после - загружается заново
+        cardResponseCache.get(1L, this::load);
+        assertThat(loads).hasValue(1);
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        cardResponseCache.get(1L, this::load);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void get_ShouldNotCacheMissingCard() {
+        // When
+        CardResponse first = cardResponseCache.get(1L, id -> null);
+        CardResponse second = cardResponseCache.get(1L, this::load);
+
+        // Then
+        assertThat(first).isNull();
+        assertThat(second).isNotNull();
+    }
+
+    private CardResponse load(Long id) {
+        loads.incrementAndGet();
+        return new CardResponse(id, "**** **** **** 0001", LocalDate.now(), CardStatus.ACTIVE,
+                new BigDecimal("10.00"), null);
+    }
+}
@@ -0,0 +1,145 @@
+package dev.folomkin.bankrest.service.card.index;
+
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.CardStatus;
+import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.repository.CardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardNumberIndexTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CardNumberIndex cardNumberIndex;
+
+    @BeforeEach
+    void setUp() {
+        cardNumberIndex = new CardNumberIndex(cardRepository, transactionManager, true, 16);
+    }
+
+    @Test
+    void findCardId_ShouldNotQueryDatabase_WhenCardIsIndexed() {
+        // Given
+        cardNumberIndex.cardSaved(card(10L, 1L, "1234"));
+
+        // When / Then
+        assertThat(cardNumberIndex.findCardId(1L, "1234")).isEqualTo(10L);
+        assertThat(cardNumberIndex.findCardId("1234")).isEqualTo(10L);
+        verifyNoInteractions(cardRepository);
+    }
+
+    @Test
+    void findCardId_ShouldQueryDatabaseOnce_WhenCardIsMissing() {
+        // Given
+        when(cardRepository.findCardIdByUserIdAndLast4(1L, "1234")).thenReturn(10L);
+
+        // When
+        Long first = cardNumberIndex.findCardId(1L, "1234");
+        Long second = cardNumberIndex.findCardId(1L, "1234");
+
+        // Then
+        assertThat(first).isEqualTo(10L);
+        assertThat(second).isEqualTo(10L);
+        verify(cardRepository, times(1)).findCardIdByUserIdAndLast4(1L, "1234");
+    }
+
+    @Test
+    void cardRemoved_ShouldForgetCard() {
+        // Given
+        Card card = card(10L, 1L, "1234");
+        cardNumberIndex.cardSaved(card);
+        when(cardRepository.findCardIdByUserIdAndLast4(1L, "1234")).thenReturn(null);
+
+        // When
+        cardNumberIndex.cardRemoved(card);
+
+        // Then
+        assertThat(cardNumberIndex.findCardId(1L, "1234")).isNull();
+        assertThat(cardNumberIndex.size()).isZero();
+    }
+
+    @Test
+    void findCardId_ShouldQueryDatabase_WhenLast4BelongsToSeveralCards() {
+        // Given: одинаковые последние цифры у карт разных владельцев
+        cardNumberIndex.cardSaved(card(10L, 1L, "1234"));
+        cardNumberIndex.cardSaved(card(11L, 2L, "1234"));
+        when(cardRepository.findCardIdsByLast4("1234")).thenReturn(List.of(10L, 11L));
+
+        // When / Then
+        assertThat(cardNumberIndex.findCardId("1234")).isNull();
+        assertThat(cardNumberIndex.findCardId(2L, "1234")).isEqualTo(11L);
+    }
+
+    @Test
+    void findCard_ShouldDropStaleEntry_AndLookUpDatabaseAgain() {
+        // Given: карту 10 удалил другой экземпляр, номер теперь у карты 12
+        cardNumberIndex.cardSaved(card(10L, 1L, "1234"));
+        Card replacement = card(12L, 1L, "1234");
+        when(cardRepository.findCardIdByUserIdAndLast4(1L, "1234")).thenReturn(12L);
+        when(cardRepository.findById(10L)).thenReturn(Optional.empty());
+        when(cardRepository.findById(12L)).thenReturn(Optional.of(replacement));
+
+        // When
+        Optional<Card> found = cardNumberIndex.findCard(1L, "1234", cardRepository::findById);
+
+        // Then
+        assertThat(found).containsSame(replacement);
+        assertThat(cardNumberIndex.findCardId(1L, "1234")).isEqualTo(12L);
+        verify(cardRepository, times(1)).findCardIdByUserIdAndLast4(1L, "1234");
+    }
+
+    @Test
+    void findCard_ShouldReturnEmpty_WhenStaleCardHasNoReplacement() {
+        // Given
+        cardNumberIndex.cardSaved(card(10L, 1L, "1234"));
+        when(cardRepository.findCardIdsByLast4("1234")).thenReturn(List.of());
+
+        // When
+        Optional<Long> found = cardNumberIndex.findCard("1234", id -> Optional.empty());
+
+        // Then
+        assertThat(found).isEmpty();
+        verify(cardRepository).findCardIdsByLast4("1234");
+    }
+
+    @Test
+    void evictIfMissing_ShouldKeepEntry_WhenCardExists() {
+        // Given
+        cardNumberIndex.cardSaved(card(10L, 1L, "1234"));
+        when(cardRepository.existsById(10L)).thenReturn(true);
+        when(cardRepository.existsById(11L)).thenReturn(false);
+
+        // When / Then
+        assertThat(cardNumberIndex.evictIfMissing(1L, "1234", 10L)).isFalse();
+        assertThat(cardNumberIndex.findCardId(1L, "1234")).isEqualTo(10L);
+        assertThat(cardNumberIndex.evictIfMissing(1L, "1234", 11L)).isTrue();
+        assertThat(cardNumberIndex.findCardId(1L, "1234")).isEqualTo(10L);
+    }
+
+    private static Card card(Long id, Long userId, String last4) {
+        User user = new User();
+        user.setId(userId);
+        Card card = new Card(id, "0000 0000 0000 " + last4, "**** **** **** " + last4,
+                LocalDate.now(), CardStatus.ACTIVE, BigDecimal.ZERO, user);
+        card.setLast4(last4);
+        return card;
+    }
+}
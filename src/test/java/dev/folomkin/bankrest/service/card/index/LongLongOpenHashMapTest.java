@@ -0,0 +1,50 @@
+package dev.folomkin.bankrest.service.card.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongLongOpenHashMapTest {
+
+    @Test
+    void shouldMatchHashMap_WhenKeysArePutAndRemovedAcrossResizes() {
+        // Given: таблица на 16 записей, ключи из узкого диапазона - много коллизий и сдвигов при удалении
+        LongLongOpenHashMap map = new LongLongOpenHashMap(16);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        // When
+        for (int i = 0; i < 200_000; i++) {
+            long key = 1 + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                Long value = expected.get(key);
+                assertThat(map.remove(key, value == null ? 1L : value)).isEqualTo(value != null);
+                expected.remove(key);
+            } else {
+                map.put(key, i + 1L);
+                expected.put(key, i + 1L);
+            }
+        }
+
+        // Then
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (long key = 1; key <= 5_000; key++) {
+            assertThat(map.get(key)).isEqualTo(expected.getOrDefault(key, LongLongOpenHashMap.NO_VALUE));
+        }
+    }
+
+    @Test
+    void remove_ShouldKeepKey_WhenValueDiffers() {
+        // Given
+        LongLongOpenHashMap map = new LongLongOpenHashMap(16);
+        map.put(7L, 100L);
+
+        // When / Then: удаление старой карты не стирает новую с тем же номером
+        assertThat(map.remove(7L, 99L)).isFalse();
+        assertThat(map.get(7L)).isEqualTo(100L);
+    }
+}
@@ -0,0 +1,133 @@
+package dev.folomkin.bankrest.service.card.journal;
+
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.mapper.CardMapper;
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.CardStatus;
+import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import dev.folomkin.bankrest.repository.CardRepository;
+import dev.folomkin.bankrest.service.card.index.CardNumberIndex;
+import dev.folomkin.bankrest.service.card.transfer.TransferValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JournalTransferEngineTest {
+
+    private static final AuthenticatedUser USER = new AuthenticatedUser(7L, "user", List.of("ROLE_USER"));
+
+    @TempDir
+    Path directory;
+
+    private final CardRepository cardRepository = mock(CardRepository.class);
+    private final CardNumberIndex cardNumberIndex =
+            new CardNumberIndex(cardRepository, mock(PlatformTransactionManager.class), false, 0);
+    private final JournalApplier journalApplier = mock(JournalApplier.class);
+    private final CountDownLatch applyAllowed = new CountDownLatch(1);
+
+    private JournalTransferEngine engine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        card(1L, "1111");
+        card(2L, "2222");
+        ///-> Перенос ждет разрешения теста, поэтому записи остаются неперенесенными сколько нужно
+        when(journalApplier.apply(any(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            applyAllowed.await(5, TimeUnit.SECONDS);
+            return invocation.<TransferJournal>getArgument(0).lastSequence();
+        });
+        engine = new JournalTransferEngine(cardRepository, cardNumberIndex, new TransferValidator(),
+                mock(CardMapper.class), journalApplier, true, directory.toString(), 16, 1, 100);
+        engine.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        applyAllowed.countDown();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        engine.stop();
+    }
+
+    @Test
+    void cardDeleted_ShouldRefuse_WhileJournalHasUnappliedRecords() throws Exception {
+        // Given
+        engine.transfer(new CardBalanceChangeRequest("1111", "2222", new BigDecimal("10.00")), USER);
+
+        // When / Then
+        assertThatThrownBy(() -> engine.cardDeleted(2L)).isInstanceOf(InvalidCardFieldException.class);
+
+        // When: записи перенесены
+        applyAllowed.countDown();
+
+        // Then
+        assertThat(deletedWithin(2L, 5_000)).isTrue();
+    }
+
+    @Test
+    void transfer_ShouldNotFindCard_UntilDeleteTransactionCompletes() {
+        // Given: удаление в открытой транзакции
+        TransactionSynchronizationManager.initSynchronization();
+        engine.cardDeleted(2L);
+        CardBalanceChangeRequest request = new CardBalanceChangeRequest("1111", "2222", new BigDecimal("10.00"));
+
+        // When / Then
+        assertThatThrownBy(() -> engine.transfer(request, USER))
+                .isInstanceOf(InvalidCardFieldException.class)
+                .hasMessage("Не найдена карта-получатель");
+
+        // When: транзакция удаления откатилась
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+
+        // Then
+        engine.transfer(request, USER);
+    }
+
+    private boolean deletedWithin(Long cardId, long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                engine.cardDeleted(cardId);
+                return true;
+            } catch (InvalidCardFieldException e) {
+                Thread.sleep(5);
+            }
+        }
+        return false;
+    }
+
+    private void card(Long id, String last4) {
+        User owner = new User();
+        owner.setId(USER.id());
+        Card card = new Card(id, "4000 0000 0000 " + last4, "encrypted", LocalDate.now().plusYears(1),
+                CardStatus.ACTIVE, new BigDecimal("100.00"), owner);
+        card.setLast4(last4);
+        when(cardRepository.findCardIdByUserIdAndLast4(USER.id(), last4)).thenReturn(id);
+        when(cardRepository.findById(id)).thenReturn(Optional.of(card));
+    }
+}
@@ -0,0 +1,92 @@
+package dev.folomkin.bankrest.service.card.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransferJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void append_ShouldRollSegmentsAndReadBackInOrder() throws Exception {
+        // Given: сегменты по 4 записи
+        try (TransferJournal journal = new TransferJournal(directory, 4, 1)) {
+            // When
+            for (int i = 0; i < 10; i++) {
+                journal.append(1, 10 + i, 20 + i, 100 + i);
+            }
+
+            // Then
+            List<long[]> records = readAll(journal, 1);
+            assertThat(records).hasSize(10);
+            assertThat(records.get(9)).containsExactly(10, 1, 19, 29, 109);
+            assertThat(segmentCount()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void reopen_ShouldContinueAfterLastWrittenRecord() throws Exception {
+        // Given
+        try (TransferJournal journal = new TransferJournal(directory, 4, 1)) {
+            for (int i = 0; i < 6; i++) {
+                journal.append(1, 1, 2, 100);
+            }
+        }
+
+        // When: повторное открытие, как после перезапуска
+        try (TransferJournal journal = new TransferJournal(directory, 4, 1)) {
+            long next = journal.append(1, 2, 1, 50);
+
+            // Then
+            assertThat(next).isEqualTo(7);
+            assertThat(readAll(journal, 5)).extracting(r -> r[0]).containsExactly(5L, 6L, 7L);
+        }
+    }
+
+    @Test
+    void deleteSegmentsUpTo_ShouldKeepSegmentsWithUnappliedRecords() throws Exception {
+        try (TransferJournal journal = new TransferJournal(directory, 4, 1)) {
+            // Given
+            for (int i = 0; i < 10; i++) {
+                journal.append(1, 1, 2, 100);
+            }
+
+            // When: перенесены записи 1..6, второй сегмент (5..8) еще нужен
+            journal.deleteSegmentsUpTo(6);
+
+            // Then
+            assertThat(segmentCount()).isEqualTo(2);
+            assertThat(readAll(journal, 7)).hasSize(4);
+        }
+    }
+
+    @Test
+    void newJournal_ShouldStartAfterAppliedSequence() throws Exception {
+        try (TransferJournal journal = new TransferJournal(directory, 4, 42)) {
+            assertThat(journal.lastSequence()).isEqualTo(41);
+            assertThat(journal.append(1, 1, 2, 100)).isEqualTo(42);
+        }
+    }
+
+    private static List<long[]> readAll(TransferJournal journal, long from) {
+        List<long[]> records = new ArrayList<>();
+        journal.read(from, Integer.MAX_VALUE, (sequence, userId, cardOutId, cardInId, amountMinor) ->
+                records.add(new long[]{sequence, userId, cardOutId, cardInId, amountMinor}));
+        return records;
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package dev.folomkin.bankrest.service.card.ledger;
+
+import dev.folomkin.bankrest.domain.model.CardBalanceCheckpoint;
+import dev.folomkin.bankrest.domain.model.LedgerDirection;
+import dev.folomkin.bankrest.domain.model.LedgerEntry;
+import dev.folomkin.bankrest.domain.model.Transfer;
+import dev.folomkin.bankrest.repository.CardBalanceCheckpointRepository;
+import dev.folomkin.bankrest.repository.CardBalanceCheckpointRepository.BalanceMismatch;
+import dev.folomkin.bankrest.repository.LedgerEntryRepository;
+import dev.folomkin.bankrest.repository.TransferRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerServiceTest {
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Mock
+    private CardBalanceCheckpointRepository checkpointRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private LedgerService ledgerService;
+
+    @BeforeEach
+    void setUp() {
+        ledgerService = new LedgerService(ledgerEntryRepository, transferRepository, checkpointRepository, transactionManager,
+                Duration.ofMinutes(1));
+    }
+
+    @Test
+    void transferEntries_ShouldPairDebitAndCredit() {
+        // When
+        Transfer transfer = new Transfer(7L, 1L, "0001", 2L, "0002", 1_000L);
+        List<LedgerEntry> entries = LedgerService.transferEntries(transfer);
+
+        // Then
+        assertThat(entries).extracting(LedgerEntry::getCardId).containsExactly(1L, 2L);
+        assertThat(entries).extracting(LedgerEntry::getDirection)
+                .containsExactly(LedgerDirection.DEBIT, LedgerDirection.CREDIT);
+        assertThat(entries).extracting(LedgerEntry::getTransferId).containsOnly(transfer.getTransferId());
+    }
+
+    @Test
+    void takeCheckpoints_ShouldAddEntriesAfterLatestCheckpoint() {
+        // Given
+        LocalDateTime coveredUntil = LocalDateTime.of(2025, 1, 1, 12, 0);
+        when(checkpointRepository.findLatestCoveredUntil()).thenReturn(Optional.of(coveredUntil));
+        when(ledgerEntryRepository.findCardIdsWithEntriesBetween(eq(coveredUntil), any())).thenReturn(List.of(1L));
+        when(checkpointRepository.findFirstByCardIdOrderByCoveredUntilDesc(1L))
+                .thenReturn(Optional.of(new CardBalanceCheckpoint(1L, 10_000L, coveredUntil)));
+        when(ledgerEntryRepository.sumBetween(eq(1L), eq(coveredUntil), any()))
+                .thenReturn(-1_500L);
+
+        // When
+        ledgerService.takeCheckpoints();
+
+        // Then
+        ArgumentCaptor<CardBalanceCheckpoint> captor = ArgumentCaptor.forClass(CardBalanceCheckpoint.class);
+        verify(checkpointRepository).save(captor.capture());
+        assertThat(captor.getValue().getBalanceMinor()).isEqualTo(8_500L);
+    }
+
+    @Test
+    void takeCheckpoints_ShouldSnapshotOnlyCardsWithNewEntries() {
+        // Given
+        when(checkpointRepository.findLatestCoveredUntil()).thenReturn(Optional.empty());
+        when(ledgerEntryRepository.findCardIdsWithEntriesBetween(any(), any())).thenReturn(List.of(7L));
+        when(checkpointRepository.findFirstByCardIdOrderByCoveredUntilDesc(7L)).thenReturn(Optional.empty());
+        when(ledgerEntryRepository.sumBetween(eq(7L), any(), any())).thenReturn(4_200L);
+
+        // When
+        ledgerService.takeCheckpoints();
+
+        // Then
+        ArgumentCaptor<CardBalanceCheckpoint> captor = ArgumentCaptor.forClass(CardBalanceCheckpoint.class);
+        verify(checkpointRepository, times(1)).save(captor.capture());
+        assertThat(captor.getValue().getCardId()).isEqualTo(7L);
+        assertThat(captor.getValue().getBalanceMinor()).isEqualTo(4_200L);
+    }
+
+    @Test
+    void reconcile_ShouldReturnCardsWhoseBalanceDiffersFromLedger() {
+        // Given
+        BalanceMismatch mismatch = mock(BalanceMismatch.class);
+        when(mismatch.getCardId()).thenReturn(3L);
+        when(mismatch.getCardBalanceMinor()).thenReturn(10_000L);
+        when(mismatch.getLedgerBalanceMinor()).thenReturn(9_000L);
+        when(checkpointRepository.findBalanceMismatches(LedgerService.RECONCILE_LIMIT)).thenReturn(List.of(mismatch));
+
+        // When
+        List<BalanceMismatch> mismatches = ledgerService.reconcile();
+
+        // Then
+        assertThat(mismatches).extracting(BalanceMismatch::getCardId).containsExactly(3L);
+        verifyNoInteractions(ledgerEntryRepository);
+    }
+}
@@ -0,0 +1,94 @@
+package dev.folomkin.bankrest.service.card.ledger;
+
+import dev.folomkin.bankrest.domain.dto.card.TransferPageResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.mapper.CardMapper;
+import dev.folomkin.bankrest.domain.model.Transfer;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import dev.folomkin.bankrest.repository.TransferRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransferHistoryServiceTest {
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Spy
+    private CardMapper cardMapper;
+
+    private TransferHistoryService transferHistoryService;
+
+    private AuthenticatedUser user;
+
+    @BeforeEach
+    void setUp() {
+        transferHistoryService = new TransferHistoryService(transferRepository, cardMapper);
+        user = new AuthenticatedUser(1L, "user", List.of("ROLE_USER"));
+    }
+
+    @Test
+    void page_ShouldContinueFromLastTransfer_WhenCursorReturned() {
+        // Given: 3 строки при limit 2 - есть следующая страница
+        LocalDateTime time = LocalDateTime.of(2025, 3, 1, 10, 15, 30, 123_456_000);
+        when(transferRepository.findPage(eq(1L), any(), any(), any(), anyLong(), eq(3)))
+                .thenReturn(List.of(transfer(30L, time), transfer(20L, time), transfer(10L, time.minusSeconds(1))));
+
+        // When
+        TransferPageResponse first = transferHistoryService.page(user, null, null, null, null, 2);
+
+        // Then: курсор указывает на последний перевод страницы
+        assertThat(first.items()).hasSize(2);
+        assertThat(first.nextCursor()).isNotNull();
+
+        when(transferRepository.findPage(eq(1L), any(), any(), eq(time), eq(20L), eq(3)))
+                .thenReturn(List.of(transfer(10L, time.minusSeconds(1))));
+        TransferPageResponse second = transferHistoryService.page(user, null, null, null, first.nextCursor(), 2);
+        assertThat(second.items()).hasSize(1);
+        assertThat(second.nextCursor()).isNull();
+    }
+
+    @Test
+    void page_ShouldUseCardQuery_WhenCardFilterSet() {
+        // Given
+        when(transferRepository.findCardPage(eq(1L), eq("0002"), any(), any(), any(), anyLong(), anyInt()))
+                .thenReturn(List.of());
+
+        // When
+        TransferPageResponse page = transferHistoryService.page(user, "0002", null, null, null, 50);
+
+        // Then
+        assertThat(page.items()).isEmpty();
+        verify(transferRepository, never()).findPage(any(), any(), any(), any(), anyLong(), anyInt());
+    }
+
+    @Test
+    void page_ShouldThrowException_WhenCursorIsMalformed() {
+        assertThatThrownBy(() -> transferHistoryService.page(user, null, null, null, "not-a-cursor", 50))
+                .isInstanceOf(InvalidCardFieldException.class)
+                .hasMessage("Некорректный курсор страницы");
+    }
+
+    private static Transfer transfer(Long id, LocalDateTime createdAt) {
+        Transfer transfer = new Transfer(1L, 1L, "0001", 2L, "0002", 100L);
+        transfer.setId(id);
+        transfer.setCreatedAt(createdAt);
+        return transfer;
+    }
+}
@@ -0,0 +1,129 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.config.datasource.ReadYourWrites;
+import dev.folomkin.bankrest.domain.dto.card.AsyncTransferResponse;
+import dev.folomkin.bankrest.domain.dto.card.AsyncTransferStatus;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import dev.folomkin.bankrest.exceptions.NoSuchElementException;
+import dev.folomkin.bankrest.exceptions.TooManyTransfersException;
+import dev.folomkin.bankrest.service.card.CardService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncTransferServiceTest {
+
+    @Mock
+    private CardService cardService;
+
+    @Mock
+    private ObjectProvider<ReadYourWrites> readYourWrites;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AsyncTransferService asyncTransferService;
+
+    private AuthenticatedUser user;
+
+    private final CardBalanceChangeRequest request =
+            new CardBalanceChangeRequest("0001", "0002", new BigDecimal("10.00"));
+
+    @BeforeEach
+    void setUp() {
+        asyncTransferService = new AsyncTransferService(cardService, readYourWrites, meterRegistry, 1, 1, 2, Duration.ofMinutes(1));
+        user = new AuthenticatedUser(1L, "user", List.of("ROLE_USER"));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        asyncTransferService.stop();
+    }
+
+    @Test
+    void status_ShouldReturnResult_WhenTransferCompleted() {
+        // Given
+        CardBalanceChangeResponse result = new CardBalanceChangeResponse("0001", BigDecimal.ONE, "0002", BigDecimal.TEN);
+        when(cardService.balanceChange(request, user, "key-1")).thenReturn(result);
+
+        // When
+        AsyncTransferResponse accepted = asyncTransferService.submit(request, user, "key-1");
+        AsyncTransferResponse done = asyncTransferService.status(accepted.id(), user, Duration.ofSeconds(5)).join();
+
+        // Then
+        assertThat(done.status()).isEqualTo(AsyncTransferStatus.COMPLETED);
+        assertThat(done.result()).isEqualTo(result);
+        assertThat(meterRegistry.get("bank.transfer.async.queue.wait").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("bank.transfer.async.execution").tag("outcome", "success").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void status_ShouldReturnError_WhenTransferFailed() {
+        // Given
+        when(cardService.balanceChange(eq(request), eq(user), any()))
+                .thenThrow(new InvalidCardFieldException("Недостаточно средств"));
+
+        // When
+        AsyncTransferResponse accepted = asyncTransferService.submit(request, user, null);
+        AsyncTransferResponse done = asyncTransferService.status(accepted.id(), user, Duration.ofSeconds(5)).join();
+
+        // Then
+        assertThat(done.status()).isEqualTo(AsyncTransferStatus.FAILED);
+        assertThat(done.error()).isEqualTo("Недостаточно средств");
+    }
+
+    @Test
+    void submit_ShouldThrowException_WhenQueueIsFull() throws InterruptedException {
+        // Given: один поток занят, одно место в очереди занято
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        when(cardService.balanceChange(eq(request), any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+        AuthenticatedUser other = new AuthenticatedUser(2L, "other", List.of("ROLE_USER"));
+        AsyncTransferResponse running = asyncTransferService.submit(request, user, null);
+        started.await();
+        asyncTransferService.submit(request, other, null);
+
+        // When / Then
+        assertThatThrownBy(() -> asyncTransferService.submit(request, other, null))
+                .isInstanceOf(TooManyTransfersException.class);
+        assertThat(meterRegistry.get("bank.transfer.async.rejected").counter().count()).isEqualTo(1);
+        assertThat(asyncTransferService.status(running.id(), user, Duration.ZERO).join().status())
+                .isEqualTo(AsyncTransferStatus.RUNNING);
+        release.countDown();
+    }
+
+    @Test
+    void status_ShouldThrowException_WhenTransferBelongsToAnotherUser() {
+        // Given
+        AsyncTransferResponse accepted = asyncTransferService.submit(request, user, null);
+        AuthenticatedUser other = new AuthenticatedUser(2L, "other", List.of("ROLE_USER"));
+
+        // When / Then
+        assertThatThrownBy(() -> asyncTransferService.status(accepted.id(), other, Duration.ZERO))
+                .isInstanceOf(NoSuchElementException.class);
+    }
+}
@@ -0,0 +1,119 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.CardBalanceSlot;
+import dev.folomkin.bankrest.domain.model.CardStatus;
+import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.repository.CardBalanceSlotRepository;
+import dev.folomkin.bankrest.repository.CardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceSlotServiceTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CardBalanceSlotRepository slotRepository;
+
+    private BalanceSlotService balanceSlotService;
+
+    private Card card;
+
+    @BeforeEach
+    void setUp() {
+        balanceSlotService = new BalanceSlotService(cardRepository, slotRepository);
+
+        User user = new User();
+        user.setId(1L);
+        card = new Card(1L, "0000 0000 0000 0001", "**** **** **** 0001",
+                LocalDate.now(), CardStatus.ACTIVE, new BigDecimal("10.00"), user);
+    }
+
+    @Test
+    void consolidateIfShort_ShouldFoldSlotsIntoBalance_WhenBalanceIsNotEnough() {
+        // Given: 10.00 в основном балансе и 25.00 в двух слотах
+        card.setBalanceSlots(2);
+        card.setSlotsBalanceMinor(2_500L);
+        CardBalanceSlot first = slot(0, 1_000L);
+        CardBalanceSlot second = slot(1, 1_500L);
+        when(slotRepository.findAllForUpdate(1L)).thenReturn(List.of(first, second));
+
+        // When
+        balanceSlotService.consolidateIfShort(card, 3_000L);
+
+        // Then: общий баланс не изменился, слоты обнулены
+        assertThat(card.getBalanceMinor()).isEqualTo(3_500L);
+        assertThat(card.getSlotsBalanceMinor()).isZero();
+        assertThat(card.getBalance()).isEqualByComparingTo("35.00");
+        assertThat(first.getBalanceMinor()).isZero();
+        assertThat(second.getBalanceMinor()).isZero();
+    }
+
+    @Test
+    void consolidateIfShort_ShouldNotLockSlots_WhenBalanceIsEnough() {
+        // Given
+        card.setBalanceSlots(2);
+
+        // When
+        balanceSlotService.consolidateIfShort(card, 500L);
+
+        // Then
+        verify(slotRepository, never()).findAllForUpdate(any());
+        assertThat(card.getBalanceMinor()).isEqualTo(1_000L);
+    }
+
+    @Test
+    void configure_ShouldFoldRemovedSlotsAndStopSlottedCredits_WhenDisabled() {
+        // Given
+        card.setBalanceSlots(2);
+        CardBalanceSlot first = slot(0, 200L);
+        CardBalanceSlot second = slot(1, 300L);
+        when(slotRepository.findAllForUpdate(1L)).thenReturn(List.of(first, second));
+
+        // When
+        balanceSlotService.configure(card, 0);
+
+        // Then
+        verify(slotRepository).delete(first);
+        verify(slotRepository).delete(second);
+        assertThat(card.getBalanceMinor()).isEqualTo(1_500L);
+        assertThat(card.getBalanceSlots()).isZero();
+        assertThat(balanceSlotService.isSlotted(1L)).isFalse();
+        assertThat(balanceSlotService.credit(card, 100L)).isFalse();
+        verify(slotRepository, never()).credit(anyLong(), anyInt(), anyLong());
+    }
+
+    @Test
+    void credit_ShouldReturnFalse_WhenSlotWasRemoved() {
+        // Given: список карт устарел, слота уже нет
+        card.setBalanceSlots(4);
+        when(slotRepository.credit(eq(1L), anyInt(), eq(100L))).thenReturn(0);
+
+        // When / Then
+        assertThat(balanceSlotService.credit(card, 100L)).isFalse();
+        assertThat(card.getBalance()).isEqualByComparingTo("10.00");
+    }
+
+    private static CardBalanceSlot slot(int number, long balanceMinor) {
+        CardBalanceSlot slot = new CardBalanceSlot(1L, number);
+        slot.setBalanceMinor(balanceMinor);
+        return slot;
+    }
+}
@@ -0,0 +1,134 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.domain.dto.card.BatchTransferMode;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.mapper.CardMapper;
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.CardStatus;
+import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import dev.folomkin.bankrest.repository.CardRepository;
+import dev.folomkin.bankrest.service.card.cache.CardResponseCache;
+import dev.folomkin.bankrest.service.card.ledger.LedgerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchTransferProcessorTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Spy
+    private TransferValidator transferValidator;
+
+    @Spy
+    private CardMapper cardMapper;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private BalanceSlotService balanceSlotService;
+
+    @Mock
+    private CardResponseCache cardResponseCache;
+
+    private BatchTransferProcessor processor;
+
+    private User user;
+
+    private AuthenticatedUser principal;
+    private Card card1;
+    private Card card2;
+
+    @BeforeEach
+    void setUp() {
+        processor = new BatchTransferProcessor(cardRepository, transferValidator, cardMapper, ledgerService,
+                balanceSlotService, cardResponseCache);
+
+        user = new User();
+        user.setId(1L);
+        principal = AuthenticatedUser.of(user);
+
+        card1 = new Card(1L, "0000 0000 0000 0001", "**** **** **** 0001",
+                LocalDate.now(), CardStatus.ACTIVE, new BigDecimal("100.00"), user);
+        card1.setLast4("0001");
+        card2 = new Card(2L, "0000 0000 0000 0002", "**** **** **** 0002",
+                LocalDate.now(), CardStatus.ACTIVE, new BigDecimal("10.00"), user);
+        card2.setLast4("0002");
+
+        when(cardRepository.findAllForUpdate(anyCollection(), anyCollection())).thenReturn(List.of(card1, card2));
+    }
+
+    @Test
+    void process_ShouldSkipFailedTransfer_WhenBestEffort() {
+        // Given: второй перевод превышает остаток на карте 2
+        List<TransferCommand> commands = List.of(
+                new TransferCommand(new CardBalanceChangeRequest("0001", "0002", new BigDecimal("30.00")), principal),
+                new TransferCommand(new CardBalanceChangeRequest("0002", "0001", new BigDecimal("50.00")), principal),
+                new TransferCommand(new CardBalanceChangeRequest("0002", "0001", new BigDecimal("5.00")), principal)
+        );
+
+        // When
+        List<TransferOutcome> outcomes = processor.process(commands, BatchTransferMode.BEST_EFFORT);
+
+        // Then: отказ не изменил балансы, остальные переводы применены по порядку
+        assertThat(outcomes).extracting(TransferOutcome::isSuccess).containsExactly(true, false, true);
+        assertThat(card1.getBalance()).isEqualByComparingTo("75.00");
+        assertThat(card2.getBalance()).isEqualByComparingTo("35.00");
+        verify(cardRepository).saveAll(any());
+        verify(ledgerService).recordTransfers(argThat(transfers -> transfers.size() == 2));
+    }
+
+    @Test
+    void process_ShouldRunInTransactionHook_OnlyForSuccessfulTransfers() {
+        // Given
+        List<CardBalanceChangeResponse> saved = new ArrayList<>();
+        List<TransferCommand> commands = List.of(
+                new TransferCommand(new CardBalanceChangeRequest("0001", "0002", new BigDecimal("30.00")), principal,
+                        saved::add),
+                new TransferCommand(new CardBalanceChangeRequest("0002", "0001", new BigDecimal("500.00")), principal,
+                        saved::add)
+        );
+
+        // When
+        processor.process(commands, BatchTransferMode.BEST_EFFORT);
+
+        // Then
+        assertThat(saved).hasSize(1);
+        assertThat(saved.get(0).balanceOut()).isEqualByComparingTo("70.00");
+    }
+
+    @Test
+    void process_ShouldThrowException_WhenAllOrNothingAndTransferFails() {
+        List<TransferCommand> commands = List.of(
+                new TransferCommand(new CardBalanceChangeRequest("0001", "0002", new BigDecimal("30.00")), principal),
+                new TransferCommand(new CardBalanceChangeRequest("0002", "0009", new BigDecimal("1.00")), principal)
+        );
+
+        assertThatThrownBy(() -> processor.process(commands, BatchTransferMode.ALL_OR_NOTHING))
+                .isInstanceOf(InvalidCardFieldException.class)
+                .hasMessage("Перевод #1: Не найдена карта-получатель");
+
+        verify(cardRepository, never()).saveAll(any());
+    }
+}
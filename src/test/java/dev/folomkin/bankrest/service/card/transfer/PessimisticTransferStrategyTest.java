@@ -0,0 +1,87 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.mapper.CardMapper;
+import dev.folomkin.bankrest.domain.model.Card;
+import dev.folomkin.bankrest.domain.model.CardStatus;
+import dev.folomkin.bankrest.domain.model.User;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import dev.folomkin.bankrest.repository.CardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PessimisticTransferStrategyTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Spy
+    private TransferValidator transferValidator;
+
+    @Spy
+    private CardMapper cardMapper;
+
+    private PessimisticTransferStrategy strategy;
+
+    private User user;
+
+    private AuthenticatedUser principal;
+    private Card cardLow;
+    private Card cardHigh;
+
+    @BeforeEach
+    void setUp() {
+        strategy = new PessimisticTransferStrategy(cardRepository, transferValidator, cardMapper);
+
+        user = new User();
+        user.setId(1L);
+        principal = AuthenticatedUser.of(user);
+
+        cardLow = new Card(1L, "0000 0000 0000 0001", "**** **** **** 0001",
+                LocalDate.now(), CardStatus.ACTIVE, new BigDecimal("100.00"), user);
+        cardHigh = new Card(2L, "0000 0000 0000 0002", "**** **** **** 0002",
+                LocalDate.now(), CardStatus.ACTIVE, new BigDecimal("50.00"), user);
+
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(cardLow));
+        when(cardRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(cardHigh));
+    }
+
+    @Test
+    void transfer_ShouldLockLowerIdFirst_WhenSenderHasHigherId() {
+        // When: перевод с карты 2 на карту 1
+        CardBalanceChangeResponse response = strategy.transfer(2L, 1L, 2_000L, principal);
+
+        // Then: блокировки взяты по возрастанию id, балансы изменены
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).findByIdForUpdate(1L);
+        inOrder.verify(cardRepository).findByIdForUpdate(2L);
+        assertThat(response.balanceOut()).isEqualByComparingTo("30.00");
+        assertThat(response.balanceIn()).isEqualByComparingTo("120.00");
+    }
+
+    @Test
+    void transfer_ShouldThrowException_WhenInsufficientFunds() {
+        // When & Then: на карте 2 только 50
+        assertThatThrownBy(() -> strategy.transfer(2L, 1L, 5_001L, principal))
+                .isInstanceOf(InvalidCardFieldException.class)
+                .hasMessage("Недостаточно средств для перевода");
+
+        verify(cardRepository, never()).save(any());
+    }
+}
@@ -0,0 +1,194 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import dev.folomkin.bankrest.domain.model.TransferIdempotencyRecord;
+import dev.folomkin.bankrest.exceptions.InvalidCardFieldException;
+import dev.folomkin.bankrest.exceptions.TransferConflictException;
+import dev.folomkin.bankrest.repository.TransferIdempotencyRepository;
+import dev.folomkin.bankrest.service.card.journal.JournalTransferEngine;
+import dev.folomkin.bankrest.utils.CardBalanceServiceUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransferIdempotencyServiceTest {
+
+    @Mock
+    private CardBalanceServiceUtil cardBalanceServiceUtil;
+
+    @Mock
+    private TransferIdempotencyRepository idempotencyRepository;
+
+    @Mock
+    private JournalTransferEngine journalTransferEngine;
+
+    @Mock
+    private TransferSequencer transferSequencer;
+
+    private TransferIdempotencyService service;
+
+    private AuthenticatedUser user;
+
+    @BeforeEach
+    void setUp() {
+        service = new TransferIdempotencyService(cardBalanceServiceUtil, transferSequencer, idempotencyRepository,
+                journalTransferEngine,
+                Duration.ofHours(24), 100, Duration.ofSeconds(1));
+        user = new AuthenticatedUser(1L, "user", List.of("ROLE_USER"));
+    }
+
+    @Test
+    void repeatedKeyReturnsFirstResponseWithoutSecondTransfer() {
+        // Given
+        CardBalanceChangeRequest request = new CardBalanceChangeRequest("0001", "0002", new BigDecimal("10.00"));
+        CardBalanceChangeResponse response = new CardBalanceChangeResponse(
+                "0001", new BigDecimal("90.00"), "0002", new BigDecimal("60.00"));
+        when(idempotencyRepository.findByUserIdAndIdempotencyKey(anyLong(), anyString())).thenReturn(Optional.empty());
+        when(cardBalanceServiceUtil.balanceChange(eq(request), eq(user), any())).thenReturn(response);
+
+        // When
+        CardBalanceChangeResponse first = service.balanceChange("key-1", request, user);
+        CardBalanceChangeResponse second = service.balanceChange("key-1",
+                new CardBalanceChangeRequest("0001", "0002", new BigDecimal("10.0")), user);
+
+        // Then
+        assertThat(first).isEqualTo(response);
+        assertThat(second).isEqualTo(response);
+        verify(cardBalanceServiceUtil, times(1)).balanceChange(any(), any(), any());
+    }
+
+    @Test
+    void reusedKeyWithOtherParametersIsRejected() {
+        // Given
+        CardBalanceChangeRequest request = new CardBalanceChangeRequest("0001", "0002", new BigDecimal("10.00"));
+        when(idempotencyRepository.findByUserIdAndIdempotencyKey(anyLong(), anyString())).thenReturn(Optional.empty());
+        when(cardBalanceServiceUtil.balanceChange(eq(request), eq(user), any())).thenReturn(
+                new CardBalanceChangeResponse("0001", new BigDecimal("90.00"), "0002", new BigDecimal("60.00")));
+        service.balanceChange("key-1", request, user);
+
+        // When / Then
+        assertThatThrownBy(() -> service.balanceChange("key-1",
+                new CardBalanceChangeRequest("0001", "0002", new BigDecimal("20.00")), user))
+                .isInstanceOf(InvalidCardFieldException.class);
+        verify(cardBalanceServiceUtil, times(1)).balanceChange(any(), any(), any());
+    }
+
+    @Test
+    void expiredKeyNotYetPurgedIsReleasedAndTransferRuns() {
+        // Given: ключ старше ttl, часовая очистка его еще не удалила
+        CardBalanceChangeRequest request = new CardBalanceChangeRequest("0001", "0002", new BigDecimal("10.00"));
+        CardBalanceChangeResponse response = new CardBalanceChangeResponse(
+                "0001", new BigDecimal("90.00"), "0002", new BigDecimal("60.00"));
+        TransferIdempotencyRecord expired = new TransferIdempotencyRecord();
+        expired.setRequestFingerprint("old");
+        expired.setCreatedAt(LocalDateTime.now().minusHours(25));
+        when(idempotencyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.of(expired));
+        when(cardBalanceServiceUtil.balanceChange(eq(request), eq(user), any())).thenReturn(response);
+
+        // When
+        CardBalanceChangeResponse result = service.balanceChange("key-1", request, user);
+
+        // Then
+        assertThat(result).isEqualTo(response);
+        verify(idempotencyRepository).deleteExpired(eq(1L), eq("key-1"), any());
+    }
+
+    @Test
+    void keyedTransferGoesThroughSequencer_WhenEnabled() {
+        // Given
+        CardBalanceChangeRequest request = new CardBalanceChangeRequest("0001", "0002", new BigDecimal("10.00"));
+        CardBalanceChangeResponse response = new CardBalanceChangeResponse(
+                "0001", new BigDecimal("90.00"), "0002", new BigDecimal("60.00"));
+        when(idempotencyRepository.findByUserIdAndIdempotencyKey(anyLong(), anyString())).thenReturn(Optional.empty());
+        when(transferSequencer.isEnabled()).thenReturn(true);
+        when(transferSequencer.execute(eq(request), eq(user), any())).thenReturn(response);
+
+        // When
+        CardBalanceChangeResponse result = service.balanceChange("key-1", request, user);
+
+        // Then
+        assertThat(result).isEqualTo(response);
+        verifyNoInteractions(cardBalanceServiceUtil);
+    }
+
+    @Test
+    void journaledTransferReservesKeyBeforeAppend() {
+        // Given
+        CardBalanceChangeRequest request = new CardBalanceChangeRequest("0001", "0002", new BigDecimal("10.00"));
+        CardBalanceChangeResponse response = new CardBalanceChangeResponse(
+                "0001", new BigDecimal("90.00"), "0002", new BigDecimal("60.00"));
+        when(journalTransferEngine.isEnabled()).thenReturn(true);
+        when(idempotencyRepository.findByUserIdAndIdempotencyKey(anyLong(), anyString())).thenReturn(Optional.empty());
+        List<Boolean> pendingOnSave = new ArrayList<>();
+        when(idempotencyRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+            TransferIdempotencyRecord record = invocation.getArgument(0);
+            pendingOnSave.add(record.isPending());
+            return record;
+        });
+        when(journalTransferEngine.transfer(request, user)).thenReturn(response);
+
+        // When
+        CardBalanceChangeResponse result = service.balanceChange("key-1", request, user);
+
+        // Then
+        assertThat(result).isEqualTo(response);
+        assertThat(pendingOnSave).containsExactly(true, false);
+        var order = inOrder(idempotencyRepository, journalTransferEngine);
+        order.verify(idempotencyRepository).saveAndFlush(any());
+        order.verify(journalTransferEngine).transfer(request, user);
+    }
+
+    @Test
+    void journaledTransferReleasesReservation_WhenRejected() {
+        // Given
+        CardBalanceChangeRequest request = new CardBalanceChangeRequest("0001", "0002", new BigDecimal("10.00"));
+        when(journalTransferEngine.isEnabled()).thenReturn(true);
+        when(idempotencyRepository.findByUserIdAndIdempotencyKey(anyLong(), anyString())).thenReturn(Optional.empty());
+        when(idempotencyRepository.saveAndFlush(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(journalTransferEngine.transfer(request, user))
+                .thenThrow(new InvalidCardFieldException("Недостаточно средств для перевода"));
+
+        // When / Then
+        assertThatThrownBy(() -> service.balanceChange("key-1", request, user))
+                .isInstanceOf(InvalidCardFieldException.class);
+        verify(idempotencyRepository).delete(any(TransferIdempotencyRecord.class));
+    }
+
+    @Test
+    void pendingKeyFromAnotherInstanceIsConflict() throws Exception {
+        // Given: другой экземпляр зарезервировал ключ и еще не дописал ответ
+        CardBalanceChangeRequest request = new CardBalanceChangeRequest("0001", "0002", new BigDecimal("10.00"));
+        TransferIdempotencyRecord pending = new TransferIdempotencyRecord();
+        pending.setRequestFingerprint(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest("0001>0002:10".getBytes(StandardCharsets.UTF_8))));
+        pending.setCreatedAt(LocalDateTime.now());
+        when(idempotencyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.of(pending));
+
+        // When / Then
+        assertThatThrownBy(() -> service.balanceChange("key-1", request, user))
+                .isInstanceOf(TransferConflictException.class);
+        verifyNoInteractions(journalTransferEngine, cardBalanceServiceUtil);
+    }
+}
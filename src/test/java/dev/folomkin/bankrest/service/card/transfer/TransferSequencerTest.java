@@ -0,0 +1,112 @@
+package dev.folomkin.bankrest.service.card.transfer;
+
+import dev.folomkin.bankrest.config.datasource.ReadYourWrites;
+import dev.folomkin.bankrest.domain.dto.card.BatchTransferMode;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeRequest;
+import dev.folomkin.bankrest.domain.dto.card.CardBalanceChangeResponse;
+import dev.folomkin.bankrest.domain.dto.security.AuthenticatedUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransferSequencerTest {
+
+    @Mock
+    private BatchTransferProcessor batchTransferProcessor;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ReadYourWrites readYourWrites;
+
+    private TransferSequencer sequencer;
+
+    private AuthenticatedUser user;
+
+    @BeforeEach
+    void setUp() {
+        readYourWrites = new ReadYourWrites(Duration.ofMinutes(1), 100);
+        ///-> Одна полоса и долгое ожидание добора: все переводы теста попадают в один пакет
+        sequencer = new TransferSequencer(batchTransferProcessor,
+                new StaticListableBeanFactory(Map.of("readYourWrites", readYourWrites)).getBeanProvider(ReadYourWrites.class),
+                transactionManager, true, 1, 100, 10, 200);
+        sequencer.start();
+
+        user = new AuthenticatedUser(1L, "user", List.of("ROLE_USER"));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        sequencer.stop();
+    }
+
+    @Test
+    void submit_ShouldCommitQueuedTransfersInOneBatch() {
+        // Given
+        when(batchTransferProcessor.process(anyList(), eq(BatchTransferMode.BEST_EFFORT)))
+                .thenAnswer(invocation -> outcomes(invocation.getArgument(0)));
+
+        // When
+        List<CompletableFuture<CardBalanceChangeResponse>> futures = List.of(
+                sequencer.submit(transfer("0001", "0002"), user),
+                sequencer.submit(transfer("0002", "0003"), user),
+                sequencer.submit(transfer("0003", "0001"), user));
+
+        // Then
+        assertThat(futures).allSatisfy(future -> assertThat(future.join()).isNotNull());
+        verify(batchTransferProcessor, times(1)).process(anyList(), any());
+        verify(transactionManager, times(1)).commit(any());
+        assertThat(readYourWrites.wroteRecently("user")).isTrue();
+    }
+
+    @Test
+    void submit_ShouldRetryOneByOne_WhenBatchTransactionFails() {
+        // Given: пакет целиком падает на ошибке базы, поштучно переводы проходят
+        when(batchTransferProcessor.process(anyList(), any())).thenAnswer(invocation -> {
+            List<TransferCommand> commands = invocation.getArgument(0);
+            if (commands.size() > 1) {
+                throw new QueryTimeoutException("timeout");
+            }
+            return outcomes(commands);
+        });
+
+        // When
+        CompletableFuture<CardBalanceChangeResponse> first = sequencer.submit(transfer("0001", "0002"), user);
+        CompletableFuture<CardBalanceChangeResponse> second = sequencer.submit(transfer("0002", "0001"), user);
+
+        // Then
+        assertThat(first.join().cardNumberOut()).isEqualTo("0001");
+        assertThat(second.join().cardNumberOut()).isEqualTo("0002");
+    }
+
+    private static CardBalanceChangeRequest transfer(String out, String in) {
+        return new CardBalanceChangeRequest(out, in, new BigDecimal("1.00"));
+    }
+
+    private static List<TransferOutcome> outcomes(List<TransferCommand> commands) {
+        return commands.stream()
+                .map(command -> TransferOutcome.success(new CardBalanceChangeResponse(
+                        command.request().cardNumberOut(), BigDecimal.ZERO,
+                        command.request().cardNumberIn(), BigDecimal.ZERO)))
+                .toList();
+    }
+}
@@ -0,0 +1,110 @@
+package dev.folomkin.bankrest.service.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DataExportServiceTest {
+
+    private static final String CARDS_HEADER =
+            "id,encryptedNumber,expirationDate,cardStatus,balance,ownerId,ownerUsername,ownerEmail\r\n";
+
+    @Test
+    void exportCards_ShouldQuoteCsvValuesWithSeparatorsAndFormatMoney() throws Exception {
+        // Given
+        DataExportService service = service(
+                new Object[]{1L, "**** **** **** 0009", "2027-01-31", "ACTIVE", 12345L, 7L, "ivan", "ivan@mail.ru"},
+                new Object[]{2L, "a,\"b\"\nc", "2027-02-28", "BLOCKED", -5L, 7L, "ivan", "ivan@mail.ru"});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        long rows = service.exportCards(ExportFormat.CSV, out);
+
+        // Then
+        assertThat(rows).isEqualTo(2);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(CARDS_HEADER
+                + "1,**** **** **** 0009,2027-01-31,ACTIVE,123.45,7,ivan,ivan@mail.ru\r\n"
+                + "2,\"a,\"\"b\"\"\nc\",2027-02-28,BLOCKED,-0.05,7,ivan,ivan@mail.ru\r\n");
+    }
+
+    @Test
+    void exportCards_ShouldWriteEmptyCsvFields_WhenCardHasNoOwner() throws Exception {
+        // Given
+        DataExportService service = service(
+                new Object[]{3L, "**** **** **** 0001", "2027-03-31", "EXPIRED", 0L, null, null, null});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        service.exportCards(ExportFormat.CSV, out);
+
+        // Then
+        assertThat(out.toString(StandardCharsets.UTF_8))
+                .isEqualTo(CARDS_HEADER + "3,**** **** **** 0001,2027-03-31,EXPIRED,0.00,,,\r\n");
+    }
+
+    @Test
+    void exportCards_ShouldWriteJsonNullsAndDecimalMoney_WhenFormatIsNdjson() throws Exception {
+        // Given
+        DataExportService service = service(
+                new Object[]{3L, "**** **** **** 0001", "2027-03-31", "EXPIRED", 100L, null, null, null});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        service.exportCards(ExportFormat.NDJSON, out);
+
+        // Then
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "{\"id\":3,\"encryptedNumber\":\"**** **** **** 0001\",\"expirationDate\":\"2027-03-31\","
+                        + "\"cardStatus\":\"EXPIRED\",\"balance\":1.00,\"ownerId\":null,"
+                        + "\"ownerUsername\":null,\"ownerEmail\":null}\n");
+    }
+
+    ///-> Сервис поверх моков JDBC: запрос выгрузки возвращает переданные строки
+    private static DataExportService service(Object[]... rows) throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = resultSet(rows);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        return new DataExportService(dataSource, transactionManager, new ObjectMapper(), 100);
+    }
+
+    private static ResultSet resultSet(Object[]... rows) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        int[] row = {-1};
+        boolean[] wasNull = {false};
+        when(resultSet.next()).thenAnswer(invocation -> ++row[0] < rows.length);
+        when(resultSet.getLong(anyInt())).thenAnswer(invocation -> {
+            Object value = rows[row[0]][invocation.<Integer>getArgument(0) - 1];
+            wasNull[0] = value == null;
+            return value == null ? 0L : value;
+        });
+        when(resultSet.getString(anyInt())).thenAnswer(invocation -> {
+            Object value = rows[row[0]][invocation.<Integer>getArgument(0) - 1];
+            wasNull[0] = value == null;
+            return value;
+        });
+        when(resultSet.wasNull()).thenAnswer(invocation -> wasNull[0]);
+        return resultSet;
+    }
+}